@@ -1,11 +1,10 @@
 package org.jqassistant.contrib.plugin.asciidocreport;
 
 import static java.util.Collections.singletonList;
-import static org.asciidoctor.AttributesBuilder.attributes;
-import static org.asciidoctor.OptionsBuilder.options;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.buschmais.jqassistant.core.analysis.api.Result;
 import com.buschmais.jqassistant.core.analysis.api.rule.*;
@@ -15,13 +14,17 @@ import com.buschmais.jqassistant.core.report.api.ReportHelper;
 import com.buschmais.jqassistant.core.report.api.ReportPlugin;
 import com.buschmais.jqassistant.core.report.api.ReportPlugin.Default;
 import com.buschmais.jqassistant.core.rule.api.source.RuleSource;
-import com.buschmais.jqassistant.core.shared.asciidoc.AsciidoctorFactory;
 
 import org.asciidoctor.Asciidoctor;
-import org.asciidoctor.OptionsBuilder;
-import org.asciidoctor.SafeMode;
-import org.asciidoctor.ast.Document;
-import org.asciidoctor.extension.JavaExtensionRegistry;
+import org.jqassistant.contrib.plugin.asciidocreport.baseline.BaselineDiff;
+import org.jqassistant.contrib.plugin.asciidocreport.baseline.Fingerprint;
+import org.jqassistant.contrib.plugin.asciidocreport.baseline.FingerprintFile;
+import org.jqassistant.contrib.plugin.asciidocreport.daemon.DaemonToken;
+import org.jqassistant.contrib.plugin.asciidocreport.daemon.RenderDaemonClient;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ComponentDiagramReportPlugin;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.DeferredDiagrams;
+import org.jqassistant.contrib.plugin.asciidocreport.search.SearchIndexWriter;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotMerger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,12 +37,31 @@ public class AsciidocReportPlugin implements ReportPlugin {
     private static final String PROPERTY_RULE_DIRECTORY = "asciidoc.report.rule.directory";
     private static final String PROPERTY_FILE_INCLUDE = "asciidoc.report.file.include";
     private static final String PROPERTY_FILE_EXCLUDE = "asciidoc.report.file.exclude";
+    private static final String PROPERTY_COMPRESSION = "asciidoc.report.compression";
+    private static final String PROPERTY_CHUNK_LEVEL = "asciidoc.report.chunk.level";
+    private static final String PROPERTY_EXPORT = "asciidoc.report.export";
+    private static final String PROPERTY_EXPORT_ROWS = "asciidoc.report.export.rows";
+    private static final String PROPERTY_DAEMON_PORT = "asciidoc.report.daemon.port";
+    private static final String PROPERTY_DAEMON_TOKEN = "asciidoc.report.daemon.token";
+    private static final String PROPERTY_DAEMON_TIMEOUT = "asciidoc.report.daemon.timeout";
+    private static final String PROPERTY_SOURCE_HIGHLIGHTER = "asciidoc.report.source.highlighter";
+    private static final String PROPERTY_WATCHDOG_TIMEOUT = "asciidoc.report.watchdog.timeout";
+    private static final String PROPERTY_WATCHDOG_ALLOCATION = "asciidoc.report.watchdog.allocation";
+    private static final String PROPERTY_SNAPSHOT = "asciidoc.report.snapshot";
+    private static final String PROPERTY_SNAPSHOT_MERGE = "asciidoc.report.snapshot.merge";
+    private static final String PROPERTY_DEDUPLICATE_ROWS = "asciidoc.report.rows.deduplicate";
+    private static final String PROPERTY_PIPELINE = "asciidoc.report.pipeline";
+    private static final String PROPERTY_FINGERPRINTS = "asciidoc.report.fingerprints";
+    private static final String PROPERTY_BASELINE = "asciidoc.report.baseline";
+    private static final String PROPERTY_TABLE_VIRTUAL_THRESHOLD = "asciidoc.report.table.virtual.threshold";
+    private static final String PROPERTY_SEARCH = "asciidoc.report.search";
+    private static final String PROPERTY_PROFILE = "asciidoc.report.profile";
+    private static final String PROPERTY_CSV = "asciidoc.report.csv";
+    private static final String PROPERTY_CSV_INLINE_ROWS = "asciidoc.report.csv.inline.rows";
 
     private static final String DEFAULT_REPORT_DIRECTORY = "asciidoc";
     private static final String DEFAULT_INDEX_FILE = "index.adoc";
-
-    private static final String BACKEND_HTML5 = "html5";
-    private static final String CODERAY = "coderay";
+    private static final String COUNT_COLUMN = "Count";
 
     private ReportContext reportContext;
 
@@ -47,11 +69,81 @@ public class AsciidocReportPlugin implements ReportPlugin {
 
     private SourceFileMatcher sourceFileMatcher;
 
+    private boolean compression;
+
+    private int chunkLevel;
+
+    private boolean export;
+
+    private boolean exportRows;
+
+    private ResultExporter resultExporter;
+
+    private boolean csv;
+
+    private int csvInlineRows;
+
+    private CsvExporter csvExporter;
+
+    private int daemonPort;
+
+    private File daemonToken;
+
+    private int daemonTimeout;
+
+    private SourceHighlighter sourceHighlighter;
+
+    private int watchdogTimeout;
+
+    private int watchdogAllocation;
+
+    private int virtualTableThreshold;
+
+    private boolean search;
+
+    private RenderProfile renderProfile;
+
+    private boolean snapshot;
+
+    private List<File> mergeSnapshots;
+
+    private boolean deduplicateRows;
+
+    private RuleFilter ruleFilter;
+
+    private boolean pipeline;
+
+    private boolean fingerprints;
+
+    private File baselineFile;
+
+    private Map<String, Fingerprint> baseline;
+
+    private DocumentRenderer documentRenderer;
+
+    private DocumentPipeline documentPipeline;
+
+    private DeferredDiagrams deferredDiagrams;
+
+    private int discoveredRuleSources;
+
+    /**
+     * The rule whose result has been set by the current thread, rules may be
+     * executed concurrently.
+     */
+    private final ThreadLocal<ExecutableRule<?>> completedRule = new ThreadLocal<>();
+
     private Set<RuleSource> ruleSources;
 
     private Map<String, RuleResult> conceptResults;
     private Map<String, RuleResult> constraintResults;
 
+    /**
+     * The ids of the rules whose results have been rejected by the
+     * {@link RuleFilter}.
+     */
+    private Set<String> rejectedRules;
+
     @Override
     public void configure(ReportContext reportContext, Map<String, Object> properties) {
         this.reportContext = reportContext;
@@ -64,6 +156,38 @@ public class AsciidocReportPlugin implements ReportPlugin {
         String fileInclude = (String) properties.get(PROPERTY_FILE_INCLUDE);
         String fileExclude = (String) properties.get(PROPERTY_FILE_EXCLUDE);
         this.sourceFileMatcher = new SourceFileMatcher(ruleDirectory, fileInclude, fileExclude);
+        this.compression = getBoolean(PROPERTY_COMPRESSION, false, properties);
+        this.chunkLevel = getInt(PROPERTY_CHUNK_LEVEL, 0, properties);
+        this.export = getBoolean(PROPERTY_EXPORT, false, properties);
+        this.exportRows = getBoolean(PROPERTY_EXPORT_ROWS, false, properties);
+        this.csv = getBoolean(PROPERTY_CSV, false, properties);
+        this.csvInlineRows = getInt(PROPERTY_CSV_INLINE_ROWS, 100, properties);
+        this.daemonPort = getInt(PROPERTY_DAEMON_PORT, 0, properties);
+        this.daemonToken = getFile(PROPERTY_DAEMON_TOKEN, DaemonToken.getDefaultFile(daemonPort), properties);
+        this.daemonTimeout = getInt(PROPERTY_DAEMON_TIMEOUT, RenderDaemonClient.DEFAULT_TIMEOUT / 1000, properties);
+        String sourceHighlighterValue = (String) properties.get(PROPERTY_SOURCE_HIGHLIGHTER);
+        this.sourceHighlighter = sourceHighlighterValue != null ? SourceHighlighter.fromString(sourceHighlighterValue) : SourceHighlighter.CODERAY;
+        this.watchdogTimeout = getInt(PROPERTY_WATCHDOG_TIMEOUT, 0, properties);
+        this.watchdogAllocation = getInt(PROPERTY_WATCHDOG_ALLOCATION, 0, properties);
+        this.virtualTableThreshold = getInt(PROPERTY_TABLE_VIRTUAL_THRESHOLD, 0, properties);
+        this.search = getBoolean(PROPERTY_SEARCH, false, properties);
+        String renderProfileValue = (String) properties.get(PROPERTY_PROFILE);
+        this.renderProfile = renderProfileValue != null ? RenderProfile.fromString(renderProfileValue) : RenderProfile.FULL;
+        this.snapshot = getBoolean(PROPERTY_SNAPSHOT, false, properties);
+        this.deduplicateRows = getBoolean(PROPERTY_DEDUPLICATE_ROWS, false, properties);
+        this.ruleFilter = RuleFilter.fromProperties(properties);
+        this.pipeline = getBoolean(PROPERTY_PIPELINE, false, properties);
+        this.fingerprints = getBoolean(PROPERTY_FINGERPRINTS, false, properties);
+        this.baselineFile = getFile(PROPERTY_BASELINE, null, properties);
+        this.mergeSnapshots = new ArrayList<>();
+        String mergeSnapshotsValue = (String) properties.get(PROPERTY_SNAPSHOT_MERGE);
+        if (mergeSnapshotsValue != null) {
+            for (String mergeSnapshot : mergeSnapshotsValue.split(",")) {
+                if (!mergeSnapshot.trim().isEmpty()) {
+                    mergeSnapshots.add(new File(mergeSnapshot.trim()));
+                }
+            }
+        }
     }
 
     private File getFile(String property, File defaultValue, Map<String, Object> properties) {
@@ -71,44 +195,193 @@ public class AsciidocReportPlugin implements ReportPlugin {
         return directoryName != null ? new File(directoryName) : defaultValue;
     }
 
+    private int getInt(String property, int defaultValue, Map<String, Object> properties) {
+        Object value = properties.get(property);
+        return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+    }
+
+    private boolean getBoolean(String property, boolean defaultValue, Map<String, Object> properties) {
+        Object value = properties.get(property);
+        return value != null ? Boolean.parseBoolean(value.toString()) : defaultValue;
+    }
+
     @Override
-    public void begin() {
-        ruleSources = new HashSet<>();
-        conceptResults = new HashMap<>();
-        constraintResults = new HashMap<>();
+    public void begin() throws ReportException {
+        // Rules may be executed concurrently, documents may be rendered by the pipeline while results are added
+        ruleSources = ConcurrentHashMap.newKeySet();
+        conceptResults = new ConcurrentHashMap<>();
+        constraintResults = new ConcurrentHashMap<>();
+        rejectedRules = ConcurrentHashMap.newKeySet();
+        deferredDiagrams = DeferredDiagrams.join(reportContext);
+        // The baseline is read before the fingerprints of this analysis may replace it
+        baseline = baselineFile != null ? FingerprintFile.read(baselineFile) : null;
+        documentRenderer = DocumentRenderer.builder().reportDirectory(reportDirectory).reportContext(reportContext).chunkLevel(chunkLevel)
+                .sourceHighlighter(sourceHighlighter).timeout(watchdogTimeout * 1000L).allocationBudget(watchdogAllocation * 1024L * 1024L)
+                .virtualTableThreshold(virtualTableThreshold).search(search).build();
+        if (pipeline && (daemonPort > 0 || !mergeSnapshots.isEmpty())) {
+            LOGGER.info("Documents are not rendered during the analysis as they are rendered by the daemon or require merged results.");
+        } else if (pipeline) {
+            documentPipeline = new DocumentPipeline(documentRenderer, conceptResults, constraintResults, reportContext);
+            discoveredRuleSources = -1;
+            discoverDocuments();
+        }
+        if (export && ruleFilter.isFilteringRules()) {
+            LOGGER.info("Results are not exported as they are restricted by a filter.");
+        } else if (export) {
+            resultExporter = new ResultExporter(reportDirectory, exportRows);
+            resultExporter.begin();
+        }
+        if (csv) {
+            csvExporter = new CsvExporter(reportDirectory);
+            if (!ruleFilter.isFilteringRules()) {
+                // Files of rules which are not executed anymore are removed
+                csvExporter.clear();
+            }
+            if (resultExporter != null && exportRows) {
+                LOGGER.info("All rows are kept as they are exported to {}.", ResultExporter.RESULTS_FILE);
+                csvInlineRows = Integer.MAX_VALUE;
+            }
+        }
     }
 
     @Override
     public void end() throws ReportException {
-        Map<File, List<File>> files = sourceFileMatcher.match(ruleSources);
-        if (!files.isEmpty()) {
-            LOGGER.info("Calling for the Asciidoctor...");
-            Asciidoctor asciidoctor = AsciidoctorFactory.getAsciidoctor();
-            LOGGER.info("Writing to report directory " + reportDirectory.getAbsolutePath());
-            for (Map.Entry<File, List<File>> entry : files.entrySet()) {
-                File baseDir = entry.getKey();
-                OptionsBuilder optionsBuilder = options().mkDirs(true).baseDir(baseDir).toDir(reportDirectory).backend(BACKEND_HTML5).safe(SafeMode.UNSAFE)
-                        .attributes(attributes().experimental(true).sourceHighlighter(CODERAY));
-                for (File file : entry.getValue()) {
-                    LOGGER.info("-> {}", file.getPath());
-                    Document document = asciidoctor.loadFile(file, optionsBuilder.asMap());
-                    JavaExtensionRegistry extensionRegistry = asciidoctor.javaExtensionRegistry();
-                    IncludeProcessor includeProcessor = new IncludeProcessor(document, conceptResults, constraintResults);
-                    extensionRegistry.includeProcessor(includeProcessor);
-                    extensionRegistry.inlineMacro(new InlineMacroProcessor());
-                    extensionRegistry.treeprocessor(new TreePreprocessor(conceptResults, constraintResults, reportDirectory, reportContext));
-                    extensionRegistry.postprocessor(new RuleTogglePostProcessor());
-                    asciidoctor.convertFile(file, optionsBuilder);
-                    asciidoctor.unregisterAllExtensions();
+        SnapshotMerger snapshotMerger = new SnapshotMerger(conceptResults, constraintResults, reportContext);
+        if (!mergeSnapshots.isEmpty()) {
+            snapshotMerger.merge(mergeSnapshots);
+            if (baseline != null) {
+                // The rows of merged results have changed
+                compareWithBaseline(conceptResults);
+                compareWithBaseline(constraintResults);
+            }
+        }
+        if (resultExporter != null) {
+            resultExporter.end(conceptResults.values(), constraintResults.values());
+            resultExporter = null;
+        }
+        if (fingerprints && ruleFilter.isFilteringRules()) {
+            LOGGER.info("The fingerprints are not written as the results are restricted by a filter.");
+        } else if (fingerprints) {
+            List<RuleResult> results = new ArrayList<>(conceptResults.values());
+            results.addAll(constraintResults.values());
+            FingerprintFile.write(reportDirectory, results);
+        }
+        Map<File, List<File>> files = filterDocuments(sourceFileMatcher.match(ruleSources));
+        if (ruleFilter.isFilteringRules()) {
+            files = filterCompleteDocuments(files);
+        }
+        if (snapshot && ruleFilter.isFilteringRules()) {
+            LOGGER.info("The snapshot is not written as the results are restricted by a filter.");
+        } else if (snapshot) {
+            snapshotMerger.write(reportDirectory, documentRenderer, files);
+        }
+        if (documentPipeline != null) {
+            documentPipeline.finish(files);
+            documentPipeline = null;
+        } else if (!files.isEmpty()) {
+            if (daemonPort > 0 && deferredDiagrams.renderAll() > 0) {
+                LOGGER.info("Rendered all deferred diagrams as the render daemon cannot access them.");
+            }
+            if (daemonPort > 0 && new RenderDaemonClient(daemonPort, daemonToken, daemonTimeout * 1000).render(documentRenderer, files, conceptResults, constraintResults, reportContext)) {
+                LOGGER.info("The render daemon finished its work successfully.");
+            } else {
+                LOGGER.info("Calling for the Asciidoctor...");
+                // Instances are reused by subsequent analyses in the same JVM, e.g. other modules of a reactor build
+                Asciidoctor asciidoctor = AsciidoctorPool.acquire();
+                try {
+                    documentRenderer.render(asciidoctor, files, conceptResults, constraintResults);
+                } finally {
+                    AsciidoctorPool.release(asciidoctor);
                 }
+                LOGGER.info("The Asciidoctor finished his work successfully.");
             }
-            LOGGER.info("The Asciidoctor finished his work successfully.");
         }
+        if (search && ruleFilter.isFilteringRules()) {
+            LOGGER.info("The search index is not written as the results are restricted by a filter.");
+        } else if (search) {
+            // The documents rendered by this analysis are scanned for the pages containing the rules
+            List<RuleResult> results = new ArrayList<>(conceptResults.values());
+            results.addAll(constraintResults.values());
+            SearchIndexWriter.write(reportDirectory, files, results);
+        }
+        // Diagrams not rendered by any document are released if this is the last participant
+        deferredDiagrams.leave(reportContext);
+        deferredDiagrams = null;
+        if (compression) {
+            compress();
+        }
+    }
+
+    private void compareWithBaseline(Map<String, RuleResult> results) {
+        results.replaceAll((id, result) -> result.toBuilder().baselineDiff(BaselineDiff.compare(baseline.get(id), Fingerprint.getRowHashes(result))).build());
+    }
+
+    /**
+     * Restricts the documents to be rendered to those accepted by the
+     * {@link RuleFilter}, the output of all other documents is left untouched.
+     */
+    private Map<File, List<File>> filterDocuments(Map<File, List<File>> files) {
+        Map<File, List<File>> filteredFiles = new LinkedHashMap<>();
+        for (Map.Entry<File, List<File>> entry : files.entrySet()) {
+            List<File> filesByDirectory = new ArrayList<>();
+            for (File file : entry.getValue()) {
+                if (ruleFilter.accepts(entry.getKey(), file)) {
+                    filesByDirectory.add(file);
+                } else {
+                    LOGGER.debug("Skipping document '{}'.", file.getPath());
+                }
+            }
+            if (!filesByDirectory.isEmpty()) {
+                filteredFiles.put(entry.getKey(), filesByDirectory);
+            }
+        }
+        return filteredFiles;
+    }
+
+    /**
+     * Restricts the documents to be rendered to those containing no rules
+     * rejected by the {@link RuleFilter}, i.e. all other documents (including
+     * those depending on the results of all rules) keep their output of a
+     * previous run.
+     */
+    private Map<File, List<File>> filterCompleteDocuments(Map<File, List<File>> files) {
+        Map<File, List<File>> completeFiles = new LinkedHashMap<>();
+        for (Map.Entry<File, List<File>> entry : files.entrySet()) {
+            List<File> filesByDirectory = new ArrayList<>();
+            for (File file : entry.getValue()) {
+                Set<String> ruleIds = DocumentScanner.scan(file);
+                if (ruleIds != null && ruleIds.stream().noneMatch(rejectedRules::contains)) {
+                    filesByDirectory.add(file);
+                } else {
+                    LOGGER.info("Skipping document '{}' as it contains rules which are restricted by the filter.", file.getPath());
+                }
+            }
+            if (!filesByDirectory.isEmpty()) {
+                completeFiles.put(entry.getKey(), filesByDirectory);
+            }
+        }
+        return completeFiles;
+    }
+
+    /**
+     * Writes precompressed variants of the rendered documents and the diagrams
+     * created by the {@link ComponentDiagramReportPlugin}.
+     */
+    private void compress() throws ReportException {
+        ReportCompressor reportCompressor = new ReportCompressor();
+        reportCompressor.compress(reportDirectory);
+        reportCompressor.compress(reportContext.getReportDirectory(ComponentDiagramReportPlugin.REPORT_DIRECTORY));
     }
 
     @Override
     public void beginGroup(Group group) {
         addRuleSource(group);
+        ruleFilter.beginGroup(group);
+    }
+
+    @Override
+    public void endGroup() {
+        ruleFilter.endGroup();
     }
 
     @Override
@@ -116,47 +389,180 @@ public class AsciidocReportPlugin implements ReportPlugin {
         addRuleSource(concept);
     }
 
+    @Override
+    public void endConcept() throws ReportException {
+        completeRule();
+    }
+
     @Override
     public void beginConstraint(Constraint constraint) {
         addRuleSource(constraint);
     }
 
+    @Override
+    public void endConstraint() throws ReportException {
+        completeRule();
+    }
+
+    /**
+     * Notifies the {@link DocumentPipeline} about the completed rule, i.e. after
+     * all report plugins (e.g. for diagrams) have processed its result.
+     */
+    private void completeRule() throws ReportException {
+        ExecutableRule<?> rule = completedRule.get();
+        if (documentPipeline != null) {
+            discoverDocuments();
+            if (rule != null) {
+                documentPipeline.ruleCompleted(rule);
+            }
+        }
+        completedRule.remove();
+    }
+
+    /**
+     * Passes the documents to the {@link DocumentPipeline}, if auto-detected
+     * they are discovered by the sources of the executed rules.
+     */
+    private synchronized void discoverDocuments() throws ReportException {
+        if (ruleSources.size() != discoveredRuleSources) {
+            discoveredRuleSources = ruleSources.size();
+            documentPipeline.addDocuments(filterDocuments(sourceFileMatcher.match(ruleSources)));
+        }
+    }
+
     private void addRuleSource(Rule rule) {
         ruleSources.add(rule.getSource());
     }
 
     @Override
-    public void setResult(Result<? extends ExecutableRule> result) {
+    public void setResult(Result<? extends ExecutableRule> result) throws ReportException {
         // Collect the results for executed concepts and constraints
         ExecutableRule rule = result.getRule();
+        if (!ruleFilter.accepts(rule)) {
+            rejectedRules.add(rule.getId());
+            return;
+        }
+        RuleResult ruleResult;
         if (rule instanceof Concept) {
-            this.conceptResults.put(rule.getId(), getRuleResult(result));
+            ruleResult = getRuleResult(result);
+            this.conceptResults.put(rule.getId(), ruleResult);
         } else if (rule instanceof Constraint) {
-            this.constraintResults.put(rule.getId(), getRuleResult(result));
+            ruleResult = getRuleResult(result);
+            this.constraintResults.put(rule.getId(), ruleResult);
+        } else {
+            return;
+        }
+        if (resultExporter != null) {
+            resultExporter.write(ruleResult);
         }
+        completedRule.set(rule);
     }
 
-    private RuleResult getRuleResult(Result<? extends ExecutableRule> result) {
+    private RuleResult getRuleResult(Result<? extends ExecutableRule> result) throws ReportException {
         RuleResult.RuleResultBuilder ruleResultBuilder = RuleResult.builder();
         List<String> columnNames = result.getColumnNames();
-        ruleResultBuilder.rule(result.getRule()).effectiveSeverity(result.getSeverity()).status(result.getStatus())
-                .columnNames(columnNames != null ? columnNames : singletonList("Empty Result"));
-        for (Map<String, Object> row : result.getRows()) {
-            Map<String, List<String>> resultRow = new LinkedHashMap<>();
-            for (Map.Entry<String, Object> rowEntry : row.entrySet()) {
-                Object value = rowEntry.getValue();
-                List<String> values = new ArrayList<>();
-                if (value instanceof Iterable<?>) {
-                    for (Object o : ((Iterable) value)) {
-                        values.add(ReportHelper.getLabel(o));
+        ruleResultBuilder.rule(result.getRule()).effectiveSeverity(result.getSeverity()).status(result.getStatus());
+        if (columnNames == null) {
+            columnNames = singletonList("Empty Result");
+        }
+        if (renderProfile.isSummaryOnly(result.getStatus()) && !isRowsRequired()) {
+            return ruleResultBuilder.columnNames(columnNames).omittedRows(result.getRows().size()).build();
+        }
+        // Identical rows are kept once together with the number of their occurrences
+        Map<Map<String, List<String>>, int[]> rowCounts = deduplicateRows ? new LinkedHashMap<>() : null;
+        // Row hashes are only required for fingerprints or the comparison with a baseline
+        long[] rowHashes = fingerprints || baseline != null ? new long[result.getRows().size()] : null;
+        List<String> hashedColumnNames = columnNames;
+        String countColumn = COUNT_COLUMN;
+        if (rowCounts != null && !result.getRows().isEmpty()) {
+            while (columnNames.contains(countColumn)) {
+                countColumn = "#" + countColumn;
+            }
+            columnNames = new ArrayList<>(columnNames);
+            columnNames.add(countColumn);
+        }
+        int rowCount = 0;
+        // All rows are written to the CSV file while they are converted, only the first ones are kept for the inline table
+        CsvExporter.RowWriter csvRows = csvExporter != null ? csvExporter.open(result.getRule(), columnNames) : null;
+        try {
+            for (Map<String, Object> row : result.getRows()) {
+                Map<String, List<String>> resultRow = new LinkedHashMap<>();
+                for (Map.Entry<String, Object> rowEntry : row.entrySet()) {
+                    Object value = rowEntry.getValue();
+                    List<String> values = new ArrayList<>();
+                    if (value instanceof Iterable<?>) {
+                        for (Object o : ((Iterable) value)) {
+                            values.add(ReportHelper.getLabel(o));
+                        }
+                    } else {
+                        values.add(ReportHelper.getLabel(value));
                     }
+                    resultRow.put(rowEntry.getKey(), values);
+                }
+                if (rowCounts != null) {
+                    rowCounts.computeIfAbsent(resultRow, key -> new int[1])[0]++;
                 } else {
-                    values.add(ReportHelper.getLabel(value));
+                    if (rowHashes != null) {
+                        rowHashes[rowCount] = Fingerprint.hash(hashedColumnNames, resultRow);
+                    }
+                    rowCount++;
+                    addRow(ruleResultBuilder, resultRow, rowCount, csvRows);
                 }
-                resultRow.put(rowEntry.getKey(), values);
             }
-            ruleResultBuilder.row(resultRow);
+            if (rowCounts != null) {
+                for (Map.Entry<Map<String, List<String>>, int[]> entry : rowCounts.entrySet()) {
+                    // The number of occurrences is not part of the fingerprint
+                    if (rowHashes != null) {
+                        rowHashes[rowCount] = Fingerprint.hash(hashedColumnNames, entry.getKey());
+                    }
+                    rowCount++;
+                    // The key of the map must not be modified
+                    Map<String, List<String>> resultRow = new LinkedHashMap<>(entry.getKey());
+                    resultRow.put(countColumn, singletonList(Integer.toString(entry.getValue()[0])));
+                    addRow(ruleResultBuilder, resultRow, rowCount, csvRows);
+                }
+            }
+        } finally {
+            if (csvRows != null) {
+                csvRows.close();
+            }
+        }
+        if (csvRows != null) {
+            ruleResultBuilder.csvFile(csvRows.getPath());
+            if (rowCount > csvInlineRows) {
+                ruleResultBuilder.omittedRows(rowCount - csvInlineRows);
+            }
+        }
+        if (rowHashes != null) {
+            rowHashes = Arrays.copyOf(rowHashes, rowCount);
+            ruleResultBuilder.rowHashes(rowHashes);
+        }
+        if (baseline != null) {
+            ruleResultBuilder.baselineDiff(BaselineDiff.compare(baseline.get(result.getRule().getId()), rowHashes));
         }
-        return ruleResultBuilder.build();
+        return ruleResultBuilder.columnNames(columnNames).build();
+    }
+
+    /**
+     * Adds a converted row to the {@link RuleResult} unless the number of rows
+     * to be rendered inline is exceeded, all rows are written to the CSV file (if
+     * exported).
+     */
+    private void addRow(RuleResult.RuleResultBuilder ruleResultBuilder, Map<String, List<String>> row, int rowNumber, CsvExporter.RowWriter csvRows)
+            throws ReportException {
+        if (csvRows != null) {
+            csvRows.write(row);
+        }
+        if (csvRows == null || rowNumber <= csvInlineRows) {
+            ruleResultBuilder.row(row);
+        }
+    }
+
+    /**
+     * Determines if the rows of all results are required, i.e. for writing or
+     * comparing fingerprints or exporting rows.
+     */
+    private boolean isRowsRequired() {
+        return fingerprints || baseline != null || (resultExporter != null && exportRows);
     }
 }
@@ -0,0 +1,129 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.util.*;
+
+import org.asciidoctor.Asciidoctor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM-wide pool of {@link Asciidoctor} instances.
+ * <p>
+ * Creating an {@link Asciidoctor} instance starts a new JRuby runtime which
+ * needs to be warmed up again. Instances are therefore kept across analyses
+ * running in the same JVM, e.g. the modules of a Maven reactor build, together
+ * with the {@link ConversionExtensions} registered on creation. An instance is
+ * used by one thread at a time, idle instances are shut down with the JVM.
+ * Instances which may still be used by an abandoned conversion are discarded.
+ */
+public final class AsciidoctorPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsciidoctorPool.class);
+
+    /**
+     * The maximum number of idle instances, additional instances are shut down
+     * on release.
+     */
+    private static final int MAX_IDLE = 2;
+
+    private static final Deque<Asciidoctor> IDLE = new ArrayDeque<>();
+
+    private static final Set<Asciidoctor> DISCARDED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private static boolean shutdownHookRegistered = false;
+
+    private AsciidoctorPool() {
+    }
+
+    /**
+     * Acquire an {@link Asciidoctor} instance for exclusive use, it must be
+     * returned using {@link #release(Asciidoctor)}.
+     *
+     * @return The {@link Asciidoctor} instance.
+     */
+    public static Asciidoctor acquire() {
+        synchronized (IDLE) {
+            Asciidoctor asciidoctor = IDLE.pollFirst();
+            if (asciidoctor != null) {
+                LOGGER.debug("Reusing Asciidoctor instance.");
+                return asciidoctor;
+            }
+            if (!shutdownHookRegistered) {
+                Runtime.getRuntime().addShutdownHook(new Thread(AsciidoctorPool::shutdown, "asciidoctor-pool-shutdown"));
+                shutdownHookRegistered = true;
+            }
+        }
+        LOGGER.info("Creating Asciidoctor instance.");
+        return ConversionExtensions.create();
+    }
+
+    /**
+     * Return an {@link Asciidoctor} instance to the pool.
+     *
+     * @param asciidoctor
+     *            The {@link Asciidoctor} instance.
+     */
+    public static void release(Asciidoctor asciidoctor) {
+        synchronized (IDLE) {
+            if (DISCARDED.contains(asciidoctor)) {
+                return;
+            }
+            if (IDLE.size() < MAX_IDLE) {
+                // The most recently used instance is the best warmed up one
+                IDLE.addFirst(asciidoctor);
+                return;
+            }
+        }
+        asciidoctor.shutdown();
+    }
+
+    /**
+     * Discard an {@link Asciidoctor} instance which is still used by an
+     * abandoned conversion, i.e. it is shut down and never reused. Releasing it
+     * afterwards has no effect.
+     *
+     * @param asciidoctor
+     *            The {@link Asciidoctor} instance.
+     */
+    public static void discard(Asciidoctor asciidoctor) {
+        synchronized (IDLE) {
+            IDLE.remove(asciidoctor);
+            DISCARDED.add(asciidoctor);
+        }
+        // The abandoned conversion may block the shutdown
+        Thread shutdown = new Thread(() -> {
+            try {
+                asciidoctor.shutdown();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot shut down discarded Asciidoctor instance.", e);
+            }
+        }, "asciidoctor-discard");
+        shutdown.setDaemon(true);
+        shutdown.start();
+    }
+
+    /**
+     * Determines if an {@link Asciidoctor} instance has been discarded.
+     *
+     * @param asciidoctor
+     *            The {@link Asciidoctor} instance.
+     * @return <code>true</code> if the instance has been discarded.
+     */
+    public static boolean isDiscarded(Asciidoctor asciidoctor) {
+        synchronized (IDLE) {
+            return DISCARDED.contains(asciidoctor);
+        }
+    }
+
+    /**
+     * Shut down all idle instances.
+     */
+    public static void shutdown() {
+        synchronized (IDLE) {
+            for (Asciidoctor asciidoctor : IDLE) {
+                asciidoctor.shutdown();
+            }
+            IDLE.clear();
+        }
+    }
+}
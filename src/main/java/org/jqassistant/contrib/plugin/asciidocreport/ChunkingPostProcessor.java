@@ -0,0 +1,348 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.Postprocessor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Postprocessor} that splits the rendered HTML document at a given
+ * section level into separate pages.
+ * <p>
+ * Each page contains the header of the document and a navigation to all pages.
+ * Anchors (e.g. created by the {@link InlineMacroProcessor}) are rewritten to
+ * point to the page containing their target. The remaining content of the
+ * document (i.e. everything outside of the chunked sections) is returned as
+ * output.
+ * <p>
+ * The sections are located by scanning the output, only the remaining content
+ * and a single section at a time are parsed. The pages are not written by the
+ * conversion but by {@link #writePages()} after it has completed, pages of a
+ * previous run which are no longer created are removed.
+ */
+public class ChunkingPostProcessor extends Postprocessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkingPostProcessor.class);
+
+    private static final String HTML_SUFFIX = ".html";
+
+    private static final String PAGES_FILE_SUFFIX = ".chunks";
+
+    /**
+     * Matches opening and closing div tags, script elements are matched as a
+     * whole as their content is not markup.
+     */
+    private static final Pattern DIV_TAG = Pattern.compile("<script[\\s>].*?</script>|<(/?)div[\\s>]", Pattern.DOTALL);
+
+    private static final Pattern HEADING = Pattern.compile("\\A\\s*<h\\d(?:\\s+id=\"([^\"]*)\")?[^>]*>(.*?)</h\\d>", Pattern.DOTALL);
+
+    private static final Pattern ID_ATTRIBUTE = Pattern.compile("\\sid=\"([^\"]+)\"");
+
+    private final File reportDirectory;
+
+    private final String documentName;
+
+    private final int level;
+
+    private String output;
+
+    private List<Chunk> chunks = Collections.emptyList();
+
+    private Map<String, String> pages;
+
+    private String head;
+
+    private String bodyClass;
+
+    private String header;
+
+    private String footer;
+
+    public ChunkingPostProcessor(File reportDirectory, String documentName, int level) {
+        this.reportDirectory = reportDirectory;
+        this.documentName = documentName;
+        this.level = level;
+    }
+
+    @Override
+    public String process(Document document, String output) {
+        if (!document.basebackend("html")) {
+            return output;
+        }
+        List<Chunk> sections = findSections(output);
+        if (sections.isEmpty()) {
+            return output;
+        }
+        String indexPage = documentName + HTML_SUFFIX;
+        Map<String, String> sectionPages = new HashMap<>();
+        StringBuilder remainder = new StringBuilder();
+        int position = 0;
+        for (Chunk chunk : sections) {
+            Matcher idMatcher = ID_ATTRIBUTE.matcher(output).region(chunk.start, chunk.end);
+            while (idMatcher.find()) {
+                sectionPages.put(StringEscapeUtils.unescapeHtml4(idMatcher.group(1)), chunk.page);
+            }
+            remainder.append(output, position, chunk.start);
+            position = chunk.end;
+        }
+        remainder.append(output, position, output.length());
+        org.jsoup.nodes.Document doc = Jsoup.parse(remainder.toString(), "UTF-8");
+        this.output = output;
+        this.chunks = sections;
+        this.pages = sectionPages;
+        this.head = doc.head().html();
+        this.bodyClass = doc.body().className();
+        Element headerElement = doc.getElementById("header");
+        this.header = headerElement != null ? headerElement.outerHtml() : null;
+        Element footerElement = doc.getElementById("footer");
+        this.footer = footerElement != null ? footerElement.outerHtml() : null;
+        // The remaining content forms the index page
+        rewriteAnchors(doc.body(), indexPage, pages);
+        Element content = doc.getElementById("content");
+        if (content != null) {
+            content.prepend(renderNavigation(indexPage, chunks));
+        }
+        return doc.html();
+    }
+
+    /**
+     * Write the pages of the sections which have been split from the document
+     * by the last conversion and remove pages of previous runs.
+     */
+    public void writePages() {
+        Set<String> pageNames = new LinkedHashSet<>();
+        for (Chunk chunk : chunks) {
+            writePage(chunk);
+            pageNames.add(chunk.page);
+        }
+        if (!chunks.isEmpty()) {
+            LOGGER.info("Split document '{}' into {} pages.", documentName, chunks.size() + 1);
+        }
+        // Release the content of the document
+        output = null;
+        chunks = Collections.emptyList();
+        updatePages(reportDirectory, documentName, pageNames);
+    }
+
+    /**
+     * Remove the pages written for a document by a previous run, e.g. if it is
+     * no longer split.
+     *
+     * @param reportDirectory
+     *            The report directory.
+     * @param documentName
+     *            The name of the document.
+     */
+    public static void removePages(File reportDirectory, String documentName) {
+        updatePages(reportDirectory, documentName, Collections.emptySet());
+    }
+
+    /**
+     * Returns the pages which have been split from a document.
+     *
+     * @param reportDirectory
+     *            The report directory.
+     * @param documentName
+     *            The name of the document.
+     * @return The file names of the pages.
+     */
+    public static List<String> getPages(File reportDirectory, String documentName) {
+        File pagesFile = getPagesFile(reportDirectory, documentName);
+        List<String> pages = new ArrayList<>();
+        if (pagesFile.exists()) {
+            try {
+                for (String page : FileUtils.readLines(pagesFile, StandardCharsets.UTF_8)) {
+                    if (!page.isEmpty()) {
+                        pages.add(page);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read pages of document " + documentName, e);
+            }
+        }
+        return pages;
+    }
+
+    private static File getPagesFile(File reportDirectory, String documentName) {
+        return new File(reportDirectory, "." + documentName + PAGES_FILE_SUFFIX);
+    }
+
+    /**
+     * Records the pages of a document and removes the pages recorded by a
+     * previous run which are not contained.
+     */
+    private static void updatePages(File reportDirectory, String documentName, Set<String> pageNames) {
+        File pagesFile = getPagesFile(reportDirectory, documentName);
+        for (String page : getPages(reportDirectory, documentName)) {
+            if (!pageNames.contains(page)) {
+                LOGGER.debug("Removing stale page '{}'.", page);
+                FileUtils.deleteQuietly(new File(reportDirectory, page));
+            }
+        }
+        try {
+            if (pageNames.isEmpty()) {
+                FileUtils.deleteQuietly(pagesFile);
+            } else {
+                FileUtils.writeLines(pagesFile, StandardCharsets.UTF_8.name(), pageNames);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot update pages of document " + documentName, e);
+        }
+    }
+
+    /**
+     * Locate the sections of the configured level in the output.
+     *
+     * @param output
+     *            The output.
+     * @return The {@link Chunk}s representing the sections.
+     */
+    private List<Chunk> findSections(String output) {
+        List<Chunk> sections = new ArrayList<>();
+        Pattern sectionStart = Pattern.compile("<div class=\"sect" + level + "[\\s\"]");
+        Matcher startMatcher = sectionStart.matcher(output);
+        int position = 0;
+        while (position < output.length() && startMatcher.find(position)) {
+            int start = startMatcher.start();
+            int end = findEnd(output, start);
+            if (end < 0) {
+                LOGGER.warn("Cannot determine the end of a section in document '{}'.", documentName);
+                break;
+            }
+            int contentStart = output.indexOf('>', start) + 1;
+            Matcher heading = HEADING.matcher(output).region(contentStart, end);
+            String sectionId = heading.lookingAt() && heading.group(1) != null ? StringEscapeUtils.unescapeHtml4(heading.group(1))
+                    : Integer.toString(sections.size());
+            String title = heading.lookingAt() ? Jsoup.parseBodyFragment(heading.group(2)).text() : sectionId;
+            String page = documentName + "-" + sectionId.replaceAll("[^A-Za-z0-9_\\-]", "_") + HTML_SUFFIX;
+            sections.add(new Chunk(page, title, start, end));
+            position = end;
+        }
+        return sections;
+    }
+
+    /**
+     * Determine the end of the div element starting at the given position.
+     *
+     * @return The position after the closing tag or -1 if it is not closed.
+     */
+    private int findEnd(String output, int start) {
+        Matcher matcher = DIV_TAG.matcher(output);
+        int depth = 0;
+        int position = start;
+        while (matcher.find(position)) {
+            position = matcher.end();
+            if (matcher.group(1) == null) {
+                continue;
+            }
+            depth += matcher.group(1).isEmpty() ? 1 : -1;
+            if (depth == 0) {
+                int end = output.indexOf('>', matcher.start());
+                return end < 0 ? -1 : end + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write a {@link Chunk} as separate page.
+     */
+    private void writePage(Chunk chunk) {
+        org.jsoup.nodes.Document page = org.jsoup.nodes.Document.createShell("");
+        page.head().html(head);
+        page.title(chunk.title);
+        page.body().addClass(bodyClass);
+        if (header != null) {
+            page.body().append(header);
+        }
+        Element content = page.body().appendElement("div").attr("id", "content");
+        content.append(renderNavigation(chunk.page, chunks));
+        content.append(output.substring(chunk.start, chunk.end));
+        if (footer != null) {
+            page.body().append(footer);
+        }
+        rewriteAnchors(page.body(), chunk.page, pages);
+        File file = new File(reportDirectory, chunk.page);
+        try {
+            FileUtils.writeStringToFile(file, page.outerHtml(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write page " + file.getPath(), e);
+        }
+        LOGGER.debug("-> {}", file.getPath());
+    }
+
+    /**
+     * Rewrite the document local anchors of an {@link Element} to point to the
+     * pages containing their targets.
+     *
+     * @param element
+     *            The {@link Element}.
+     * @param page
+     *            The page containing the {@link Element}.
+     * @param pages
+     *            The pages identified by the ids of the elements they contain.
+     */
+    private void rewriteAnchors(Element element, String page, Map<String, String> pages) {
+        String indexPage = documentName + HTML_SUFFIX;
+        for (Element anchor : element.select("a[href^=#]")) {
+            String id = anchor.attr("href").substring(1);
+            String targetPage = pages.getOrDefault(id, indexPage);
+            if (!targetPage.equals(page)) {
+                anchor.attr("href", targetPage + "#" + id);
+            }
+        }
+    }
+
+    private String renderNavigation(String currentPage, List<Chunk> chunks) {
+        StringBuilder navigation = new StringBuilder();
+        navigation.append("<div id=\"chunks\" class=\"ulist\">");
+        navigation.append("<ul>");
+        navigation.append(renderNavigationEntry(documentName + HTML_SUFFIX, "Overview", currentPage));
+        for (Chunk chunk : chunks) {
+            navigation.append(renderNavigationEntry(chunk.page, chunk.title, currentPage));
+        }
+        navigation.append("</ul>");
+        navigation.append("</div>");
+        return navigation.toString();
+    }
+
+    private String renderNavigationEntry(String page, String title, String currentPage) {
+        if (page.equals(currentPage)) {
+            return "<li><strong>" + StringEscapeUtils.escapeHtml4(title) + "</strong></li>";
+        }
+        return "<li><a href=\"" + page + "\">" + StringEscapeUtils.escapeHtml4(title) + "</a></li>";
+    }
+
+    /**
+     * A section to be rendered as separate page, located by its position in the
+     * output.
+     */
+    private static class Chunk {
+
+        private final String page;
+
+        private final String title;
+
+        private final int start;
+
+        private final int end;
+
+        private Chunk(String page, String title, int start, int end) {
+            this.page = page;
+            this.title = title;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
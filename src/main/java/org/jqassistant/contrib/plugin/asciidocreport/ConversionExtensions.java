@@ -0,0 +1,186 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import com.buschmais.jqassistant.core.shared.asciidoc.AsciidoctorFactory;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.ast.DocumentRuby;
+import org.asciidoctor.extension.JavaExtensionRegistry;
+import org.asciidoctor.extension.Postprocessor;
+import org.asciidoctor.extension.PreprocessorReader;
+import org.asciidoctor.extension.Processor;
+import org.asciidoctor.extension.Treeprocessor;
+
+/**
+ * The extensions of an {@link Asciidoctor} instance which are registered once
+ * and delegate to the processors of the current {@link Conversion}.
+ * <p>
+ * Registering extensions creates Ruby classes for each processor which is
+ * expensive if repeated for every document. The processors carry the state of
+ * a conversion (e.g. the results and the report directory), therefore they are
+ * created per conversion and bound to the converting thread.
+ * <p>
+ * A {@link Processor} captures the JRuby runtime which has been created last
+ * in the JVM on construction. The extensions are therefore registered directly
+ * after the {@link Asciidoctor} instance has been created (see
+ * {@link #create()}), and nodes created by the {@link ConversionTreeprocessor}s
+ * of a conversion are created using the registered tree processor.
+ */
+public final class ConversionExtensions {
+
+    private static final Map<Asciidoctor, ConversionExtensions> REGISTERED_EXTENSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final ThreadLocal<Conversion> CURRENT_CONVERSION = new ThreadLocal<>();
+
+    /**
+     * Serializes the creation of instances, i.e. the registered processors
+     * capture the runtime of their instance.
+     */
+    private static final Object CREATION_LOCK = new Object();
+
+    private ConversionExtensions() {
+    }
+
+    /**
+     * Creates an {@link Asciidoctor} instance and registers the extensions.
+     *
+     * @return The {@link Asciidoctor} instance.
+     */
+    public static Asciidoctor create() {
+        synchronized (CREATION_LOCK) {
+            Asciidoctor asciidoctor = AsciidoctorFactory.getAsciidoctor();
+            JavaExtensionRegistry extensionRegistry = asciidoctor.javaExtensionRegistry();
+            extensionRegistry.includeProcessor(new DelegatingIncludeProcessor());
+            extensionRegistry.inlineMacro(new InlineMacroProcessor());
+            extensionRegistry.treeprocessor(new DelegatingTreeprocessor());
+            extensionRegistry.postprocessor(new DelegatingPostprocessor());
+            REGISTERED_EXTENSIONS.put(asciidoctor, new ConversionExtensions());
+            return asciidoctor;
+        }
+    }
+
+    /**
+     * Returns the {@link ConversionExtensions} of the given {@link Asciidoctor}
+     * instance.
+     *
+     * @param asciidoctor
+     *            The {@link Asciidoctor} instance.
+     * @return The {@link ConversionExtensions}.
+     * @throws IllegalArgumentException
+     *             If the instance has not been created using {@link #create()}.
+     */
+    public static ConversionExtensions of(Asciidoctor asciidoctor) {
+        ConversionExtensions extensions = REGISTERED_EXTENSIONS.get(asciidoctor);
+        if (extensions == null) {
+            throw new IllegalArgumentException("The extensions are not registered for the Asciidoctor instance, it must be created by ConversionExtensions.create().");
+        }
+        return extensions;
+    }
+
+    /**
+     * Execute a conversion on the current thread using the processors of the
+     * given {@link Conversion}.
+     *
+     * @param conversion
+     *            The {@link Conversion}.
+     * @param converter
+     *            The converter.
+     * @param <T>
+     *            The result type of the converter.
+     * @return The result of the converter.
+     * @throws Exception
+     *             If the converter fails.
+     */
+    public <T> T convert(Conversion conversion, Callable<T> converter) throws Exception {
+        CURRENT_CONVERSION.set(conversion);
+        try {
+            return converter.call();
+        } finally {
+            CURRENT_CONVERSION.remove();
+        }
+    }
+
+    /**
+     * The processors of the conversion of a single document.
+     */
+    @Builder
+    @Getter
+    public static class Conversion {
+
+        private final IncludeProcessor includeProcessor;
+
+        @Singular
+        private final List<ConversionTreeprocessor> treeprocessors;
+
+        @Singular
+        private final List<Postprocessor> postprocessors;
+    }
+
+    /**
+     * Returns the {@link Conversion} bound to the current thread, documents
+     * which are only loaded are processed without extensions.
+     */
+    private static Conversion getCurrentConversion() {
+        Conversion conversion = CURRENT_CONVERSION.get();
+        return conversion != null ? conversion : Conversion.builder().build();
+    }
+
+    /**
+     * Processes the tree of a document within a {@link Conversion}.
+     */
+    public interface ConversionTreeprocessor {
+
+        /**
+         * Process the tree of a document.
+         *
+         * @param document
+         *            The {@link Document}.
+         * @param nodeFactory
+         *            The {@link Processor} to use for creating nodes, it is
+         *            bound to the runtime of the document.
+         */
+        void process(Document document, Processor nodeFactory);
+    }
+
+    private static class DelegatingIncludeProcessor extends org.asciidoctor.extension.IncludeProcessor {
+
+        @Override
+        public boolean handles(String target) {
+            IncludeProcessor includeProcessor = getCurrentConversion().getIncludeProcessor();
+            return includeProcessor != null && includeProcessor.handles(target);
+        }
+
+        @Override
+        public void process(DocumentRuby document, PreprocessorReader reader, String target, Map<String, Object> attributes) {
+            getCurrentConversion().getIncludeProcessor().process(document, reader, target, attributes);
+        }
+    }
+
+    private static class DelegatingTreeprocessor extends Treeprocessor {
+
+        @Override
+        public Document process(Document document) {
+            for (ConversionTreeprocessor treeprocessor : getCurrentConversion().getTreeprocessors()) {
+                treeprocessor.process(document, this);
+            }
+            return document;
+        }
+    }
+
+    private static class DelegatingPostprocessor extends Postprocessor {
+
+        @Override
+        public String process(Document document, String output) {
+            for (Postprocessor postprocessor : getCurrentConversion().getPostprocessors()) {
+                output = postprocessor.process(document, output);
+            }
+            return output;
+        }
+    }
+}
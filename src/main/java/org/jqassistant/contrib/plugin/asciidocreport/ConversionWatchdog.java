@@ -0,0 +1,178 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces a time and allocation budget for the conversion of a single
+ * document.
+ * <p>
+ * The conversion is executed on a separate worker thread which is polled by
+ * the calling thread. The allocation budget is checked against the total
+ * number of bytes allocated by the worker thread, including memory which has
+ * already been freed again, i.e. it limits the work of a conversion rather than
+ * its heap footprint. Allocations of other threads (e.g. the analysis) are not
+ * counted. The budget is not enforced if the JVM does not support measuring
+ * allocations per thread. If a budget is exceeded the worker is interrupted and
+ * a {@link BudgetExceededException} is thrown.
+ */
+public class ConversionWatchdog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversionWatchdog.class);
+
+    private static final long POLL_INTERVAL = 100;
+
+    private static final long GRACE_PERIOD = 1000;
+
+    private final long timeout;
+
+    private final long allocationBudget;
+
+    /**
+     * The {@link com.sun.management.ThreadMXBean} measuring the allocations of
+     * a thread, <code>null</code> if not supported.
+     */
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    /**
+     * Constructor.
+     *
+     * @param timeout
+     *            The maximum duration of a conversion in milliseconds,
+     *            <code>0</code> for no limit.
+     * @param allocationBudget
+     *            The maximum number of bytes allocated by a conversion,
+     *            <code>0</code> for no limit.
+     */
+    public ConversionWatchdog(long timeout, long allocationBudget) {
+        this.timeout = timeout;
+        this.threadMXBean = allocationBudget > 0 ? getAllocationMXBean() : null;
+        if (allocationBudget > 0 && threadMXBean == null) {
+            LOGGER.warn("The JVM does not support measuring allocations per thread, the allocation budget is not enforced.");
+        }
+        this.allocationBudget = threadMXBean != null ? allocationBudget : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationMXBean() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (allocationMXBean.isThreadAllocatedMemorySupported()) {
+                allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+                return allocationMXBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines if any budget is enforced.
+     *
+     * @return <code>true</code> if a budget is enforced.
+     */
+    public boolean isEnabled() {
+        return timeout > 0 || allocationBudget > 0;
+    }
+
+    /**
+     * Execute a conversion within the budget.
+     *
+     * @param name
+     *            The name of the conversion used for the worker thread and
+     *            messages.
+     * @param conversion
+     *            The conversion.
+     * @param <T>
+     *            The result type of the conversion.
+     * @return The result of the conversion.
+     * @throws BudgetExceededException
+     *             If the conversion exceeded its budget.
+     */
+    public <T> T execute(String name, Callable<T> conversion) throws BudgetExceededException {
+        if (!isEnabled()) {
+            return call(conversion);
+        }
+        FutureTask<T> task = new FutureTask<>(conversion);
+        Thread worker = new Thread(task, "asciidoc-conversion-" + name);
+        worker.setDaemon(true);
+        long start = System.currentTimeMillis();
+        worker.start();
+        while (true) {
+            try {
+                return task.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                long duration = System.currentTimeMillis() - start;
+                // The worker is created for this conversion, i.e. all its allocations are counted
+                long allocation = allocationBudget > 0 ? threadMXBean.getThreadAllocatedBytes(worker.getId()) : 0;
+                if (timeout > 0 && duration > timeout) {
+                    throw cancel(worker, task, "exceeded the time budget of " + timeout + "ms");
+                } else if (allocationBudget > 0 && allocation > allocationBudget) {
+                    throw cancel(worker, task, "exceeded the allocation budget of " + allocationBudget / (1024 * 1024) + "MB after " + duration + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw cancel(worker, task, "was interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Conversion of " + name + " failed.", cause);
+            }
+        }
+    }
+
+    private <T> T call(Callable<T> conversion) {
+        try {
+            return conversion.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Conversion failed.", e);
+        }
+    }
+
+    private BudgetExceededException cancel(Thread worker, FutureTask<?> task, String reason) {
+        task.cancel(true);
+        try {
+            worker.join(GRACE_PERIOD);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean abandoned = worker.isAlive();
+        if (abandoned) {
+            LOGGER.warn("Conversion thread '{}' did not react to cancellation and is abandoned.", worker.getName());
+        }
+        return new BudgetExceededException(reason, abandoned);
+    }
+
+    /**
+     * Indicates that a conversion exceeded its budget.
+     */
+    public static class BudgetExceededException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean abandoned;
+
+        private BudgetExceededException(String message, boolean abandoned) {
+            super(message);
+            this.abandoned = abandoned;
+        }
+
+        /**
+         * Determines if the worker thread is still running after cancellation.
+         *
+         * @return <code>true</code> if the worker thread is still running.
+         */
+        public boolean isAbandoned() {
+            return abandoned;
+        }
+    }
+}
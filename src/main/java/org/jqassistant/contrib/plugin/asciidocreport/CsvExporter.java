@@ -0,0 +1,165 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Exports the rows of results to CSV files (RFC 4180), one per rule.
+ * <p>
+ * The rows are written while they are converted, i.e. only a limited number of
+ * them needs to be kept in the {@link RuleResult} for rendering the inline
+ * table. Multiple values of a column are separated by line breaks.
+ */
+public class CsvExporter {
+
+    public static final String CSV_DIRECTORY = "csv";
+
+    private static final String CSV_SUFFIX = ".csv";
+
+    private final File directory;
+
+    public CsvExporter(File reportDirectory) {
+        this.directory = new File(reportDirectory, CSV_DIRECTORY);
+    }
+
+    /**
+     * Remove all CSV files.
+     *
+     * @throws ReportException
+     *             If the files cannot be removed.
+     */
+    public void clear() throws ReportException {
+        try {
+            FileUtils.deleteDirectory(directory);
+        } catch (IOException e) {
+            throw new ReportException("Cannot remove CSV files from " + directory.getPath(), e);
+        }
+    }
+
+    /**
+     * Determines the name of the CSV file of a rule. Characters which are not
+     * safe in file names are replaced, the hash of the id keeps the names of
+     * rules unique which differ only in these characters (e.g.
+     * <code>a:b</code> and <code>a_b</code>).
+     *
+     * @param ruleId
+     *            The id of the rule.
+     * @return The file name.
+     */
+    static String getFileName(String ruleId) {
+        return ruleId.replaceAll("[^A-Za-z0-9_\\-.]", "_") + String.format("-%08x", ruleId.hashCode()) + CSV_SUFFIX;
+    }
+
+    /**
+     * Create the CSV file for the rows of a rule and write its header.
+     *
+     * @param rule
+     *            The rule.
+     * @param columnNames
+     *            The column names.
+     * @return The {@link RowWriter}.
+     * @throws ReportException
+     *             If the file cannot be created.
+     */
+    public RowWriter open(ExecutableRule<?> rule, List<String> columnNames) throws ReportException {
+        String fileName = getFileName(rule.getId());
+        File file = new File(directory, fileName);
+        directory.mkdirs();
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            RowWriter rowWriter = new RowWriter(CSV_DIRECTORY + "/" + fileName, file, writer, columnNames);
+            for (int i = 0; i < columnNames.size(); i++) {
+                writer.write(i > 0 ? "," : "");
+                writeValue(writer, columnNames.get(i));
+            }
+            writer.write("\r\n");
+            return rowWriter;
+        } catch (IOException e) {
+            throw new ReportException("Cannot create CSV file " + file.getPath(), e);
+        }
+    }
+
+    private static void writeValue(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+        } else {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    /**
+     * Writes the rows of a single rule.
+     */
+    public static class RowWriter {
+
+        private final String path;
+
+        private final File file;
+
+        private final Writer writer;
+
+        private final List<String> columnNames;
+
+        private RowWriter(String path, File file, Writer writer, List<String> columnNames) {
+            this.path = path;
+            this.file = file;
+            this.writer = writer;
+            this.columnNames = columnNames;
+        }
+
+        /**
+         * Returns the path of the CSV file relative to the report directory.
+         *
+         * @return The path.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Append a row.
+         *
+         * @param row
+         *            The row.
+         * @throws ReportException
+         *             If the row cannot be written.
+         */
+        public void write(Map<String, List<String>> row) throws ReportException {
+            try {
+                for (int i = 0; i < columnNames.size(); i++) {
+                    writer.write(i > 0 ? "," : "");
+                    List<String> values = row.get(columnNames.get(i));
+                    if (values != null) {
+                        writeValue(writer, String.join("\n", values));
+                    }
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new ReportException("Cannot write CSV file " + file.getPath(), e);
+            }
+        }
+
+        /**
+         * Finish writing the rows.
+         *
+         * @throws ReportException
+         *             If the file cannot be written.
+         */
+        public void close() throws ReportException {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new ReportException("Cannot write CSV file " + file.getPath(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static org.apache.commons.lang3.StringEscapeUtils.escapeHtml4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Writes a degraded rendering of a document which could not be converted
+ * within its budget (see {@link ConversionWatchdog}).
+ * <p>
+ * The page is created without Asciidoctor and contains a warning and the
+ * summary of all rule results but neither the content of the document nor
+ * the result tables.
+ */
+public class DegradedDocumentWriter {
+
+    private static final String STYLE = "body{font-family:sans-serif;margin:2em}" + ".warning{border:2px solid #bf0000;padding:1em;margin-bottom:1em}"
+            + "table{border-collapse:collapse;margin-bottom:1em}th,td{border:1px solid #dedede;padding:.3em .6em;text-align:left}"
+            + ".green{color:#00bf00}.red{color:#bf0000}.yellow{color:#bfbf00}";
+
+    private final Map<String, RuleResult> conceptResults;
+
+    private final Map<String, RuleResult> constraintResults;
+
+    public DegradedDocumentWriter(Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults) {
+        this.conceptResults = conceptResults;
+        this.constraintResults = constraintResults;
+    }
+
+    /**
+     * Write the degraded rendering.
+     *
+     * @param file
+     *            The output file.
+     * @param title
+     *            The title of the document.
+     * @param reason
+     *            The reason for the degraded rendering.
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    public void write(File file, String title, String reason) throws IOException {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"UTF-8\">\n");
+        html.append("<title>").append(escapeHtml4(title)).append("</title>\n");
+        html.append("<style>").append(STYLE).append("</style>\n");
+        html.append("</head>\n<body class=\"article degraded\">\n");
+        html.append("<div id=\"header\"><h1>").append(escapeHtml4(title)).append("</h1></div>\n");
+        html.append("<div id=\"content\">\n");
+        html.append("<div class=\"warning\">The rendering of this document ").append(escapeHtml4(reason))
+                .append(" and has been cancelled. Only the summary of the rule results is available.</div>\n");
+        renderSummaryTable("Constraints", constraintResults, html);
+        renderSummaryTable("Concepts", conceptResults, html);
+        html.append("</div>\n</body>\n</html>\n");
+        FileUtils.writeStringToFile(file, html.toString(), StandardCharsets.UTF_8);
+    }
+
+    private void renderSummaryTable(String title, Map<String, RuleResult> results, StringBuilder html) {
+        html.append("<table class=\"summary\">\n");
+        html.append("<caption>").append(title).append("</caption>\n");
+        html.append("<thead><tr><th>Id</th><th>Description</th><th>Severity</th><th>Status</th></tr></thead>\n");
+        html.append("<tbody>\n");
+        Set<RuleResult> entries = new TreeSet<>(StatusHelper.getRuleResultComparator());
+        entries.addAll(results.values());
+        for (RuleResult result : entries) {
+            ExecutableRule<?> rule = result.getRule();
+            Result.Status status = result.getStatus();
+            html.append("<tr>");
+            html.append("<td>").append(escapeHtml4(rule.getId())).append("</td>");
+            html.append("<td>").append(rule.getDescription() != null ? escapeHtml4(rule.getDescription().trim()) : "").append("</td>");
+            html.append("<td>").append(escapeHtml4(rule.getSeverity().getInfo(result.getEffectiveSeverity()))).append("</td>");
+            html.append("<td><span class=\"").append(StatusHelper.getStatusColor(status)).append("\">").append(status).append("</span></td>");
+            html.append("</tr>\n");
+        }
+        html.append("</tbody>\n</table>\n");
+    }
+}
@@ -0,0 +1,227 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+import com.buschmais.jqassistant.core.report.impl.ReportContextImpl;
+
+import org.asciidoctor.Asciidoctor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders documents on a background worker while the analysis is still
+ * running.
+ * <p>
+ * Documents are pre-scanned for the rules they contain. As soon as the results
+ * of all these rules are available the document is rendered, documents which
+ * depend on the results of all rules (i.e. using <code>jQA:*</code> includes)
+ * or cannot be scanned are rendered by {@link #finish(Map)}.
+ */
+public class DocumentPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentPipeline.class);
+
+    /**
+     * The time in seconds to wait for a running conversion after the worker
+     * has been interrupted.
+     */
+    private static final long TERMINATION_TIMEOUT = 60;
+
+    private final DocumentRenderer documentRenderer;
+
+    private final Map<String, RuleResult> conceptResults;
+
+    private final Map<String, RuleResult> constraintResults;
+
+    private final ReportContext reportContext;
+
+    private final ExecutorService executorService;
+
+    /**
+     * The documents waiting for results identified by the ids of the missing
+     * rules.
+     */
+    private final Map<File, Set<String>> pendingDocuments = new LinkedHashMap<>();
+
+    private final Map<File, File> baseDirectories = new HashMap<>();
+
+    /**
+     * All documents which have been scanned.
+     */
+    private final Set<File> documents = new HashSet<>();
+
+    private final Map<File, Future<?>> renderedDocuments = new LinkedHashMap<>();
+
+    private Asciidoctor asciidoctor;
+
+    public DocumentPipeline(DocumentRenderer documentRenderer, Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults,
+            ReportContext reportContext) {
+        this.documentRenderer = documentRenderer;
+        this.conceptResults = conceptResults;
+        this.constraintResults = constraintResults;
+        this.reportContext = reportContext;
+        this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "asciidoc-report-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add the given documents, documents which have already been added are
+     * ignored.
+     *
+     * @param files
+     *            The documents grouped by their base directories.
+     */
+    public synchronized void addDocuments(Map<File, List<File>> files) {
+        for (Map.Entry<File, List<File>> entry : files.entrySet()) {
+            for (File file : entry.getValue()) {
+                if (documents.add(file)) {
+                    Set<String> ruleIds = DocumentScanner.scan(file);
+                    if (ruleIds != null) {
+                        LOGGER.debug("Document '{}' requires the results of {} rule(s).", file.getPath(), ruleIds.size());
+                        ruleIds.removeIf(this::isAvailable);
+                        baseDirectories.put(file, entry.getKey());
+                        pendingDocuments.put(file, ruleIds);
+                    }
+                }
+            }
+        }
+        submitCompleteDocuments();
+    }
+
+    /**
+     * Notifies the pipeline that the result of a rule is available.
+     *
+     * @param rule
+     *            The rule.
+     */
+    public synchronized void ruleCompleted(ExecutableRule<?> rule) {
+        if (isAvailable(rule.getId())) {
+            for (Set<String> ruleIds : pendingDocuments.values()) {
+                ruleIds.remove(rule.getId());
+            }
+            submitCompleteDocuments();
+        }
+    }
+
+    /**
+     * Render all given documents which have not been rendered by the pipeline
+     * yet and wait for completion.
+     *
+     * @param files
+     *            The documents grouped by their base directories.
+     * @throws ReportException
+     *             If rendering fails.
+     */
+    public synchronized void finish(Map<File, List<File>> files) throws ReportException {
+        Map<File, List<File>> remainingFiles = new LinkedHashMap<>();
+        for (Map.Entry<File, List<File>> entry : files.entrySet()) {
+            for (File file : entry.getValue()) {
+                if (!renderedDocuments.containsKey(file)) {
+                    remainingFiles.computeIfAbsent(entry.getKey(), key -> new ArrayList<>()).add(file);
+                }
+            }
+        }
+        List<Future<?>> futures = new ArrayList<>(renderedDocuments.values());
+        if (!remainingFiles.isEmpty()) {
+            futures.add(executorService.submit(() -> documentRenderer.render(getAsciidoctor(), remainingFiles, conceptResults, constraintResults)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportException("Interrupted while rendering documents.", e);
+        } catch (ExecutionException e) {
+            throw new ReportException("Cannot render documents.", e.getCause());
+        } finally {
+            shutdown();
+        }
+        LOGGER.info("{} document(s) have been rendered during the analysis.", renderedDocuments.size());
+    }
+
+    /**
+     * Stops the worker and releases its {@link Asciidoctor} instance once no
+     * conversion is using it anymore.
+     */
+    private void shutdown() {
+        executorService.shutdownNow();
+        boolean terminated;
+        try {
+            terminated = executorService.awaitTermination(TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        if (asciidoctor != null) {
+            if (terminated) {
+                AsciidoctorPool.release(asciidoctor);
+            } else {
+                LOGGER.warn("The pipeline did not terminate within {}s, discarding its Asciidoctor instance.", TERMINATION_TIMEOUT);
+                AsciidoctorPool.discard(asciidoctor);
+            }
+            asciidoctor = null;
+        }
+    }
+
+    private void submitCompleteDocuments() {
+        for (Iterator<Map.Entry<File, Set<String>>> iterator = pendingDocuments.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<File, Set<String>> entry = iterator.next();
+            if (entry.getValue().isEmpty()) {
+                iterator.remove();
+                File file = entry.getKey();
+                Map<File, List<File>> files = singletonMap(baseDirectories.get(file), singletonList(file));
+                // The reports are copied as the analysis continues to add reports for other rules
+                DocumentRenderer renderer = documentRenderer.toBuilder().reportContext(copyReports()).build();
+                LOGGER.info("Results for document '{}' are complete, rendering it during the analysis.", file.getPath());
+                renderedDocuments.put(file, executorService.submit(() -> renderer.render(getAsciidoctor(), files, conceptResults, constraintResults)));
+            }
+        }
+    }
+
+    private ReportContext copyReports() {
+        ReportContext copy = new ReportContextImpl(reportContext.getOutputDirectory());
+        // Report plugins add their reports while holding the lock of the context
+        synchronized (reportContext) {
+            for (Map<String, RuleResult> results : Arrays.asList(conceptResults, constraintResults)) {
+                for (RuleResult result : results.values()) {
+                    for (ReportContext.Report<?> report : reportContext.getReports(result.getRule())) {
+                        copy.addReport(report.getLabel(), report.getRule(), report.getReportType(), report.getUrl());
+                    }
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the {@link Asciidoctor} instance of the worker, it is acquired
+     * from the {@link AsciidoctorPool} on first use and replaced if it has
+     * been discarded after an abandoned conversion.
+     */
+    private Asciidoctor getAsciidoctor() {
+        if (asciidoctor == null || AsciidoctorPool.isDiscarded(asciidoctor)) {
+            asciidoctor = AsciidoctorPool.acquire();
+        }
+        return asciidoctor;
+    }
+
+    private boolean isAvailable(String ruleId) {
+        return conceptResults.containsKey(ruleId) || constraintResults.containsKey(ruleId);
+    }
+}
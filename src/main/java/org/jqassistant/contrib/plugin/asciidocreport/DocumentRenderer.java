@@ -0,0 +1,211 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static org.asciidoctor.AttributesBuilder.attributes;
+import static org.asciidoctor.OptionsBuilder.options;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.AttributesBuilder;
+import org.asciidoctor.OptionsBuilder;
+import org.asciidoctor.SafeMode;
+import org.asciidoctor.ast.Document;
+import org.jqassistant.contrib.plugin.asciidocreport.search.SearchBoxPostProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders Asciidoc documents to HTML, embedding the {@link RuleResult}s of the
+ * executed rules.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class DocumentRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentRenderer.class);
+
+    private static final String BACKEND_HTML5 = "html5";
+    private static final String HIGHLIGHT_CACHE_DIRECTORY = "asciidoc-highlight-cache";
+    private static final String HTML_SUFFIX = ".html";
+
+    /**
+     * The directory where the HTML documents will be written.
+     */
+    private final File reportDirectory;
+
+    /**
+     * The {@link ReportContext} providing the reports of the rules.
+     */
+    private final ReportContext reportContext;
+
+    /**
+     * The section level for splitting documents into pages, <code>0</code>
+     * disables splitting.
+     */
+    private final int chunkLevel;
+
+    /**
+     * The {@link SourceHighlighter} for the listings of rules.
+     */
+    @Builder.Default
+    private final SourceHighlighter sourceHighlighter = SourceHighlighter.CODERAY;
+
+    /**
+     * Result tables with more rows are rendered using virtual scrolling,
+     * <code>0</code> disables it.
+     */
+    private final int virtualTableThreshold;
+
+    /**
+     * If <code>true</code> the search box querying the search index is embedded.
+     */
+    private final boolean search;
+
+    /**
+     * The maximum duration for converting a document in milliseconds,
+     * <code>0</code> for no limit.
+     */
+    private final long timeout;
+
+    /**
+     * The maximum number of bytes allocated for converting a document,
+     * <code>0</code> for no limit.
+     */
+    private final long allocationBudget;
+
+    /**
+     * Render the given files.
+     *
+     * @param asciidoctor
+     *            The {@link Asciidoctor} instance to use, it must be created
+     *            by {@link ConversionExtensions#create()}.
+     * @param files
+     *            The files to render grouped by their base directories.
+     * @param conceptResults
+     *            The {@link RuleResult}s of the concepts identified by their
+     *            ids.
+     * @param constraintResults
+     *            The {@link RuleResult}s of the constraints identified by their
+     *            ids.
+     */
+    public void render(Asciidoctor asciidoctor, Map<File, List<File>> files, Map<String, RuleResult> conceptResults,
+            Map<String, RuleResult> constraintResults) {
+        LOGGER.info("Writing to report directory " + reportDirectory.getAbsolutePath());
+        ConversionWatchdog watchdog = new ConversionWatchdog(timeout, allocationBudget);
+        List<String> degradedDocuments = new ArrayList<>();
+        // The instance is replaced if a conversion has been abandoned
+        Asciidoctor current = asciidoctor;
+        try {
+            current = render(current, files, watchdog, degradedDocuments, conceptResults, constraintResults);
+        } finally {
+            if (current != asciidoctor) {
+                AsciidoctorPool.release(current);
+            }
+        }
+        if (!degradedDocuments.isEmpty()) {
+            LOGGER.warn("{} document(s) exceeded the conversion budget and have been rendered without results: {}", degradedDocuments.size(),
+                    degradedDocuments);
+        }
+    }
+
+    private Asciidoctor render(Asciidoctor asciidoctor, Map<File, List<File>> files, ConversionWatchdog watchdog, List<String> degradedDocuments,
+            Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults) {
+        for (Map.Entry<File, List<File>> entry : files.entrySet()) {
+            File baseDir = entry.getKey();
+            AttributesBuilder attributesBuilder = attributes().experimental(true);
+            if (sourceHighlighter.getAttribute() != null) {
+                attributesBuilder.sourceHighlighter(sourceHighlighter.getAttribute());
+            }
+            // The output is written by the renderer, i.e. a cancelled conversion never overwrites the degraded rendering
+            OptionsBuilder optionsBuilder = options().toFile(false).headerFooter(true).baseDir(baseDir).backend(BACKEND_HTML5).safe(SafeMode.UNSAFE)
+                    .attributes(attributesBuilder);
+            for (File file : entry.getValue()) {
+                LOGGER.info("-> {}", file.getPath());
+                String documentName = FilenameUtils.getBaseName(file.getName());
+                File outputFile = new File(reportDirectory, documentName + HTML_SUFFIX);
+                // Pages are written by this thread, i.e. not by a cancelled conversion
+                ChunkingPostProcessor chunking = chunkLevel > 0 ? new ChunkingPostProcessor(reportDirectory, documentName, chunkLevel) : null;
+                Asciidoctor instance = asciidoctor;
+                String html;
+                try {
+                    html = watchdog.execute(documentName, () -> convert(instance, file, optionsBuilder, chunking, conceptResults, constraintResults));
+                } catch (ConversionWatchdog.BudgetExceededException e) {
+                    LOGGER.warn("Conversion of '{}' {}, writing a degraded version without results.", file.getPath(), e.getMessage());
+                    degradedDocuments.add(file.getPath());
+                    writeDegraded(outputFile, documentName, e.getMessage(), conceptResults, constraintResults);
+                    ChunkingPostProcessor.removePages(reportDirectory, documentName);
+                    if (e.isAbandoned()) {
+                        // The abandoned conversion is still running within the instance
+                        LOGGER.warn("Discarding the Asciidoctor instance, the remaining documents are converted using a new one.");
+                        AsciidoctorPool.discard(asciidoctor);
+                        asciidoctor = AsciidoctorPool.acquire();
+                    }
+                    continue;
+                }
+                write(outputFile, html);
+                if (chunking != null) {
+                    chunking.writePages();
+                } else {
+                    ChunkingPostProcessor.removePages(reportDirectory, documentName);
+                }
+            }
+        }
+        return asciidoctor;
+    }
+
+    private String convert(Asciidoctor asciidoctor, File file, OptionsBuilder optionsBuilder, ChunkingPostProcessor chunking,
+            Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults) throws Exception {
+        // The extensions are registered on creation of the instance and delegate to the processors of this conversion
+        ConversionExtensions extensions = ConversionExtensions.of(asciidoctor);
+        Document document = asciidoctor.loadFile(file, optionsBuilder.asMap());
+        ConversionExtensions.Conversion.ConversionBuilder conversion = ConversionExtensions.Conversion.builder();
+        conversion.includeProcessor(new IncludeProcessor(document, conceptResults, constraintResults));
+        // Server-side highlighting is expensive, the results are cached between runs
+        HighlightCache highlightCache = sourceHighlighter.isServerSide()
+                ? new HighlightCache(new File(reportContext.getOutputDirectory(), HIGHLIGHT_CACHE_DIRECTORY), sourceHighlighter)
+                : null;
+        if (highlightCache != null) {
+            conversion.treeprocessor(new HighlightCacheTreeprocessor(highlightCache));
+        }
+        conversion.treeprocessor(new TreePreprocessor(conceptResults, constraintResults, reportDirectory, reportContext, virtualTableThreshold));
+        if (highlightCache != null) {
+            conversion.postprocessor(new HighlightCachePostProcessor(highlightCache));
+        }
+        conversion.postprocessor(new RuleTogglePostProcessor());
+        if (search) {
+            conversion.postprocessor(new SearchBoxPostProcessor());
+        }
+        if (chunking != null) {
+            conversion.postprocessor(chunking);
+        }
+        return extensions.convert(conversion.build(), () -> asciidoctor.convertFile(file, optionsBuilder));
+    }
+
+    private void write(File file, String html) {
+        try {
+            FileUtils.writeStringToFile(file, html, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write document " + file.getPath(), e);
+        }
+    }
+
+    private void writeDegraded(File file, String title, String reason, Map<String, RuleResult> conceptResults,
+            Map<String, RuleResult> constraintResults) {
+        try {
+            new DegradedDocumentWriter(conceptResults, constraintResults).write(file, title, reason);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write degraded document " + file.getPath(), e);
+        }
+    }
+}
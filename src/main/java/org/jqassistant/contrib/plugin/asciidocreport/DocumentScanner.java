@@ -0,0 +1,84 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines the rules contained in a document (including the documents it
+ * includes) without converting it.
+ */
+final class DocumentScanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentScanner.class);
+
+    private static final Pattern ANCHOR = Pattern.compile("^\\[\\[([^,\\]]+).*\\]\\]\\s*$");
+    private static final Pattern RULE_BLOCK = Pattern.compile("^\\[.*\\brole\\s*=\\s*\"?(concept|constraint)\\b.*\\]\\s*$");
+    private static final Pattern ID_ATTRIBUTE = Pattern.compile("\\bid\\s*=\\s*\"?([^\",\\]]+)");
+    private static final Pattern INCLUDE = Pattern.compile("^include::([^\\[]+)\\[.*\\]\\s*$");
+
+    private DocumentScanner() {
+    }
+
+    /**
+     * Scans a document for the ids of the rules it contains.
+     *
+     * @param file
+     *            The document.
+     * @return The rule ids or <code>null</code> if the document requires all
+     *         results or cannot be scanned.
+     */
+    static Set<String> scan(File file) {
+        Set<String> ruleIds = new LinkedHashSet<>();
+        return scan(file, ruleIds, new HashSet<>()) ? ruleIds : null;
+    }
+
+    private static boolean scan(File file, Set<String> ruleIds, Set<File> scannedFiles) {
+        if (!scannedFiles.add(file.getAbsoluteFile())) {
+            return true;
+        }
+        List<String> lines;
+        try {
+            lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot scan document '{}'.", file.getPath(), e);
+            return false;
+        }
+        String anchor = null;
+        for (String line : lines) {
+            Matcher includeMatcher = INCLUDE.matcher(line);
+            if (includeMatcher.matches()) {
+                String target = includeMatcher.group(1);
+                File includedFile = new File(file.getParentFile(), target);
+                if (target.startsWith("jQA:") || target.contains("{") || !includedFile.isFile() || !scan(includedFile, ruleIds, scannedFiles)) {
+                    return false;
+                }
+                continue;
+            }
+            Matcher anchorMatcher = ANCHOR.matcher(line);
+            if (anchorMatcher.matches()) {
+                anchor = anchorMatcher.group(1).trim();
+            } else if (RULE_BLOCK.matcher(line).matches()) {
+                Matcher idMatcher = ID_ATTRIBUTE.matcher(line);
+                String id = idMatcher.find() ? idMatcher.group(1).trim() : anchor;
+                if (id != null) {
+                    ruleIds.add(id);
+                }
+                anchor = null;
+            } else if (!line.startsWith("[")) {
+                anchor = null;
+            }
+        }
+        return true;
+    }
+}
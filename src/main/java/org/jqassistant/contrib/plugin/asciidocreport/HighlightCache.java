@@ -0,0 +1,151 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache for the highlighted HTML of rule listings.
+ * <p>
+ * Entries are identified by a hash over the highlighter, the title, the source
+ * and the attributes of a listing (e.g. language and <code>linenums</code>),
+ * including the document attributes affecting highlighting. Listings which are not yet cached are
+ * registered as pending by the {@link HighlightCacheTreeprocessor} and stored
+ * by the {@link HighlightCachePostProcessor} after rendering.
+ */
+public class HighlightCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HighlightCache.class);
+
+    private static final String SUFFIX = ".html";
+
+    private final File directory;
+
+    private final SourceHighlighter sourceHighlighter;
+
+    private final Map<String, String> pending = new HashMap<>();
+
+    private int hits = 0;
+
+    public HighlightCache(File directory, SourceHighlighter sourceHighlighter) {
+        this.directory = directory;
+        this.sourceHighlighter = sourceHighlighter;
+    }
+
+    /**
+     * Determine the key for a listing.
+     *
+     * @param id
+     *            The id of the listing.
+     * @param title
+     *            The title.
+     * @param source
+     *            The source.
+     * @param attributes
+     *            The attributes affecting the rendering of the listing.
+     * @return The key.
+     */
+    public String getKey(String id, String title, String source, Map<String, Object> attributes) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot create digest.", e);
+        }
+        List<String> values = new ArrayList<>(asList(sourceHighlighter.name(), id, title, source));
+        // Sorted as the iteration order of the attributes is not defined
+        for (Map.Entry<String, Object> attribute : new TreeMap<>(attributes).entrySet()) {
+            values.add(attribute.getKey());
+            values.add(String.valueOf(attribute.getValue()));
+        }
+        for (String value : values) {
+            if (value != null) {
+                messageDigest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            messageDigest.update((byte) 0);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Return the cached HTML for a key.
+     *
+     * @param key
+     *            The key.
+     * @return The HTML or <code>null</code> if it is not cached.
+     */
+    public String get(String key) {
+        File file = new File(directory, key + SUFFIX);
+        if (file.exists()) {
+            try {
+                String html = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+                hits++;
+                return html;
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read cached listing from " + file.getPath(), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Register a listing to be cached after rendering.
+     *
+     * @param id
+     *            The id of the listing.
+     * @param key
+     *            The key.
+     */
+    public void addPending(String id, String key) {
+        pending.put(id, key);
+    }
+
+    /**
+     * Return the pending listings.
+     *
+     * @return The keys of the pending listings identified by the listing ids.
+     */
+    public Map<String, String> getPending() {
+        return Collections.unmodifiableMap(pending);
+    }
+
+    /**
+     * Store the HTML of a listing.
+     *
+     * @param key
+     *            The key.
+     * @param html
+     *            The HTML.
+     */
+    public void put(String key, String html) {
+        File file = new File(directory, key + SUFFIX);
+        try {
+            FileUtils.writeStringToFile(file, html, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cached listing to " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Finish rendering of a document, i.e. log the statistics and reset the
+     * pending listings.
+     */
+    public void finish() {
+        LOGGER.debug("Highlighted listings: {} from cache, {} rendered.", hits, pending.size());
+        hits = 0;
+        pending.clear();
+    }
+}
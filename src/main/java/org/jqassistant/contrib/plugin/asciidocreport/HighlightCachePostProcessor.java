@@ -0,0 +1,43 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.util.Map;
+
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.Postprocessor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+/**
+ * {@link Postprocessor} storing the highlighted HTML of listings which have been
+ * registered as pending by the {@link HighlightCacheTreeprocessor} in the
+ * {@link HighlightCache}.
+ * <p>
+ * Must be registered before other {@link Postprocessor}s modifying the
+ * listings (e.g. {@link RuleTogglePostProcessor}).
+ */
+public class HighlightCachePostProcessor extends Postprocessor {
+
+    private final HighlightCache highlightCache;
+
+    public HighlightCachePostProcessor(HighlightCache highlightCache) {
+        this.highlightCache = highlightCache;
+    }
+
+    @Override
+    public String process(Document document, String output) {
+        Map<String, String> pending = highlightCache.getPending();
+        if (document.basebackend("html") && !pending.isEmpty()) {
+            org.jsoup.nodes.Document doc = Jsoup.parse(output, "UTF-8");
+            // Keep the listings exactly as rendered
+            doc.outputSettings().prettyPrint(false);
+            for (Map.Entry<String, String> entry : pending.entrySet()) {
+                Element listing = doc.getElementById(entry.getKey());
+                if (listing != null && listing.hasClass("listingblock")) {
+                    highlightCache.put(entry.getValue(), listing.outerHtml());
+                }
+            }
+        }
+        highlightCache.finish();
+        return output;
+    }
+}
@@ -0,0 +1,106 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.asciidoctor.ast.AbstractBlock;
+import org.asciidoctor.ast.Block;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.Processor;
+import org.jqassistant.contrib.plugin.asciidocreport.ConversionExtensions.ConversionTreeprocessor;
+
+/**
+ * {@link ConversionTreeprocessor} replacing listings of concepts and
+ * constraints by their highlighted HTML if it is available from the
+ * {@link HighlightCache}.
+ * <p>
+ * The replacing blocks keep id and role of the listing, i.e. they are still
+ * recognized by the {@link DocumentParser}.
+ */
+public class HighlightCacheTreeprocessor implements ConversionTreeprocessor {
+
+    private static final String ID = "id";
+    private static final String ROLE = "role";
+    /**
+     * The prefixes of document attributes affecting the highlighting of
+     * listings, e.g. <code>source-linenums-option</code> or
+     * <code>coderay-linenums-mode</code>.
+     */
+    private static final String[] HIGHLIGHTING_ATTRIBUTE_PREFIXES = { "source-", "coderay-" };
+
+    private final HighlightCache highlightCache;
+
+    private Map<String, Object> documentAttributes;
+
+    private Processor nodeFactory;
+
+    public HighlightCacheTreeprocessor(HighlightCache highlightCache) {
+        this.highlightCache = highlightCache;
+    }
+
+    @Override
+    public void process(Document document, Processor nodeFactory) {
+        this.nodeFactory = nodeFactory;
+        documentAttributes = new HashMap<>();
+        for (Map.Entry<String, Object> attribute : toStringKeys(document.getAttributes()).entrySet()) {
+            for (String prefix : HIGHLIGHTING_ATTRIBUTE_PREFIXES) {
+                if (attribute.getKey().startsWith(prefix)) {
+                    documentAttributes.put("document:" + attribute.getKey(), attribute.getValue());
+                }
+            }
+        }
+        process(document, document.getBlocks());
+    }
+
+    /**
+     * Replaces the listings of concepts and constraints in the given blocks of a
+     * parent by their position, {@link List#indexOf(Object)} is not reliable for
+     * the wrappers of the blocks.
+     */
+    @SuppressWarnings("unchecked")
+    private void process(AbstractBlock parent, List<?> blocks) {
+        for (int i = 0; i < blocks.size(); i++) {
+            Object element = blocks.get(i);
+            if (element instanceof AbstractBlock) {
+                AbstractBlock block = (AbstractBlock) element;
+                String role = block.getRole();
+                String id = (String) block.getAttr(ID);
+                if (id != null && isRule(role) && block instanceof Block && "listing".equals(block.getContext())) {
+                    Map<String, Object> attributes = new HashMap<>(documentAttributes);
+                    attributes.putAll(toStringKeys(block.getAttributes()));
+                    String key = highlightCache.getKey(id, block.getTitle(), ((Block) block).source(), attributes);
+                    String html = highlightCache.get(key);
+                    if (html != null) {
+                        Map<String, Object> passAttributes = new HashMap<>();
+                        passAttributes.put(ID, id);
+                        passAttributes.put(ROLE, role);
+                        ((List<Object>) blocks).set(i, nodeFactory.createBlock(parent, "pass", html, passAttributes, new HashMap<>()));
+                    } else {
+                        highlightCache.addPending(id, key);
+                    }
+                } else {
+                    process(block, block.getBlocks());
+                }
+            } else if (element instanceof List<?>) {
+                process(parent, (List<?>) element);
+            }
+        }
+    }
+
+    /**
+     * Converts the keys of attributes to strings, positional attributes are
+     * identified by numbers.
+     */
+    private Map<String, Object> toStringKeys(Map<?, Object> attributes) {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<?, Object> attribute : attributes.entrySet()) {
+            result.put(String.valueOf(attribute.getKey()), attribute.getValue());
+        }
+        return result;
+    }
+
+    private boolean isRule(String role) {
+        return "concept".equalsIgnoreCase(role) || "constraint".equalsIgnoreCase(role);
+    }
+}
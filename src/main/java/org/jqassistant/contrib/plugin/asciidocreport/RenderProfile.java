@@ -0,0 +1,50 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+
+/**
+ * The supported profiles for rendering the results of rules.
+ */
+public enum RenderProfile {
+
+    /**
+     * The results of all rules are rendered including their rows and diagrams.
+     */
+    FULL,
+    /**
+     * Only the results of rules with status <code>FAILURE</code> are rendered
+     * in detail, for all other rules status, severity and number of rows are
+     * rendered.
+     */
+    FAILURES;
+
+    /**
+     * Determines if only a summary shall be rendered for a result with the
+     * given status, i.e. its rows are neither converted nor rendered.
+     *
+     * @param status
+     *            The status of the result.
+     * @return <code>true</code> if only a summary shall be rendered.
+     */
+    public boolean isSummaryOnly(Result.Status status) {
+        return this == FAILURES && status != Result.Status.FAILURE;
+    }
+
+    /**
+     * Returns the {@link RenderProfile} for the given string
+     *
+     * @param renderProfile
+     *            The {@link RenderProfile} as string.
+     * @return The matching {@link RenderProfile}
+     * @throws IllegalArgumentException
+     *             if renderProfile is not valid.
+     */
+    public static RenderProfile fromString(String renderProfile) {
+        for (RenderProfile profile : RenderProfile.values()) {
+            if (profile.name().equalsIgnoreCase(renderProfile)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException(renderProfile + " is not a valid RenderProfile");
+    }
+}
@@ -0,0 +1,226 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes gzip precompressed variants of all text artifacts of a report
+ * directory, e.g. for serving them from a static file server using
+ * <code>Content-Encoding: gzip</code>.
+ * <p>
+ * Files are compressed in parallel. The content hashes of the compressed files
+ * are recorded in the directory, unchanged files are skipped on subsequent
+ * runs. Compressed files of a previous run whose artifact no longer exists are
+ * removed, other compressed files (e.g. archives added by users) are kept.
+ */
+public class ReportCompressor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportCompressor.class);
+
+    private static final Set<String> TEXT_EXTENSIONS = new HashSet<>(
+            Arrays.asList("html", "htm", "svg", "css", "js", "json", "ndjson", "xml", "txt", "csv", "plantuml"));
+
+    private static final String DIGESTS_FILE = ".compression-digests";
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Compress all text artifacts contained in the given directory and its
+     * sub-directories.
+     *
+     * @param directory
+     *            The directory.
+     * @throws ReportException
+     *             If compression fails.
+     */
+    public void compress(File directory) throws ReportException {
+        if (!directory.isDirectory()) {
+            return;
+        }
+        File digestsFile = new File(directory, DIGESTS_FILE);
+        Properties digests = loadDigests(digestsFile);
+        List<File> files = new ArrayList<>();
+        for (File file : FileUtils.listFiles(directory, null, true)) {
+            if (!file.getName().endsWith(GZIP_SUFFIX) && TEXT_EXTENSIONS.contains(FilenameUtils.getExtension(file.getName()).toLowerCase(Locale.ENGLISH))) {
+                files.add(file);
+            }
+        }
+        for (String key : digests.stringPropertyNames()) {
+            removeIfStale(directory, key);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<CompressionResult>> futures = new ArrayList<>();
+            for (File file : files) {
+                String key = directory.toPath().relativize(file.toPath()).toString().replace('\\', '/');
+                futures.add(executorService.submit(() -> compressFile(file, key, digests.getProperty(key))));
+            }
+            Properties updatedDigests = new Properties();
+            long originalSize = 0;
+            long compressedSize = 0;
+            int compressedFiles = 0;
+            for (Future<CompressionResult> future : futures) {
+                CompressionResult result = getResult(future);
+                updatedDigests.setProperty(result.key, result.digest);
+                if (result.compressedSize >= 0) {
+                    compressedFiles++;
+                    originalSize += result.originalSize;
+                    compressedSize += result.compressedSize;
+                }
+            }
+            storeDigests(digestsFile, updatedDigests);
+            LOGGER.info("Compressed {} file(s) in '{}', {} file(s) unchanged.", compressedFiles, directory.getPath(), files.size() - compressedFiles);
+            if (compressedFiles > 0) {
+                LOGGER.info("-> {} bytes compressed to {} bytes (ratio {}).", originalSize, compressedSize, getRatio(originalSize, compressedSize));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private CompressionResult getResult(Future<CompressionResult> future) throws ReportException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReportException("Interrupted while compressing report artifacts.", e);
+        } catch (ExecutionException e) {
+            throw new ReportException("Cannot compress report artifact.", e.getCause());
+        }
+    }
+
+    /**
+     * Remove the compressed file written by a previous run if the artifact it
+     * has been created from no longer exists, e.g. a document or diagram.
+     *
+     * @param directory
+     *            The directory.
+     * @param key
+     *            The key of the artifact recorded in the digests.
+     */
+    private void removeIfStale(File directory, String key) {
+        File file = new File(directory, key);
+        File compressedFile = new File(directory, key + GZIP_SUFFIX);
+        if (!file.exists() && compressedFile.exists()) {
+            LOGGER.debug("Removing stale compressed file '{}'.", compressedFile.getPath());
+            FileUtils.deleteQuietly(compressedFile);
+        }
+    }
+
+    /**
+     * Compress a single file using gzip.
+     *
+     * @param file
+     *            The {@link File}.
+     * @param key
+     *            The key of the file used for the digests.
+     * @param previousDigest
+     *            The digest of the file recorded by the previous run, may be
+     *            <code>null</code>.
+     * @return The {@link CompressionResult}.
+     */
+    private CompressionResult compressFile(File file, String key, String previousDigest) throws IOException {
+        String digest = digest(file);
+        CompressionResult result = new CompressionResult(key, digest, file.length());
+        File compressedFile = new File(file.getPath() + GZIP_SUFFIX);
+        if (digest.equals(previousDigest) && compressedFile.exists()) {
+            LOGGER.debug("Skipping unchanged file '{}'.", file.getPath());
+            return result;
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+                OutputStream outputStream = createGzipOutputStream(new BufferedOutputStream(new FileOutputStream(compressedFile)))) {
+            IOUtils.copy(inputStream, outputStream);
+        }
+        result.compressedSize = compressedFile.length();
+        LOGGER.debug("Compressed '{}' (ratio {}).", file.getPath(), getRatio(result.originalSize, result.compressedSize));
+        return result;
+    }
+
+    private OutputStream createGzipOutputStream(OutputStream outputStream) throws IOException {
+        return new GZIPOutputStream(outputStream) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+    }
+
+    private String digest(File file) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot create digest.", e);
+        }
+        try (InputStream inputStream = new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), messageDigest)) {
+            IOUtils.copy(inputStream, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+        StringBuilder digest = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            digest.append(String.format("%02x", b));
+        }
+        return digest.toString();
+    }
+
+    private Properties loadDigests(File digestsFile) throws ReportException {
+        Properties digests = new Properties();
+        if (digestsFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(digestsFile)) {
+                digests.load(inputStream);
+            } catch (IOException e) {
+                throw new ReportException("Cannot read digests from " + digestsFile.getPath(), e);
+            }
+        }
+        return digests;
+    }
+
+    private void storeDigests(File digestsFile, Properties digests) throws ReportException {
+        try (OutputStream outputStream = Files.newOutputStream(digestsFile.toPath())) {
+            digests.store(outputStream, "Content digests of compressed report artifacts");
+        } catch (IOException e) {
+            throw new ReportException("Cannot write digests to " + digestsFile.getPath(), e);
+        }
+    }
+
+    private String getRatio(long originalSize, long compressedSize) {
+        return originalSize > 0 ? String.format(Locale.ENGLISH, "%.1f%%", 100.0 * compressedSize / originalSize) : "n/a";
+    }
+
+    /**
+     * The result of compressing a single file.
+     */
+    private static class CompressionResult {
+
+        private final String key;
+
+        private final String digest;
+
+        private final long originalSize;
+
+        /**
+         * The size of the compressed file, -1 if the file is unchanged.
+         */
+        private long compressedSize = -1;
+
+        private CompressionResult(String key, String digest, long originalSize) {
+            this.key = key;
+            this.digest = digest;
+            this.originalSize = originalSize;
+        }
+    }
+}
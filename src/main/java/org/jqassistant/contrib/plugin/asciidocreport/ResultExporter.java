@@ -0,0 +1,198 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static org.apache.commons.lang3.StringEscapeUtils.escapeJson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+/**
+ * Exports {@link RuleResult}s in a machine readable format.
+ * <p>
+ * Each {@link RuleResult} is appended as JSON record to a NDJSON file as soon
+ * as it is available, a summary mirroring the <code>jQA:Summary</code> include
+ * is written at the end.
+ */
+public class ResultExporter {
+
+    public static final String RESULTS_FILE = "results.ndjson";
+    public static final String SUMMARY_FILE = "summary.json";
+
+    private final File reportDirectory;
+
+    private final boolean includeRows;
+
+    private Writer writer;
+
+    public ResultExporter(File reportDirectory, boolean includeRows) {
+        this.reportDirectory = reportDirectory;
+        this.includeRows = includeRows;
+    }
+
+    /**
+     * Start the export.
+     *
+     * @throws ReportException
+     *             If the results file cannot be created.
+     */
+    public void begin() throws ReportException {
+        File file = new File(reportDirectory, RESULTS_FILE);
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        } catch (FileNotFoundException e) {
+            throw new ReportException("Cannot create results file " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Append a {@link RuleResult} to the results file.
+     *
+     * @param result
+     *            The {@link RuleResult}.
+     * @throws ReportException
+     *             If the {@link RuleResult} cannot be written.
+     */
+    public synchronized void write(RuleResult result) throws ReportException {
+        ExecutableRule<?> rule = result.getRule();
+        try {
+            writer.write('{');
+            writeRule(writer, rule, result.getEffectiveSeverity(), result.getStatus());
+            writer.write(",\"columns\":[");
+            List<String> columnNames = result.getColumnNames();
+            for (int i = 0; i < columnNames.size(); i++) {
+                writer.write(i > 0 ? "," : "");
+                writeString(writer, columnNames.get(i));
+            }
+            writer.write(']');
+            if (includeRows) {
+                writer.write(",\"rows\":[");
+                boolean first = true;
+                for (Map<String, List<String>> row : result.getRows()) {
+                    writer.write(first ? "" : ",");
+                    writeRow(writer, row);
+                    first = false;
+                }
+                writer.write(']');
+            }
+            writer.write(",\"rowCount\":");
+            writer.write(Integer.toString(result.getRowCount()));
+            writer.write('}');
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new ReportException("Cannot export result of rule " + rule.getId(), e);
+        }
+    }
+
+    /**
+     * Finish the export and write the summary.
+     *
+     * @param conceptResults
+     *            The {@link RuleResult}s of all concepts.
+     * @param constraintResults
+     *            The {@link RuleResult}s of all constraints.
+     * @throws ReportException
+     *             If the summary cannot be written.
+     */
+    public void end(Collection<RuleResult> conceptResults, Collection<RuleResult> constraintResults) throws ReportException {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new ReportException("Cannot close results file.", e);
+        }
+        File file = new File(reportDirectory, SUMMARY_FILE);
+        try (Writer summaryWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            summaryWriter.write('{');
+            writeSummary(summaryWriter, "constraints", constraintResults);
+            summaryWriter.write(',');
+            writeSummary(summaryWriter, "concepts", conceptResults);
+            summaryWriter.write('}');
+            summaryWriter.write('\n');
+        } catch (IOException e) {
+            throw new ReportException("Cannot write summary file " + file.getPath(), e);
+        }
+    }
+
+    private void writeSummary(Writer writer, String name, Collection<RuleResult> results) throws IOException {
+        Set<RuleResult> entries = new TreeSet<>(StatusHelper.getRuleResultComparator());
+        entries.addAll(results);
+        Map<Result.Status, Integer> statistics = new EnumMap<>(Result.Status.class);
+        writeString(writer, name);
+        writer.write(":{\"rules\":[");
+        boolean first = true;
+        for (RuleResult result : entries) {
+            writer.write(first ? "" : ",");
+            writer.write('{');
+            writeRule(writer, result.getRule(), result.getEffectiveSeverity(), result.getStatus());
+            writer.write(",\"rowCount\":");
+            writer.write(Integer.toString(result.getRowCount()));
+            writer.write('}');
+            statistics.merge(result.getStatus(), 1, Integer::sum);
+            first = false;
+        }
+        writer.write("],\"statistics\":{");
+        first = true;
+        for (Map.Entry<Result.Status, Integer> entry : statistics.entrySet()) {
+            writer.write(first ? "" : ",");
+            writeString(writer, entry.getKey().name());
+            writer.write(':');
+            writer.write(entry.getValue().toString());
+            first = false;
+        }
+        writer.write("}}");
+    }
+
+    private void writeRule(Writer writer, ExecutableRule<?> rule, Severity effectiveSeverity, Result.Status status) throws IOException {
+        writeProperty(writer, "id", rule.getId());
+        writer.write(',');
+        writeProperty(writer, "type", rule instanceof Concept ? "concept" : "constraint");
+        writer.write(',');
+        writeProperty(writer, "description", rule.getDescription() != null ? rule.getDescription().trim() : null);
+        writer.write(',');
+        writeProperty(writer, "severity", rule.getSeverity() != null ? rule.getSeverity().name() : null);
+        writer.write(',');
+        writeProperty(writer, "effectiveSeverity", effectiveSeverity != null ? effectiveSeverity.name() : null);
+        writer.write(',');
+        writeProperty(writer, "status", status.name());
+    }
+
+    private void writeRow(Writer writer, Map<String, List<String>> row) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : row.entrySet()) {
+            writer.write(first ? "" : ",");
+            writeString(writer, entry.getKey());
+            writer.write(":[");
+            List<String> values = entry.getValue();
+            for (int i = 0; i < values.size(); i++) {
+                writer.write(i > 0 ? "," : "");
+                writeString(writer, values.get(i));
+            }
+            writer.write(']');
+            first = false;
+        }
+        writer.write('}');
+    }
+
+    private void writeProperty(Writer writer, String name, String value) throws IOException {
+        writeString(writer, name);
+        writer.write(':');
+        writeString(writer, value);
+    }
+
+    private void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writer.write('"');
+            writer.write(escapeJson(value));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import java.io.File;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.analysis.api.rule.Group;
+import com.buschmais.jqassistant.plugin.common.api.scanner.filesystem.FilePatternMatcher;
+
+/**
+ * Restricts the rules, groups and documents which are materialized by the
+ * report plugins, e.g. for rebuilding a part of the report.
+ * <p>
+ * All filters are comma separated lists of patterns supporting the wildcards
+ * <code>*</code> and <code>?</code>. A rule is accepted if its id matches one
+ * of the rule patterns or if it is executed as part of a group matching one of
+ * the group patterns. Documents are matched by their paths relative to their
+ * base directories.
+ */
+public class RuleFilter {
+
+    public static final String PROPERTY_RULES = "asciidoc.report.filter.rules";
+    public static final String PROPERTY_GROUPS = "asciidoc.report.filter.groups";
+    public static final String PROPERTY_DOCUMENTS = "asciidoc.report.filter.documents";
+
+    private final FilePatternMatcher ruleMatcher;
+
+    private final FilePatternMatcher groupMatcher;
+
+    private final FilePatternMatcher documentMatcher;
+
+    private final Deque<Group> groups = new ConcurrentLinkedDeque<>();
+
+    private RuleFilter(String rules, String groups, String documents) {
+        this.ruleMatcher = rules != null ? FilePatternMatcher.Builder.newInstance().include(rules).build() : null;
+        this.groupMatcher = groups != null ? FilePatternMatcher.Builder.newInstance().include(groups).build() : null;
+        this.documentMatcher = documents != null ? FilePatternMatcher.Builder.newInstance().include(documents).build() : null;
+    }
+
+    /**
+     * Create a {@link RuleFilter} from the report properties.
+     *
+     * @param properties
+     *            The report properties.
+     * @return The {@link RuleFilter}.
+     */
+    public static RuleFilter fromProperties(Map<String, Object> properties) {
+        return new RuleFilter((String) properties.get(PROPERTY_RULES), (String) properties.get(PROPERTY_GROUPS),
+                (String) properties.get(PROPERTY_DOCUMENTS));
+    }
+
+    /**
+     * Determines if rules are filtered.
+     *
+     * @return <code>true</code> if a rule or group filter is active.
+     */
+    public boolean isFilteringRules() {
+        return ruleMatcher != null || groupMatcher != null;
+    }
+
+    /**
+     * Notifies the filter that the execution of a {@link Group} begins.
+     *
+     * @param group
+     *            The {@link Group}.
+     */
+    public void beginGroup(Group group) {
+        groups.push(group);
+    }
+
+    /**
+     * Notifies the filter that the execution of the current {@link Group}
+     * ends.
+     */
+    public void endGroup() {
+        groups.poll();
+    }
+
+    /**
+     * Determines if the result of a rule shall be materialized.
+     *
+     * @param rule
+     *            The rule.
+     * @return <code>true</code> if the rule is accepted.
+     */
+    public boolean accepts(ExecutableRule<?> rule) {
+        if (!isFilteringRules()) {
+            return true;
+        }
+        if (ruleMatcher != null && ruleMatcher.accepts(rule.getId())) {
+            return true;
+        }
+        if (groupMatcher != null) {
+            for (Group group : groups) {
+                if (groupMatcher.accepts(group.getId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a document shall be rendered.
+     *
+     * @param baseDir
+     *            The base directory of the document.
+     * @param file
+     *            The document.
+     * @return <code>true</code> if the document is accepted.
+     */
+    public boolean accepts(File baseDir, File file) {
+        if (documentMatcher == null) {
+            return true;
+        }
+        String path = baseDir.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).toString().replace('\\', '/');
+        return documentMatcher.accepts(path);
+    }
+}
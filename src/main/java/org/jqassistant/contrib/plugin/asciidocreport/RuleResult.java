@@ -11,8 +11,9 @@ import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
 
 import lombok.*;
+import org.jqassistant.contrib.plugin.asciidocreport.baseline.BaselineDiff;
 
-@Builder
+@Builder(toBuilder = true)
 @Getter
 @AllArgsConstructor(access = PRIVATE)
 @ToString
@@ -31,4 +32,50 @@ public class RuleResult {
 
     private SubGraph subGraph;
 
+    /**
+     * The hashes of the rows in the order of the rows followed by the hashes of
+     * the omitted rows, <code>null</code> if neither fingerprints nor a
+     * baseline are configured.
+     */
+    private long[] rowHashes;
+
+    /**
+     * The changes compared to the baseline, <code>null</code> if no baseline is
+     * configured.
+     */
+    private BaselineDiff baselineDiff;
+
+    /**
+     * The number of rows which are not contained in {@link #rows}, i.e. which
+     * have not been converted as only a summary of the result is rendered (see
+     * {@link RenderProfile}) or which are only contained in the {@link #csvFile}.
+     * <code>null</code> if all rows are available.
+     */
+    private Integer omittedRows;
+
+    /**
+     * The path of the CSV file containing all rows relative to the report
+     * directory, <code>null</code> if not exported.
+     */
+    private String csvFile;
+
+    /**
+     * Returns the number of rows of the result, including omitted rows.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return omittedRows != null ? rows.size() + omittedRows : rows.size();
+    }
+
+    /**
+     * Determines if only a summary of the result is available, i.e. its rows
+     * have not been converted.
+     *
+     * @return <code>true</code> if only a summary is available.
+     */
+    public boolean isSummary() {
+        return omittedRows != null && rows.isEmpty() && csvFile == null;
+    }
+
 }
@@ -0,0 +1,69 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+/**
+ * The supported strategies for highlighting the sources of rules.
+ */
+public enum SourceHighlighter {
+
+    /**
+     * No highlighting.
+     */
+    NONE(null, false),
+    /**
+     * Server-side highlighting using Coderay.
+     */
+    CODERAY("coderay", true),
+    /**
+     * Client-side highlighting using highlight.js.
+     */
+    HIGHLIGHTJS("highlightjs", false),
+    /**
+     * Client-side highlighting using Prettify.
+     */
+    PRETTIFY("prettify", false);
+
+    private final String attribute;
+
+    private final boolean serverSide;
+
+    SourceHighlighter(String attribute, boolean serverSide) {
+        this.attribute = attribute;
+        this.serverSide = serverSide;
+    }
+
+    /**
+     * Return the value of the Asciidoctor attribute <code>source-highlighter</code>.
+     *
+     * @return The value or <code>null</code> if no highlighting shall be applied.
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Determines if highlighting is performed while rendering the document.
+     *
+     * @return <code>true</code> for server-side highlighting.
+     */
+    public boolean isServerSide() {
+        return serverSide;
+    }
+
+    /**
+     * Returns the {@link SourceHighlighter} for the given string
+     *
+     * @param sourceHighlighter
+     *            The {@link SourceHighlighter} as string.
+     * @return The matching {@link SourceHighlighter}
+     * @throws IllegalArgumentException
+     *             if sourceHighlighter is not valid.
+     */
+    public static SourceHighlighter fromString(String sourceHighlighter) {
+        for (SourceHighlighter highlighter : SourceHighlighter.values()) {
+            if (highlighter.name().equalsIgnoreCase(sourceHighlighter)) {
+                return highlighter;
+            }
+        }
+        throw new IllegalArgumentException(sourceHighlighter + " is not a valid SourceHighlighter");
+    }
+}
@@ -1,12 +1,20 @@
 package org.jqassistant.contrib.plugin.asciidocreport;
 
+import java.awt.Dimension;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,38 +23,71 @@ import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
 import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
 import com.buschmais.jqassistant.core.report.api.ReportContext;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.asciidoctor.ast.AbstractBlock;
 import org.asciidoctor.ast.AbstractNode;
 import org.asciidoctor.ast.Document;
-import org.asciidoctor.extension.Treeprocessor;
+import org.asciidoctor.extension.Processor;
+import org.jqassistant.contrib.plugin.asciidocreport.ConversionExtensions.ConversionTreeprocessor;
+import org.jqassistant.contrib.plugin.asciidocreport.baseline.BaselineDiff;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.DeferredDiagrams;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.InteractiveDiagramWriter;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ThumbnailWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.buschmais.jqassistant.core.report.api.ReportContext.*;
+import static java.util.stream.Collectors.toList;
 
-public class TreePreprocessor extends Treeprocessor {
+public class TreePreprocessor implements ConversionTreeprocessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TreePreprocessor.class);
 
+    private static final String GRAPH_VIEWER_RESOURCE = "graph-viewer.js";
+    private static final String GRAPH_VIEWER_FILE = "jqassistant-graph-viewer.js";
+    private static final String RESULT_TABLE_RESOURCE = "result-table.js";
+    private static final String RESULT_TABLE_FILE = "jqassistant-result-table.js";
+
+    private static final String NEW_ROW = "<tr class=\"new\" style=\"background-color: #fff3cd\">";
+
     private final Map<String, RuleResult> conceptResults;
     private final Map<String, RuleResult> constraintResults;
     private final File reportDirectoy;
     private final ReportContext reportContext;
 
+    /**
+     * Tables with more rows are rendered using virtual scrolling,
+     * <code>0</code> disables it.
+     */
+    private final int virtualTableThreshold;
+
+    private Processor nodeFactory;
+
+    private int interactiveDiagrams = 0;
+
+    private int virtualTables = 0;
+
     public TreePreprocessor(Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults, File reportDirectory,
             ReportContext reportContext) {
+        this(conceptResults, constraintResults, reportDirectory, reportContext, 0);
+    }
+
+    public TreePreprocessor(Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults, File reportDirectory,
+            ReportContext reportContext, int virtualTableThreshold) {
         this.conceptResults = conceptResults;
         this.constraintResults = constraintResults;
         this.reportDirectoy = reportDirectory;
         this.reportContext = reportContext;
+        this.virtualTableThreshold = virtualTableThreshold;
     }
 
-    public Document process(Document document) {
+    @Override
+    public void process(Document document, Processor nodeFactory) {
+        this.nodeFactory = nodeFactory;
         DocumentParser documentParser = DocumentParser.parse(document);
         enrichResults(documentParser.getConceptBlocks(), conceptResults);
         enrichResults(documentParser.getConstraintBlocks(), constraintResults);
-        return document;
     }
 
     private void enrichResults(Map<String, AbstractBlock> blocks, Map<String, RuleResult> results) {
@@ -57,11 +98,25 @@ public class TreePreprocessor extends Treeprocessor {
             List<String> content = renderRuleResult(result);
             AbstractNode parent = block.getParent();
             List<AbstractBlock> siblings = ((AbstractBlock) parent).getBlocks();
-            int i = siblings.indexOf(block);
-            siblings.add(i + 1, createBlock((AbstractBlock) parent, "paragraph", content, new HashMap<String, Object>(), new HashMap<>()));
+            int i = indexOf(siblings, block);
+            siblings.add(i + 1, nodeFactory.createBlock((AbstractBlock) parent, "paragraph", content, new HashMap<String, Object>(), new HashMap<>()));
         }
     }
 
+    /**
+     * Determines the index of a block by identity, {@link List#indexOf(Object)}
+     * is not reliable for blocks which have been created by extensions (e.g.
+     * the {@link HighlightCacheTreeprocessor}).
+     */
+    private int indexOf(List<AbstractBlock> blocks, AbstractBlock block) {
+        for (int i = 0; i < blocks.size(); i++) {
+            if (blocks.get(i) == block) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Renders a {@link RuleResult} to HTML.
      *
@@ -80,23 +135,43 @@ public class TreePreprocessor extends Treeprocessor {
             content.add(renderStatusContent(status));
             Severity severity = rule.getSeverity();
             content.add("Severity: " + severity.getInfo(result.getEffectiveSeverity()));
+            if (result.getBaselineDiff() != null) {
+                content.add(renderBaselineContent(result.getBaselineDiff(), status));
+            }
+            if (result.getOmittedRows() != null) {
+                content.add("Rows: " + result.getRowCount());
+            }
             content.add("</p>");
             content.add("</div>");
             List<ReportContext.Report<?>> reports = reportContext.getReports(rule);
-            if (!reports.isEmpty()) {
-                for (ReportContext.Report<?> report : reports) {
-                    switch (report.getReportType()) {
-                    case IMAGE:
-                        content.add(renderImage(getReportUrl(report)));
-                        break;
-                    case LINK:
+            // Rows and diagrams are not available if only a summary is rendered, links to reports of other plugins are kept
+            for (ReportContext.Report<?> report : reports) {
+                switch (report.getReportType()) {
+                case IMAGE:
+                    if (!result.isSummary()) {
+                        renderDeferredDiagram(report.getUrl());
+                        content.add(renderImage(report));
+                    }
+                    break;
+                case LINK:
+                    if (report.getUrl().getPath().endsWith(InteractiveDiagramWriter.SUFFIX)) {
+                        if (!result.isSummary()) {
+                            content.add(renderInteractiveDiagram(getReportUrl(report), rule.getId()));
+                        }
+                    } else {
                         content.add("Report: ");
                         content.add(renderLink(getReportUrl(report), report.getLabel()));
-                        break;
                     }
+                    break;
+                }
+            }
+            if (!result.isSummary()) {
+                if (reports.isEmpty()) {
+                    content.add(renderResultTable(result));
+                }
+                if (result.getCsvFile() != null) {
+                    content.add(renderCsvLink(result));
                 }
-            } else {
-                content.add(renderResultTable(result));
             }
             content.add("</div>");
         } else {
@@ -123,6 +198,26 @@ public class TreePreprocessor extends Treeprocessor {
         return url.toExternalForm();
     }
 
+    /**
+     * Renders the diagram referenced by the given URL if its rendering has
+     * been deferred.
+     *
+     * @param url
+     *            The {@link URL} of the diagram.
+     */
+    private void renderDeferredDiagram(URL url) {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                DeferredDiagrams deferredDiagrams = DeferredDiagrams.get(reportContext);
+                if (deferredDiagrams != null) {
+                    deferredDiagrams.render(Paths.get(url.toURI()).toFile());
+                }
+            } catch (URISyntaxException e) {
+                LOGGER.warn("Cannot determine path from URL '" + url + "'.", e);
+            }
+        }
+    }
+
     /**
      * Determines a URL relative to the {@link #reportDirectoy}.
      *
@@ -142,6 +237,18 @@ public class TreePreprocessor extends Treeprocessor {
         return relativePath.toString().replace('\\', '/');
     }
 
+    /**
+     * Renders the link to the CSV file containing all rows of a result.
+     *
+     * @param result
+     *            The {@link RuleResult}.
+     * @return The rendered link.
+     */
+    private String renderCsvLink(RuleResult result) {
+        String label = result.getOmittedRows() != null ? "Download all " + result.getRowCount() + " rows (CSV)" : "Download rows (CSV)";
+        return "<div class=\"paragraph\"><p>" + renderLink(result.getCsvFile(), label) + "</p></div>";
+    }
+
     private String renderLink(String url, String label) {
         StringBuilder a = new StringBuilder();
         a.append("<a href=").append('"').append(url).append('"').append(">");
@@ -154,6 +261,34 @@ public class TreePreprocessor extends Treeprocessor {
         return "Status: " + "<span class=\"" + StatusHelper.getStatusColor(status) + "\">" + status.toString() + "</span>";
     }
 
+    /**
+     * Renders the changes of a result compared to the baseline.
+     *
+     * @param baselineDiff
+     *            The {@link BaselineDiff}.
+     * @param status
+     *            The current status.
+     * @return The rendered changes.
+     */
+    private String renderBaselineContent(BaselineDiff baselineDiff, Result.Status status) {
+        if (baselineDiff.getPreviousStatus() == null) {
+            return "Baseline: <span class=\"new\">new rule</span>";
+        }
+        List<String> changes = new ArrayList<>();
+        if (baselineDiff.isStatusChanged(status)) {
+            Result.Status previousStatus = baselineDiff.getPreviousStatus();
+            changes.add("status changed from <span class=\"" + StatusHelper.getStatusColor(previousStatus) + "\">" + previousStatus + "</span>");
+        }
+        int newRows = baselineDiff.getNewRows().cardinality();
+        if (newRows > 0) {
+            changes.add(newRows + " new row(s)");
+        }
+        if (baselineDiff.getRemovedRows() > 0) {
+            changes.add(baselineDiff.getRemovedRows() + " removed row(s)");
+        }
+        return "Baseline: " + (changes.isEmpty() ? "unchanged" : String.join(", ", changes));
+    }
+
     /**
      * Renders a {@link RuleResult }as table.
      *
@@ -162,6 +297,9 @@ public class TreePreprocessor extends Treeprocessor {
      * @return The rendered table.
      */
     private String renderResultTable(RuleResult result) {
+        if (virtualTableThreshold > 0 && result.getRows().size() > virtualTableThreshold) {
+            return renderVirtualTable(result);
+        }
         List<String> columnNames = result.getColumnNames();
         StringBuilder tableBuilder = new StringBuilder();
         tableBuilder.append("<table>").append('\n');
@@ -173,11 +311,16 @@ public class TreePreprocessor extends Treeprocessor {
         tableBuilder.append("</tr>").append('\n');
         tableBuilder.append("</thead>").append('\n');
         tableBuilder.append("<tbody>").append('\n');
-        for (Map<String, List<String>> row : result.getRows()) {
-            tableBuilder.append("<tr>").append('\n');
+        // Rows which are not contained in the baseline are highlighted
+        BitSet newRows = result.getBaselineDiff() != null ? result.getBaselineDiff().getNewRows() : new BitSet();
+        List<Map<String, List<String>>> rows = result.getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, List<String>> row = rows.get(i);
+            tableBuilder.append(newRows.get(i) ? NEW_ROW : "<tr>").append('\n');
             for (String columnName : columnNames) {
                 tableBuilder.append("<td>").append('\n');
-                for (String value : row.get(columnName)) {
+                // Merged results may contain rows without values for all columns
+                for (String value : row.getOrDefault(columnName, Collections.emptyList())) {
                     tableBuilder.append(StringEscapeUtils.escapeHtml4(value)).append('\n');
                 }
                 tableBuilder.append("</td>").append('\n');
@@ -190,17 +333,131 @@ public class TreePreprocessor extends Treeprocessor {
     }
 
     /**
-     * Embed an image with the given file name.
+     * Renders a {@link RuleResult} as JSON which is displayed by a client-side
+     * table creating only the elements of the visible rows.
+     * <p>
+     * Each distinct value is embedded once, the cells of the rows refer to them
+     * by index.
+     *
+     * @param result
+     *            The {@link RuleResult}.
+     * @return The HTML to be embedded in the document.
+     */
+    private String renderVirtualTable(RuleResult result) {
+        if (virtualTables == 0) {
+            writeResource(RESULT_TABLE_RESOURCE, RESULT_TABLE_FILE);
+        }
+        String id = "jqa-table-" + virtualTables++;
+        List<String> columnNames = result.getColumnNames();
+        Map<String, Integer> valueIndexes = new LinkedHashMap<>();
+        StringBuilder rowsBuilder = new StringBuilder();
+        for (Map<String, List<String>> row : result.getRows()) {
+            rowsBuilder.append(rowsBuilder.length() > 0 ? ",[" : "[");
+            for (int i = 0; i < columnNames.size(); i++) {
+                // Merged results may contain rows without values for all columns
+                String value = String.join("\n", row.getOrDefault(columnNames.get(i), Collections.emptyList()));
+                Integer valueIndex = valueIndexes.computeIfAbsent(value, key -> valueIndexes.size());
+                rowsBuilder.append(i > 0 ? "," : "").append(valueIndex);
+            }
+            rowsBuilder.append(']');
+        }
+        StringBuilder content = new StringBuilder();
+        content.append("<div class=\"jqa-table\" id=\"").append(id).append("\">");
+        // escapeJson escapes '/', i.e. the content cannot close the script element
+        content.append("<script type=\"application/json\">{\"columns\":").append(toJson(columnNames));
+        content.append(",\"values\":").append(toJson(valueIndexes.keySet()));
+        content.append(",\"rows\":[").append(rowsBuilder).append(']');
+        if (result.getBaselineDiff() != null) {
+            content.append(",\"newRows\":").append(result.getBaselineDiff().getNewRows().stream().boxed().collect(toList()));
+        }
+        content.append("}</script>");
+        content.append("</div>");
+        content.append("<script src=\"").append(RESULT_TABLE_FILE).append("\"></script>");
+        content.append("<script>jQATable.attach('").append(id).append("');</script>");
+        return content.toString();
+    }
+
+    private String toJson(Collection<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String value : values) {
+            json.append(json.length() > 1 ? ",\"" : "\"").append(StringEscapeUtils.escapeJson(value)).append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Embed the client-side viewer for a graph written by the
+     * {@link InteractiveDiagramWriter}, the graph is loaded on demand.
      *
      * @param url
-     *            The {@link URL} of the image to embed.
+     *            The URL of the graph.
+     * @param ruleId
+     *            The id of the rule.
+     * @return The HTML to be embedded in the document.
+     */
+    private String renderInteractiveDiagram(String url, String ruleId) {
+        if (interactiveDiagrams == 0) {
+            writeResource(GRAPH_VIEWER_RESOURCE, GRAPH_VIEWER_FILE);
+        }
+        String id = "jqa-graph-" + interactiveDiagrams++;
+        StringBuilder content = new StringBuilder();
+        content.append("<div class=\"jqa-graph\" id=\"").append(id).append("\" data-graph=\"").append(StringEscapeUtils.escapeHtml4(url))
+                .append("\" data-rule=\"").append(StringEscapeUtils.escapeHtml4(ruleId)).append("\">");
+        content.append("<button type=\"button\">Show interactive diagram</button>");
+        content.append("</div>");
+        content.append("<script src=\"").append(GRAPH_VIEWER_FILE).append("\"></script>");
+        content.append("<script>jQAGraph.attach('").append(id).append("');</script>");
+        return content.toString();
+    }
+
+    private void writeResource(String resource, String fileName) {
+        File file = new File(reportDirectoy, fileName);
+        try (InputStream inputStream = TreePreprocessor.class.getResourceAsStream(resource)) {
+            FileUtils.copyInputStreamToFile(inputStream, file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write " + resource + " to " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Embed the image of a report linking to the full-size image.
+     * <p>
+     * If a thumbnail has been written next to the image it is embedded instead.
+     * The dimensions of the embedded image are read from its header, so the
+     * browser can lay out the page before images are loaded. Images are loaded
+     * lazily, i.e. not before they are scrolled into view.
+     *
+     * @param report
+     *            The {@link Report} of the image to embed.
      * @return The HTML to be embedded in the document.
      */
-    private String renderImage(String url) {
+    private String renderImage(ReportContext.Report<?> report) {
+        String url = getReportUrl(report);
+        String src = url;
+        Dimension dimension = null;
+        if ("file".equals(report.getUrl().getProtocol())) {
+            try {
+                File imageFile = Paths.get(report.getUrl().toURI()).toFile();
+                File thumbnailFile = ThumbnailWriter.getThumbnailFile(imageFile);
+                if (thumbnailFile.exists()) {
+                    imageFile = thumbnailFile;
+                    src = getRelativeReportUrl(thumbnailFile.toURI().toURL());
+                }
+                if (imageFile.exists()) {
+                    dimension = ThumbnailWriter.getDimension(imageFile);
+                }
+            } catch (URISyntaxException | MalformedURLException e) {
+                LOGGER.warn("Cannot determine thumbnail of '" + report.getUrl() + "'.", e);
+            }
+        }
         StringBuilder content = new StringBuilder();
         content.append("<div>");
         content.append("<a href=\"" + url + "\">");
-        content.append("<img src=\"" + url + "\"/>");
+        content.append("<img src=\"" + src + "\" loading=\"lazy\"");
+        if (dimension != null) {
+            content.append(" width=\"" + dimension.width + "\" height=\"" + dimension.height + "\"");
+        }
+        content.append("/>");
         content.append("</a>");
         content.append("</div>");
         return content.toString();
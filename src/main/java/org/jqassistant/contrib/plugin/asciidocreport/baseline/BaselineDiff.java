@@ -0,0 +1,82 @@
+package org.jqassistant.contrib.plugin.asciidocreport.baseline;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The changes of a rule result compared to the {@link Fingerprint} of the
+ * baseline.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BaselineDiff {
+
+    /**
+     * The status of the baseline, <code>null</code> if the rule has not been
+     * executed by the baseline.
+     */
+    private Result.Status previousStatus;
+
+    private Severity previousSeverity;
+
+    /**
+     * The indexes of the rows which are not contained in the baseline.
+     */
+    private BitSet newRows;
+
+    /**
+     * The number of distinct rows of the baseline which are not contained in
+     * the current result anymore.
+     */
+    private int removedRows;
+
+    /**
+     * Compare the rows of a result with a {@link Fingerprint}.
+     *
+     * @param baseline
+     *            The {@link Fingerprint} of the baseline, may be
+     *            <code>null</code>.
+     * @param rowHashes
+     *            The hashes of the rows of the current result in the order of
+     *            the rows.
+     * @return The {@link BaselineDiff}.
+     */
+    public static BaselineDiff compare(Fingerprint baseline, long[] rowHashes) {
+        BitSet newRows = new BitSet(rowHashes.length);
+        for (int i = 0; i < rowHashes.length; i++) {
+            if (baseline == null || !baseline.contains(rowHashes[i])) {
+                newRows.set(i);
+            }
+        }
+        int removedRows = 0;
+        if (baseline != null) {
+            long[] current = Fingerprint.sortDistinct(rowHashes);
+            for (long rowHash : baseline.getRowHashes()) {
+                if (Arrays.binarySearch(current, rowHash) < 0) {
+                    removedRows++;
+                }
+            }
+        }
+        return new BaselineDiff(baseline != null ? baseline.getStatus() : null, baseline != null ? baseline.getSeverity() : null, newRows,
+                removedRows);
+    }
+
+    /**
+     * Determines if the status has changed compared to the baseline.
+     *
+     * @param status
+     *            The current status.
+     * @return <code>true</code> if the status has changed.
+     */
+    public boolean isStatusChanged(Result.Status status) {
+        return previousStatus != null && previousStatus != status;
+    }
+}
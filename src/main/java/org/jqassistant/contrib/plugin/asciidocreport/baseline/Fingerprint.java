@@ -0,0 +1,133 @@
+package org.jqassistant.contrib.plugin.asciidocreport.baseline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+
+/**
+ * The compact fingerprint of a {@link RuleResult}, i.e. status, severity, row
+ * count and the sorted set of 64 bit hashes of its rows.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class Fingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private String ruleId;
+
+    private Result.Status status;
+
+    private Severity severity;
+
+    private int rowCount;
+
+    /**
+     * The sorted hashes of the rows without duplicates.
+     */
+    private long[] rowHashes;
+
+    /**
+     * Create the {@link Fingerprint} of a {@link RuleResult}.
+     *
+     * @param result
+     *            The {@link RuleResult}.
+     * @return The {@link Fingerprint}.
+     */
+    public static Fingerprint of(RuleResult result) {
+        return new Fingerprint(result.getRule().getId(), result.getStatus(), result.getEffectiveSeverity(), result.getRowCount(),
+                sortDistinct(getRowHashes(result)));
+    }
+
+    /**
+     * Returns the hashes of the rows of a {@link RuleResult} in the order of
+     * the rows.
+     *
+     * @param result
+     *            The {@link RuleResult}.
+     * @return The hashes, they are calculated from the rows if not provided by
+     *         the {@link RuleResult} (e.g. if it has been read from a
+     *         snapshot).
+     */
+    public static long[] getRowHashes(RuleResult result) {
+        long[] rowHashes = result.getRowHashes();
+        if (rowHashes == null) {
+            rowHashes = new long[result.getRows().size()];
+            for (int i = 0; i < rowHashes.length; i++) {
+                rowHashes[i] = hash(result.getColumnNames(), result.getRows().get(i));
+            }
+        }
+        return rowHashes;
+    }
+
+    /**
+     * Determines if the row with the given hash is contained in this
+     * {@link Fingerprint}.
+     *
+     * @param rowHash
+     *            The hash of the row.
+     * @return <code>true</code> if the row is contained.
+     */
+    public boolean contains(long rowHash) {
+        return Arrays.binarySearch(rowHashes, rowHash) >= 0;
+    }
+
+    /**
+     * Calculates a 64 bit hash (FNV-1a) of a row which is stable across
+     * analyses. The columns are hashed in the order of the column names, i.e.
+     * independent of the iteration order of the row.
+     *
+     * @param columnNames
+     *            The column names.
+     * @param row
+     *            The row, i.e. the labels of the values per column.
+     * @return The hash.
+     */
+    public static long hash(List<String> columnNames, Map<String, List<String>> row) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String columnName : columnNames) {
+            hash = hash(hash, columnName);
+            List<String> values = row.get(columnName);
+            if (values != null) {
+                for (String value : values) {
+                    hash = hash(hash, value);
+                }
+            }
+            // Separates the columns
+            hash = (hash ^ 0xff) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        // Separates the values, 0xfe does not occur in UTF-8
+        return (hash ^ 0xfe) * FNV_PRIME;
+    }
+
+    static long[] sortDistinct(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+}
@@ -0,0 +1,118 @@
+package org.jqassistant.contrib.plugin.asciidocreport.baseline;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes and reads the {@link Fingerprint}s of an analysis, serving as
+ * baseline for the next analysis.
+ * <p>
+ * The file is written and read entry by entry, i.e. only the
+ * {@link Fingerprint}s are held in memory but not the rows.
+ */
+public class FingerprintFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintFile.class);
+
+    public static final String FINGERPRINT_FILE = "results.fingerprints";
+
+    static final int MAGIC = 0x6A514146; // "jQAF"
+    static final int VERSION = 1;
+
+    static final byte ENTRY = 1;
+    static final byte END = 0;
+
+    private FingerprintFile() {
+    }
+
+    /**
+     * Write the {@link Fingerprint}s of the given {@link RuleResult}s.
+     *
+     * @param directory
+     *            The directory to write the file to.
+     * @param results
+     *            The {@link RuleResult}s.
+     * @return The written file.
+     * @throws ReportException
+     *             If the file cannot be written.
+     */
+    public static File write(File directory, Collection<RuleResult> results) throws ReportException {
+        File file = new File(directory, FINGERPRINT_FILE);
+        List<RuleResult> sortedResults = new ArrayList<>(results);
+        sortedResults.sort(Comparator.comparing(result -> result.getRule().getId()));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (RuleResult result : sortedResults) {
+                Fingerprint fingerprint = Fingerprint.of(result);
+                out.writeByte(ENTRY);
+                out.writeUTF(fingerprint.getRuleId());
+                out.writeUTF(fingerprint.getStatus().name());
+                out.writeUTF(fingerprint.getSeverity() != null ? fingerprint.getSeverity().name() : "");
+                out.writeInt(fingerprint.getRowCount());
+                out.writeInt(fingerprint.getRowHashes().length);
+                for (long rowHash : fingerprint.getRowHashes()) {
+                    out.writeLong(rowHash);
+                }
+            }
+            out.writeByte(END);
+        } catch (IOException e) {
+            throw new ReportException("Cannot write fingerprints " + file.getPath(), e);
+        }
+        LOGGER.info("Wrote fingerprints of {} result(s) to '{}'.", sortedResults.size(), file.getPath());
+        return file;
+    }
+
+    /**
+     * Read the {@link Fingerprint}s of a baseline.
+     *
+     * @param baseline
+     *            The fingerprint file or the directory containing it.
+     * @return The {@link Fingerprint}s identified by the ids of their rules, an
+     *         empty {@link Map} if the baseline does not exist.
+     * @throws ReportException
+     *             If the file cannot be read.
+     */
+    public static Map<String, Fingerprint> read(File baseline) throws ReportException {
+        File file = baseline.isDirectory() ? new File(baseline, FINGERPRINT_FILE) : baseline;
+        Map<String, Fingerprint> fingerprints = new HashMap<>();
+        if (!file.exists()) {
+            LOGGER.warn("Baseline '{}' does not exist, all results are considered as new.", file.getPath());
+            return fingerprints;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a jQAssistant fingerprint file.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported fingerprint file version " + version);
+            }
+            while (in.readByte() == ENTRY) {
+                String ruleId = in.readUTF();
+                Result.Status status = Result.Status.valueOf(in.readUTF());
+                String severity = in.readUTF();
+                int rowCount = in.readInt();
+                long[] rowHashes = new long[in.readInt()];
+                for (int i = 0; i < rowHashes.length; i++) {
+                    rowHashes[i] = in.readLong();
+                }
+                fingerprints.put(ruleId, new Fingerprint(ruleId, status, severity.isEmpty() ? null : Severity.valueOf(severity), rowCount, rowHashes));
+            }
+        } catch (IOException e) {
+            throw new ReportException("Cannot read fingerprints " + file.getPath(), e);
+        }
+        LOGGER.info("Read fingerprints of {} result(s) from baseline '{}'.", fingerprints.size(), file.getPath());
+        return fingerprints;
+    }
+}
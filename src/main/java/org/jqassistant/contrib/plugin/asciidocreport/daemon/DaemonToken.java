@@ -0,0 +1,101 @@
+package org.jqassistant.contrib.plugin.asciidocreport.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The secret shared by a {@link RenderDaemon} and its
+ * {@link RenderDaemonClient}s.
+ * <p>
+ * The daemon creates a random token on start and writes it to a file which is
+ * only accessible by its owner. Clients must present this token, i.e. only
+ * processes of the same user are able to submit jobs.
+ */
+public final class DaemonToken {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private DaemonToken() {
+    }
+
+    /**
+     * Returns the default token file of a daemon listening on the given port.
+     *
+     * @param port
+     *            The port.
+     * @return The token file.
+     */
+    public static File getDefaultFile(int port) {
+        return new File(System.getProperty("user.home"), ".jqassistant/asciidoc-render-daemon-" + port + ".token");
+    }
+
+    /**
+     * Create a new token and write it to a file readable only by its owner.
+     *
+     * @param file
+     *            The token file, an existing file is replaced.
+     * @return The token.
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    static String create(File file) throws IOException {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        Path path = file.toPath();
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // The permissions are set on creation, i.e. the token is never readable by others
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            // Best effort, e.g. on Windows the access is restricted by the ACL of the user home
+            Files.createFile(path);
+            File tokenFile = path.toFile();
+            tokenFile.setReadable(false, false);
+            tokenFile.setReadable(true, true);
+            tokenFile.setWritable(false, false);
+            tokenFile.setWritable(true, true);
+        }
+        Files.write(path, token.toString().getBytes(StandardCharsets.US_ASCII));
+        return token.toString();
+    }
+
+    /**
+     * Read the token of a daemon.
+     *
+     * @param file
+     *            The token file.
+     * @return The token.
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Compare a presented token with the expected one in constant time.
+     *
+     * @param expected
+     *            The expected token.
+     * @param actual
+     *            The presented token, may be <code>null</code>.
+     * @return <code>true</code> if the tokens are equal.
+     */
+    static boolean matches(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII), actual.getBytes(StandardCharsets.US_ASCII));
+    }
+}
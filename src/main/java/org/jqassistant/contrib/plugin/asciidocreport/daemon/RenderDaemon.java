@@ -0,0 +1,183 @@
+package org.jqassistant.contrib.plugin.asciidocreport.daemon;
+
+import static org.asciidoctor.AttributesBuilder.attributes;
+import static org.asciidoctor.OptionsBuilder.options;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.*;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.impl.ReportContextImpl;
+
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.SafeMode;
+import org.jqassistant.contrib.plugin.asciidocreport.AsciidoctorPool;
+import org.jqassistant.contrib.plugin.asciidocreport.ConversionExtensions;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.RenderJob;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotEntry;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived process holding a warmed up {@link Asciidoctor} instance which
+ * renders documents on behalf of the {@link RenderDaemonClient}.
+ * <p>
+ * The daemon only accepts connections from the local host, jobs are processed
+ * one after another. Clients must present the {@link DaemonToken} which is
+ * written on start to a file only accessible by the user running the daemon.
+ */
+public class RenderDaemon {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderDaemon.class);
+
+    public static final int DEFAULT_PORT = 9876;
+
+    static final int OPERATION_RENDER = 1;
+    static final int OPERATION_SHUTDOWN = 2;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    private static final int WARMUP_ITERATIONS = 3;
+
+    /**
+     * The maximum time in milliseconds to wait for data from a client.
+     */
+    static final int READ_TIMEOUT = 30000;
+
+    private final int port;
+
+    private final File tokenFile;
+
+    private Asciidoctor asciidoctor;
+
+    public RenderDaemon(int port) {
+        this(port, DaemonToken.getDefaultFile(port));
+    }
+
+    public RenderDaemon(int port, File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Starts the daemon, the port and the token file may be passed as first and
+     * second argument.
+     *
+     * @param args
+     *            The arguments.
+     * @throws IOException
+     *             If the daemon cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        File tokenFile = args.length > 1 ? new File(args[1]) : DaemonToken.getDefaultFile(port);
+        new RenderDaemon(port, tokenFile).run();
+    }
+
+    /**
+     * Warm up the {@link Asciidoctor} instance and process jobs until a
+     * shutdown is requested.
+     *
+     * @throws IOException
+     *             If the server socket cannot be created.
+     */
+    public void run() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            warmUp();
+            String token = DaemonToken.create(tokenFile);
+            LOGGER.info("Render daemon is listening on port {}, the token has been written to '{}'.", serverSocket.getLocalPort(), tokenFile.getPath());
+            boolean running = true;
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    // A stalled client must not block the daemon
+                    socket.setSoTimeout(READ_TIMEOUT);
+                    running = process(socket, token);
+                } catch (IOException e) {
+                    LOGGER.warn("Cannot process render job.", e);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tokenFile.toPath());
+        }
+        LOGGER.info("Render daemon stopped.");
+    }
+
+    private void warmUp() {
+        LOGGER.info("Warming up Asciidoctor...");
+        asciidoctor = ConversionExtensions.create();
+        String document = "= Warm Up\n\n== Rules\n\n[[warmup:Concept]]\n[source,cypher,role=concept]\n.Description\n----\nMATCH (n) RETURN n\n----\n";
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            asciidoctor.convert(document,
+                    options().backend("html5").safe(SafeMode.UNSAFE).attributes(attributes().experimental(true).sourceHighlighter("coderay")).asMap());
+        }
+    }
+
+    /**
+     * Process a connection.
+     *
+     * @param socket
+     *            The {@link Socket}.
+     * @param token
+     *            The token clients must present.
+     * @return <code>false</code> if a shutdown has been requested.
+     */
+    private boolean process(Socket socket, String token) throws IOException {
+        SnapshotReader reader = new SnapshotReader(socket.getInputStream());
+        DataOutputStream response = new DataOutputStream(socket.getOutputStream());
+        if (!DaemonToken.matches(token, reader.readString())) {
+            LOGGER.warn("Rejected connection from port {} presenting an invalid token.", socket.getPort());
+            response.writeByte(STATUS_ERROR);
+            response.writeUTF("Invalid token");
+            response.flush();
+            return true;
+        }
+        int operation = reader.readInt();
+        if (operation == OPERATION_SHUTDOWN) {
+            LOGGER.info("Shutdown requested.");
+            response.writeByte(STATUS_OK);
+            response.writeUTF("");
+            response.flush();
+            return false;
+        }
+        RenderJob renderJob = reader.readRenderJob();
+        Map<File, List<File>> files = renderJob.getFiles();
+        ReportContext reportContext = new ReportContextImpl(renderJob.getOutputDirectory());
+        Map<String, RuleResult> conceptResults = new HashMap<>();
+        Map<String, RuleResult> constraintResults = new HashMap<>();
+        SnapshotEntry entry;
+        while ((entry = reader.next()) != null) {
+            RuleResult ruleResult = entry.getRuleResult();
+            for (SnapshotEntry.Report report : entry.getReports()) {
+                reportContext.addReport(report.getLabel(), ruleResult.getRule(), report.getReportType(), report.getUrl());
+            }
+            (ruleResult.getRule() instanceof Concept ? conceptResults : constraintResults).put(ruleResult.getRule().getId(), ruleResult);
+        }
+        if (AsciidoctorPool.isDiscarded(asciidoctor)) {
+            // A conversion of a previous job has been abandoned
+            warmUp();
+        }
+        long start = System.currentTimeMillis();
+        try {
+            renderJob.createDocumentRenderer(renderJob.getReportDirectory(), reportContext).render(asciidoctor, files, conceptResults, constraintResults);
+            response.writeByte(STATUS_OK);
+            response.writeUTF("");
+            LOGGER.info("Rendered {} document(s) in {}ms.", files.values().stream().mapToInt(List::size).sum(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Rendering failed.", e);
+            response.writeByte(STATUS_ERROR);
+            response.writeUTF(String.valueOf(e.getMessage()));
+        }
+        response.flush();
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+package org.jqassistant.contrib.plugin.asciidocreport.daemon;
+
+import static org.jqassistant.contrib.plugin.asciidocreport.daemon.RenderDaemon.*;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+
+import org.jqassistant.contrib.plugin.asciidocreport.DocumentRenderer;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delegates rendering of documents to a {@link RenderDaemon} running on the
+ * local host.
+ */
+public class RenderDaemonClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderDaemonClient.class);
+
+    private static final int CONNECT_TIMEOUT = 500;
+
+    /**
+     * The default maximum time in milliseconds to wait for the response of the
+     * daemon.
+     */
+    public static final int DEFAULT_TIMEOUT = 600000;
+
+    private final int port;
+
+    private final File tokenFile;
+
+    private final int timeout;
+
+    public RenderDaemonClient(int port) {
+        this(port, DaemonToken.getDefaultFile(port), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param port
+     *            The port of the daemon.
+     * @param tokenFile
+     *            The token file written by the daemon.
+     * @param timeout
+     *            The maximum time in milliseconds to wait for the response of
+     *            the daemon.
+     */
+    public RenderDaemonClient(int port, File tokenFile, int timeout) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Render the given files using the {@link RenderDaemon}.
+     *
+     * @param documentRenderer
+     *            The {@link DocumentRenderer} providing the rendering options.
+     * @param files
+     *            The files to render grouped by their base directories.
+     * @param conceptResults
+     *            The {@link RuleResult}s of the concepts.
+     * @param constraintResults
+     *            The {@link RuleResult}s of the constraints.
+     * @param reportContext
+     *            The {@link ReportContext} providing the reports of the rules.
+     * @return <code>true</code> if the documents have been rendered by the
+     *         daemon, <code>false</code> if no daemon is available, rendering
+     *         failed or the daemon did not respond in time.
+     */
+    public boolean render(DocumentRenderer documentRenderer, Map<File, List<File>> files, Map<String, RuleResult> conceptResults,
+            Map<String, RuleResult> constraintResults, ReportContext reportContext) {
+        if (!tokenFile.exists()) {
+            LOGGER.info("No render daemon available on port {} (token file '{}' does not exist), rendering in-process.", port, tokenFile.getPath());
+            return false;
+        }
+        try (Socket socket = new Socket()) {
+            String token = DaemonToken.read(tokenFile);
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            } catch (IOException e) {
+                LOGGER.info("No render daemon available on port {}, rendering in-process.", port);
+                return false;
+            }
+            LOGGER.info("Delegating rendering to daemon on port {}.", port);
+            // A hung daemon must not block the build
+            socket.setSoTimeout(timeout);
+            SnapshotWriter writer = new SnapshotWriter(socket.getOutputStream());
+            writer.writeString(token);
+            writer.writeInt(OPERATION_RENDER);
+            writer.writeRenderJob(documentRenderer, reportContext.getOutputDirectory(), files);
+            write(writer, conceptResults, reportContext);
+            write(writer, constraintResults, reportContext);
+            writer.finish();
+            DataInputStream response = new DataInputStream(socket.getInputStream());
+            byte status = response.readByte();
+            String message = response.readUTF();
+            if (status != STATUS_OK) {
+                LOGGER.warn("Render daemon failed ({}), rendering in-process.", message);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Communication with render daemon failed, rendering in-process.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Request the {@link RenderDaemon} to shut down.
+     *
+     * @return <code>true</code> if the daemon acknowledged the request.
+     */
+    public boolean shutdown() {
+        try (Socket socket = new Socket()) {
+            String token = DaemonToken.read(tokenFile);
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+            SnapshotWriter writer = new SnapshotWriter(socket.getOutputStream());
+            writer.writeString(token);
+            writer.writeInt(OPERATION_SHUTDOWN);
+            writer.finish();
+            return new DataInputStream(socket.getInputStream()).readByte() == STATUS_OK;
+        } catch (IOException e) {
+            LOGGER.debug("Cannot shut down render daemon on port {}.", port, e);
+            return false;
+        }
+    }
+
+    private void write(SnapshotWriter writer, Map<String, RuleResult> results, ReportContext reportContext) throws IOException {
+        for (RuleResult result : results.values()) {
+            writer.write(result, reportContext.getReports(result.getRule()));
+        }
+    }
+}
@@ -3,24 +3,40 @@ package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
 import java.util.Map;
 
 import com.buschmais.jqassistant.core.analysis.api.Result;
 import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.analysis.api.rule.Group;
 import com.buschmais.jqassistant.core.report.api.ReportContext;
 import com.buschmais.jqassistant.core.report.api.ReportException;
 import com.buschmais.jqassistant.core.report.api.ReportPlugin;
 import com.buschmais.jqassistant.core.report.api.graph.SubGraphFactory;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
 import net.sourceforge.plantuml.FileFormat;
+import org.jqassistant.contrib.plugin.asciidocreport.RenderProfile;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleFilter;
 import smetana.core.Z;
 
 public class ComponentDiagramReportPlugin implements ReportPlugin {
+
+    public static final String REPORT_DIRECTORY = "plantuml";
+
     private static final String PROPERTY_FILE_FORMAT = "asciidoc.report.plantuml.format";
     private static final String PROPERTY_RENDER_MODE = "asciidoc.report.plantuml.rendermode";
+    private static final String PROPERTY_SHARDING = "asciidoc.report.plantuml.sharding";
+    private static final String PROPERTY_LAYERED_THRESHOLD = "asciidoc.report.plantuml.layered.threshold";
+    private static final String PROPERTY_DEFERRED = "asciidoc.report.plantuml.deferred";
+    private static final String PROPERTY_OPTIMIZE = "asciidoc.report.plantuml.optimize";
+    private static final String PROPERTY_OPTIMIZE_PRECISION = "asciidoc.report.plantuml.optimize.precision";
+    private static final String PROPERTY_THUMBNAIL = "asciidoc.report.plantuml.thumbnail";
+    private static final String PROPERTY_THUMBNAIL_SIZE = "asciidoc.report.plantuml.thumbnail.size";
+    private static final String PROPERTY_PROFILE = "asciidoc.report.profile";
 
     private static final String DEFAULT_RENDER_MODE = RenderMode.GRAPHVIZ.name();
     private static final String DEFAULT_FILE_FORMAT = FileFormat.SVG.name();
+    private static final String DEFAULT_SHARDING = ShardingMode.NONE.name();
 
     private PlantUMLRenderer plantUMLRenderer;
 
@@ -32,6 +48,23 @@ public class ComponentDiagramReportPlugin implements ReportPlugin {
 
     private String renderMode;
 
+    private ShardingMode shardingMode;
+
+    private int layeredThreshold;
+
+    private boolean deferred;
+
+    private RuleFilter ruleFilter;
+
+    private SvgOptimizer svgOptimizer;
+
+    private RenderProfile renderProfile;
+
+    /**
+     * The registry of deferred diagrams of the running analysis.
+     */
+    private DeferredDiagrams deferredDiagrams;
+
     @Override
     public void initialize() {
         plantUMLRenderer = new PlantUMLRenderer();
@@ -40,23 +73,103 @@ public class ComponentDiagramReportPlugin implements ReportPlugin {
     @Override
     public void configure(ReportContext reportContext, Map<String, Object> properties) {
         this.reportContext = reportContext;
-        directory = reportContext.getReportDirectory("plantuml");
+        directory = reportContext.getReportDirectory(REPORT_DIRECTORY);
         fileFormat = (String) properties.getOrDefault(PROPERTY_FILE_FORMAT, DEFAULT_FILE_FORMAT);
         renderMode = (String) properties.getOrDefault(PROPERTY_RENDER_MODE, DEFAULT_RENDER_MODE);
+        shardingMode = ShardingMode.fromString((String) properties.getOrDefault(PROPERTY_SHARDING, DEFAULT_SHARDING));
+        layeredThreshold = Integer.parseInt(properties.getOrDefault(PROPERTY_LAYERED_THRESHOLD, "0").toString());
+        deferred = Boolean.parseBoolean(properties.getOrDefault(PROPERTY_DEFERRED, "false").toString());
+        ruleFilter = RuleFilter.fromProperties(properties);
+        renderProfile = RenderProfile.fromString(properties.getOrDefault(PROPERTY_PROFILE, RenderProfile.FULL.name()).toString());
+        boolean optimize = Boolean.parseBoolean(properties.getOrDefault(PROPERTY_OPTIMIZE, "false").toString());
+        svgOptimizer = optimize ? new SvgOptimizer(Integer.parseInt(properties.getOrDefault(PROPERTY_OPTIMIZE_PRECISION, "1").toString())) : null;
+        boolean thumbnail = Boolean.parseBoolean(properties.getOrDefault(PROPERTY_THUMBNAIL, "false").toString());
+        ThumbnailWriter thumbnailWriter = thumbnail
+                ? new ThumbnailWriter(Integer.parseInt(properties.getOrDefault(PROPERTY_THUMBNAIL_SIZE, "200").toString()))
+                : null;
+        plantUMLRenderer = new PlantUMLRenderer(svgOptimizer, thumbnailWriter);
+    }
+
+    @Override
+    public void begin() {
+        deferredDiagrams = DeferredDiagrams.join(reportContext);
+    }
+
+    @Override
+    public void end() {
+        if (svgOptimizer != null) {
+            svgOptimizer.logSummary();
+        }
+        // Diagrams not rendered by any document are released if this is the last participant
+        deferredDiagrams.leave(reportContext);
+        deferredDiagrams = null;
+    }
+
+    @Override
+    public void beginGroup(Group group) {
+        ruleFilter.beginGroup(group);
+    }
+
+    @Override
+    public void endGroup() {
+        ruleFilter.endGroup();
     }
 
     @Override
     public void setResult(Result<? extends ExecutableRule> result) throws ReportException {
+        if (!ruleFilter.accepts(result.getRule())) {
+            return;
+        }
+        if (renderProfile.isSummaryOnly(result.getStatus())) {
+            // Only status, severity and number of rows are rendered for this result
+            return;
+        }
         SubGraphFactory subGraphFactory = new SubGraphFactory();
         SubGraph subGraph = subGraphFactory.createSubGraph(result);
-        String componentDiagram = plantUMLRenderer.createComponentDiagram(subGraph, renderMode);
-        File file = plantUMLRenderer.renderDiagram(componentDiagram, result.getRule(), directory, fileFormat);
-        URL url;
+        // Large graphs are rendered using the built-in layout
+        String effectiveRenderMode = layeredThreshold > 0 && LayeredDiagramRenderer.countNodes(subGraph) > layeredThreshold ? RenderMode.LAYERED.name()
+                : renderMode;
+        if (RenderMode.fromString(effectiveRenderMode) == RenderMode.INTERACTIVE) {
+            File file = new InteractiveDiagramWriter().write(subGraph, result.getRule(), directory);
+            addReport("Interactive Component Diagram", result.getRule(), ReportContext.ReportType.LINK, toURL(file));
+            return;
+        }
+        List<File> files;
+        if (deferred) {
+            // Rendering is triggered by the first document embedding the diagram
+            files = plantUMLRenderer.getComponentDiagramFiles(subGraph, effectiveRenderMode, shardingMode, result.getRule(), directory, fileFormat);
+            // The render task must not retain this plugin, i.e. the report context
+            PlantUMLRenderer renderer = plantUMLRenderer;
+            ShardingMode sharding = shardingMode;
+            ExecutableRule<?> rule = result.getRule();
+            File diagramDirectory = directory;
+            String format = fileFormat;
+            deferredDiagrams.register(rule.getId(), files,
+                    () -> renderer.renderComponentDiagrams(subGraph, effectiveRenderMode, sharding, rule, diagramDirectory, format));
+        } else {
+            files = plantUMLRenderer.renderComponentDiagrams(subGraph, effectiveRenderMode, shardingMode, result.getRule(), directory, fileFormat);
+        }
+        for (int i = 0; i < files.size(); i++) {
+            String label = files.size() > 1 ? "Component Diagram (" + (i + 1) + "/" + files.size() + ")" : "Component Diagram";
+            addReport(label, result.getRule(), ReportContext.ReportType.IMAGE, toURL(files.get(i)));
+        }
+    }
+
+    /**
+     * Adds a report to the {@link ReportContext}, which is not thread-safe while
+     * results may be set concurrently.
+     */
+    private void addReport(String label, ExecutableRule<?> rule, ReportContext.ReportType reportType, URL url) {
+        synchronized (reportContext) {
+            reportContext.addReport(label, rule, reportType, url);
+        }
+    }
+
+    private URL toURL(File file) throws ReportException {
         try {
-            url = file.toURI().toURL();
+            return file.toURI().toURL();
         } catch (MalformedURLException e) {
             throw new ReportException("Cannot convert file '" + file.getAbsolutePath() + "' to URL");
         }
-        reportContext.addReport("Component Diagram", result.getRule(), ReportContext.ReportType.IMAGE, url);
     }
 }
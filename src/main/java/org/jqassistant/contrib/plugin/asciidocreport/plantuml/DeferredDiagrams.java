@@ -0,0 +1,195 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.api.ReportPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry for diagrams whose rendering is deferred until a document requests
+ * them.
+ * <p>
+ * The {@link ComponentDiagramReportPlugin} registers the files of a diagram
+ * together with a render task instead of rendering them immediately. The
+ * {@link org.jqassistant.contrib.plugin.asciidocreport.TreePreprocessor}
+ * renders a diagram as soon as one of its files is embedded in a document.
+ * <p>
+ * A registry is scoped to the {@link ReportContext} of an analysis, i.e.
+ * analyses running in the same JVM (e.g. modules of a reactor build) do not
+ * share diagrams. The report plugins join the registry on
+ * {@link ReportPlugin#begin()} and leave it on {@link ReportPlugin#end()},
+ * diagrams which have never been requested are reported and discarded as soon
+ * as the last plugin has left, independent of the order of the plugins.
+ */
+public final class DeferredDiagrams {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeferredDiagrams.class);
+
+    /**
+     * The registries of the running analyses, {@link ReportContext}s of
+     * aborted analyses are not retained.
+     */
+    private static final Map<ReportContext, DeferredDiagrams> REGISTRIES = new WeakHashMap<>();
+
+    private final Map<File, Diagram> diagrams = new ConcurrentHashMap<>();
+
+    private int participants = 0;
+
+    private DeferredDiagrams() {
+    }
+
+    /**
+     * Join the registry of an analysis, it is created by the first
+     * participant.
+     *
+     * @param reportContext
+     *            The {@link ReportContext} of the analysis.
+     * @return The {@link DeferredDiagrams}.
+     */
+    public static DeferredDiagrams join(ReportContext reportContext) {
+        synchronized (REGISTRIES) {
+            DeferredDiagrams deferredDiagrams = REGISTRIES.computeIfAbsent(reportContext, key -> new DeferredDiagrams());
+            deferredDiagrams.participants++;
+            return deferredDiagrams;
+        }
+    }
+
+    /**
+     * Returns the registry of an analysis.
+     *
+     * @param reportContext
+     *            The {@link ReportContext} of the analysis.
+     * @return The {@link DeferredDiagrams} or <code>null</code> if no plugin
+     *         has joined it.
+     */
+    public static DeferredDiagrams get(ReportContext reportContext) {
+        synchronized (REGISTRIES) {
+            return REGISTRIES.get(reportContext);
+        }
+    }
+
+    /**
+     * Leave the registry of an analysis. If the last participant leaves all
+     * diagrams which have not been rendered are discarded.
+     *
+     * @param reportContext
+     *            The {@link ReportContext} of the analysis.
+     */
+    public void leave(ReportContext reportContext) {
+        synchronized (REGISTRIES) {
+            if (--participants > 0) {
+                return;
+            }
+            REGISTRIES.remove(reportContext, this);
+        }
+        Set<String> skippedDiagrams = discard();
+        if (!skippedDiagrams.isEmpty()) {
+            LOGGER.info("Skipped rendering {} diagram(s) of rules not referenced by any document: {}", skippedDiagrams.size(), skippedDiagrams);
+        }
+    }
+
+    /**
+     * Register a diagram.
+     *
+     * @param ruleId
+     *            The id of the rule the diagram belongs to.
+     * @param files
+     *            The files that will be written by the render task.
+     * @param renderTask
+     *            The render task.
+     */
+    public void register(String ruleId, List<File> files, Supplier<List<File>> renderTask) {
+        Diagram diagram = new Diagram(ruleId, files, renderTask);
+        for (File file : files) {
+            diagrams.put(file.getAbsoluteFile(), diagram);
+        }
+    }
+
+    /**
+     * Render the diagram containing the given file if it has been deferred.
+     *
+     * @param file
+     *            The file.
+     * @return <code>true</code> if the diagram has been rendered by this call.
+     */
+    public boolean render(File file) {
+        Diagram diagram = diagrams.get(file.getAbsoluteFile());
+        return diagram != null && diagram.render();
+    }
+
+    /**
+     * Render all deferred diagrams, e.g. if documents are rendered by a
+     * process which cannot access this registry.
+     *
+     * @return The number of rendered diagrams.
+     */
+    public int renderAll() {
+        int count = 0;
+        for (Diagram diagram : new LinkedHashSet<>(diagrams.values())) {
+            if (diagram.render()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Discard all diagrams which have not been rendered.
+     *
+     * @return The ids of the rules whose diagrams have been skipped.
+     */
+    private Set<String> discard() {
+        Set<String> ruleIds = new TreeSet<>();
+        for (Diagram diagram : new LinkedHashSet<>(diagrams.values())) {
+            // Rendered diagrams have already been removed from the registry
+            diagram.remove();
+            ruleIds.add(diagram.ruleId);
+        }
+        return ruleIds;
+    }
+
+    /**
+     * A deferred diagram which may consist of several files.
+     */
+    private class Diagram {
+
+        private final String ruleId;
+
+        private final List<File> files;
+
+        private final Supplier<List<File>> renderTask;
+
+        private boolean rendered = false;
+
+        private Diagram(String ruleId, List<File> files, Supplier<List<File>> renderTask) {
+            this.ruleId = ruleId;
+            this.files = files;
+            this.renderTask = renderTask;
+        }
+
+        private synchronized boolean render() {
+            if (rendered) {
+                return false;
+            }
+            LOGGER.info("Rendering deferred diagram for '{}'.", ruleId);
+            List<File> renderedFiles = renderTask.get();
+            if (!renderedFiles.equals(files)) {
+                LOGGER.warn("Deferred diagram for '{}' has been rendered to {} instead of {}.", ruleId, renderedFiles, files);
+            }
+            rendered = true;
+            remove();
+            return true;
+        }
+
+        private void remove() {
+            for (File file : files) {
+                diagrams.remove(file.getAbsoluteFile(), this);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import static org.apache.commons.lang3.StringEscapeUtils.escapeEcmaScript;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+/**
+ * Serializes a {@link SubGraph} for the client-side graph viewer.
+ * <p>
+ * The graph is written as compact JSON wrapped into a call of
+ * <code>jQAGraph.load(ruleId, graph)</code>, i.e. the file can be loaded as
+ * script from the local file system where browsers block requests for plain
+ * JSON files. The JSON document has the following structure:
+ *
+ * <pre>
+ * {
+ *   "labels": [ "Artifact", ... ],
+ *   "types": [ "DEPENDS_ON", ... ],
+ *   "folders": [ [ label, parentFolderIndex ], ... ],
+ *   "nodes": [ [ id, label, [ labelIndex, ... ], folderIndex ], ... ],
+ *   "relationships": [ [ startNodeId, endNodeId, typeIndex ], ... ]
+ * }
+ * </pre>
+ *
+ * Folder indexes are <code>-1</code> for the top level.
+ */
+public class InteractiveDiagramWriter {
+
+    /**
+     * The suffix of the written files.
+     */
+    public static final String SUFFIX = ".graph.js";
+
+    /**
+     * Write the given {@link SubGraph}.
+     *
+     * @param subGraph
+     *            The {@link SubGraph}.
+     * @param rule
+     *            The rule.
+     * @param directory
+     *            The output directory.
+     * @return The written file.
+     */
+    public File write(SubGraph subGraph, ExecutableRule<?> rule, File directory) {
+        Graph graph = new Graph();
+        if (subGraph.getParent() != null) {
+            addFolder(subGraph, -1, graph);
+        } else {
+            addContent(subGraph, -1, graph);
+        }
+        File file = new File(directory, rule.getId().replaceAll("\\:", "_") + SUFFIX);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write("jQAGraph.load(");
+            writeString(rule.getId(), writer);
+            writer.write(",{\"labels\":");
+            writeStrings(graph.labels.keySet(), writer);
+            writer.write(",\"types\":");
+            writeStrings(graph.types.keySet(), writer);
+            writer.write(",\"folders\":[");
+            writeJoined(graph.folders, writer);
+            writer.write("],\"nodes\":[");
+            writeJoined(graph.nodes, writer);
+            writer.write("],\"relationships\":[");
+            writeJoined(graph.relationships, writer);
+            writer.write("]});\n");
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write interactive diagram to " + file.getPath(), e);
+        }
+        return file;
+    }
+
+    private void addFolder(SubGraph subGraph, int parentFolder, Graph graph) {
+        int folder = graph.folders.size();
+        StringBuilder entry = new StringBuilder("[");
+        appendString(subGraph.getParent().getLabel(), entry);
+        entry.append(',').append(parentFolder).append(']');
+        graph.folders.add(entry.toString());
+        graph.nodeIds.add(subGraph.getParent().getId());
+        addContent(subGraph, folder, graph);
+    }
+
+    private void addContent(SubGraph subGraph, int folder, Graph graph) {
+        for (Node node : subGraph.getNodes().values()) {
+            if (!node.equals(subGraph.getParent()) && graph.nodeIds.add(node.getId())) {
+                StringBuilder entry = new StringBuilder("[");
+                entry.append(node.getId()).append(',');
+                appendString(node.getLabel(), entry);
+                entry.append(",[");
+                boolean first = true;
+                for (String label : node.getLabels()) {
+                    entry.append(first ? "" : ",").append(graph.labels.computeIfAbsent(label, key -> graph.labels.size()));
+                    first = false;
+                }
+                entry.append("],").append(folder).append(']');
+                graph.nodes.add(entry.toString());
+            }
+        }
+        for (Relationship relationship : subGraph.getRelationships().values()) {
+            if (graph.relationshipIds.add(relationship.getId())) {
+                graph.relationships.add("[" + relationship.getStartNode().getId() + "," + relationship.getEndNode().getId() + ","
+                        + graph.types.computeIfAbsent(relationship.getType(), key -> graph.types.size()) + "]");
+            }
+        }
+        for (SubGraph child : subGraph.getSubGraphs().values()) {
+            addFolder(child, folder, graph);
+        }
+    }
+
+    private void writeStrings(Collection<String> values, Writer writer) throws IOException {
+        writer.write('[');
+        boolean first = true;
+        for (String value : values) {
+            writer.write(first ? "" : ",");
+            writeString(value, writer);
+            first = false;
+        }
+        writer.write(']');
+    }
+
+    private void writeJoined(List<String> entries, Writer writer) throws IOException {
+        for (int i = 0; i < entries.size(); i++) {
+            writer.write(i > 0 ? "," : "");
+            writer.write(entries.get(i));
+        }
+    }
+
+    private void writeString(String value, Writer writer) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        appendString(value, builder);
+        writer.write(builder.toString());
+    }
+
+    private void appendString(String value, StringBuilder builder) {
+        if (value == null) {
+            builder.append("null");
+        } else {
+            // ECMAScript escaping also covers "</script>" sequences
+            builder.append('"').append(escapeEcmaScript(value)).append('"');
+        }
+    }
+
+    /**
+     * The serialized parts of the graph.
+     */
+    private static class Graph {
+
+        private final Map<String, Integer> labels = new LinkedHashMap<>();
+
+        private final Map<String, Integer> types = new LinkedHashMap<>();
+
+        private final List<String> folders = new ArrayList<>();
+
+        private final List<String> nodes = new ArrayList<>();
+
+        private final List<String> relationships = new ArrayList<>();
+
+        private final Set<Long> nodeIds = new HashSet<>();
+
+        private final Set<Long> relationshipIds = new HashSet<>();
+    }
+}
@@ -0,0 +1,524 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import static org.apache.commons.lang3.StringEscapeUtils.escapeXml10;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders component diagrams as SVG using a layered (Sugiyama-style) layout,
+ * without PlantUML or external processes.
+ * <p>
+ * Folders (i.e. nested {@link SubGraph}s) are laid out bottom-up as blocks:
+ * the content of each folder is layered and ordered independently, the folder
+ * itself is then treated as a single item of its parent. Relationships between
+ * nodes of different folders are lifted to the folders for the layout of the
+ * parent. Within a block cycles are broken by reversing back edges, layers are
+ * assigned by longest path and the order of each layer is determined by
+ * barycenter sweeps. Layers exceeding a maximum width are wrapped.
+ */
+public class LayeredDiagramRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LayeredDiagramRenderer.class);
+
+    private static final double CHAR_WIDTH = 7;
+    private static final double LINE_HEIGHT = 16;
+    private static final double NODE_PADDING = 10;
+    private static final double MIN_NODE_WIDTH = 60;
+    private static final double FOLDER_PADDING = 15;
+    private static final double FOLDER_TITLE_HEIGHT = 22;
+    private static final double HORIZONTAL_GAP = 30;
+    private static final double VERTICAL_GAP = 60;
+    private static final double MAX_ROW_WIDTH = 2400;
+    private static final int ORDERING_SWEEPS = 4;
+
+    private static final String STYLE = ".node rect{fill:#FEFECE;stroke:#A80036;stroke-width:1.5}"
+            + ".folder rect{fill:none;stroke:#000000;stroke-width:1.2}" + ".edge line{stroke:#A80036;stroke-width:1}"
+            + "text{font-family:sans-serif;font-size:13px;fill:#000000}" + "text.stereotype{font-style:italic;font-size:12px}"
+            + "text.type{font-size:11px}";
+
+    /**
+     * Render a {@link SubGraph} as SVG.
+     *
+     * @param subGraph
+     *            The {@link SubGraph}.
+     * @param file
+     *            The SVG file.
+     */
+    public void render(SubGraph subGraph, File file) {
+        long start = System.currentTimeMillis();
+        Map<Long, Item> items = new HashMap<>();
+        Item root;
+        if (subGraph.getParent() != null) {
+            // The graph itself is a folder
+            root = new Item(null, null, null, true);
+            root.children.add(createFolder(subGraph, root, items));
+        } else {
+            root = createFolder(subGraph, null, items);
+        }
+        List<Relationship> relationships = new ArrayList<>();
+        collectRelationships(subGraph, relationships, new HashSet<>());
+        List<Edge> edges = new ArrayList<>();
+        for (Relationship relationship : relationships) {
+            Item from = items.get(relationship.getStartNode().getId());
+            Item to = items.get(relationship.getEndNode().getId());
+            if (from != null && to != null && from != to) {
+                edges.add(new Edge(from, to, relationship.getType()));
+                lift(from, to);
+            }
+        }
+        layout(root);
+        setAbsolutePositions(root, 0, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            write(root, edges, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write component diagram to " + file.getPath(), e);
+        }
+        LOGGER.info("Rendered layered diagram '{}' with {} nodes and {} relationships in {}ms.", file.getPath(), items.size(), edges.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Count the nodes of a {@link SubGraph} including all nested
+     * {@link SubGraph}s.
+     *
+     * @param subGraph
+     *            The {@link SubGraph}.
+     * @return The number of nodes.
+     */
+    public static int countNodes(SubGraph subGraph) {
+        int count = subGraph.getNodes().size();
+        for (SubGraph child : subGraph.getSubGraphs().values()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    private Item createFolder(SubGraph subGraph, Item parent, Map<Long, Item> items) {
+        Node parentNode = subGraph.getParent();
+        Item folder = new Item(parent, parentNode != null ? parentNode.getLabel() : null, null, true);
+        if (parentNode != null) {
+            items.put(parentNode.getId(), folder);
+        }
+        for (Node node : subGraph.getNodes().values()) {
+            if (!node.equals(parentNode) && !items.containsKey(node.getId())) {
+                Set<String> labels = node.getLabels();
+                String stereotype = labels.isEmpty() ? null : "«" + StringUtils.join(labels, " ") + "»";
+                Item item = new Item(folder, node.getLabel(), stereotype, false);
+                folder.children.add(item);
+                items.put(node.getId(), item);
+            }
+        }
+        for (SubGraph child : subGraph.getSubGraphs().values()) {
+            folder.children.add(createFolder(child, folder, items));
+        }
+        return folder;
+    }
+
+    private void collectRelationships(SubGraph subGraph, List<Relationship> relationships, Set<Long> ids) {
+        for (Relationship relationship : subGraph.getRelationships().values()) {
+            if (ids.add(relationship.getId())) {
+                relationships.add(relationship);
+            }
+        }
+        for (SubGraph child : subGraph.getSubGraphs().values()) {
+            collectRelationships(child, relationships, ids);
+        }
+    }
+
+    /**
+     * Lift an edge to the items of the innermost folder containing both ends.
+     */
+    private void lift(Item from, Item to) {
+        while (from.depth > to.depth) {
+            from = from.parent;
+        }
+        while (to.depth > from.depth) {
+            to = to.parent;
+        }
+        while (from.parent != to.parent) {
+            from = from.parent;
+            to = to.parent;
+        }
+        if (from != to) {
+            from.successors.add(to);
+        }
+    }
+
+    /**
+     * Lay out the content of a folder, the nested folders first.
+     */
+    private void layout(Item folder) {
+        for (Item child : folder.children) {
+            if (child.folder) {
+                layout(child);
+            } else {
+                child.width = Math.max(MIN_NODE_WIDTH, CHAR_WIDTH * Math.max(length(child.label), length(child.stereotype)) + 2 * NODE_PADDING);
+                child.height = (child.stereotype != null ? 2 : 1) * LINE_HEIGHT + 2 * NODE_PADDING;
+            }
+        }
+        List<Item> items = folder.children;
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).index = i;
+        }
+        int[][] successors = getSuccessors(items);
+        int[][] predecessors = invert(successors);
+        int[] layers = assignLayers(successors, predecessors);
+        List<List<Item>> rows = order(items, layers, successors, predecessors);
+        // Positions relative to the folder
+        boolean framed = folder.parent != null;
+        double top = framed ? FOLDER_TITLE_HEIGHT + FOLDER_PADDING : 0;
+        double left = framed ? FOLDER_PADDING : 0;
+        double maxRowWidth = MAX_ROW_WIDTH;
+        for (Item item : items) {
+            maxRowWidth = Math.max(maxRowWidth, item.width);
+        }
+        double y = top;
+        double contentWidth = 0;
+        List<List<Item>> wrappedRows = new ArrayList<>();
+        List<Double> rowWidths = new ArrayList<>();
+        for (List<Item> row : rows) {
+            List<Item> current = new ArrayList<>();
+            double x = 0;
+            for (Item item : row) {
+                if (x > 0 && x + item.width > maxRowWidth) {
+                    wrappedRows.add(current);
+                    rowWidths.add(x - HORIZONTAL_GAP);
+                    current = new ArrayList<>();
+                    x = 0;
+                }
+                item.x = x;
+                current.add(item);
+                x += item.width + HORIZONTAL_GAP;
+            }
+            if (!current.isEmpty()) {
+                wrappedRows.add(current);
+                rowWidths.add(x - HORIZONTAL_GAP);
+            }
+        }
+        for (double rowWidth : rowWidths) {
+            contentWidth = Math.max(contentWidth, rowWidth);
+        }
+        for (int i = 0; i < wrappedRows.size(); i++) {
+            List<Item> row = wrappedRows.get(i);
+            double offset = left + (contentWidth - rowWidths.get(i)) / 2;
+            double rowHeight = 0;
+            for (Item item : row) {
+                item.x += offset;
+                rowHeight = Math.max(rowHeight, item.height);
+            }
+            for (Item item : row) {
+                // Vertically center the items of a row
+                item.y = y + (rowHeight - item.height) / 2;
+            }
+            y += rowHeight + VERTICAL_GAP;
+        }
+        double contentHeight = wrappedRows.isEmpty() ? 0 : y - VERTICAL_GAP - top;
+        folder.width = Math.max(contentWidth + 2 * left, CHAR_WIDTH * length(folder.label) + 2 * FOLDER_PADDING);
+        folder.height = top + contentHeight + (framed ? FOLDER_PADDING : 0);
+    }
+
+    private int[][] getSuccessors(List<Item> items) {
+        int[][] successors = new int[items.size()][];
+        for (Item item : items) {
+            Set<Integer> targets = new LinkedHashSet<>();
+            for (Item successor : item.successors) {
+                targets.add(successor.index);
+            }
+            successors[item.index] = targets.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return successors;
+    }
+
+    private int[][] invert(int[][] successors) {
+        int[] counts = new int[successors.length];
+        for (int[] targets : successors) {
+            for (int target : targets) {
+                counts[target]++;
+            }
+        }
+        int[][] predecessors = new int[successors.length][];
+        for (int i = 0; i < successors.length; i++) {
+            predecessors[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int source = 0; source < successors.length; source++) {
+            for (int target : successors[source]) {
+                predecessors[target][counts[target]++] = source;
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Assign layers by longest path, back edges found by an iterative depth
+     * first search are ignored to break cycles.
+     */
+    private int[] assignLayers(int[][] successors, int[][] predecessors) {
+        int n = successors.length;
+        // 0 = unvisited, 1 = on stack, 2 = finished
+        byte[] state = new byte[n];
+        int[] position = new int[n];
+        int[] finishOrder = new int[n];
+        int finished = 0;
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            stack.push(start);
+            state[start] = 1;
+            while (!stack.isEmpty()) {
+                int current = stack.peek();
+                if (position[current] < successors[current].length) {
+                    int next = successors[current][position[current]++];
+                    if (state[next] == 0) {
+                        state[next] = 1;
+                        stack.push(next);
+                    }
+                } else {
+                    stack.pop();
+                    state[current] = 2;
+                    finishOrder[finished++] = current;
+                }
+            }
+        }
+        // Reverse finishing order is a topological order of the graph without back edges
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[finishOrder[n - 1 - i]] = i;
+        }
+        int[] layers = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            int current = finishOrder[i];
+            for (int predecessor : predecessors[current]) {
+                if (rank[predecessor] < rank[current]) {
+                    layers[current] = Math.max(layers[current], layers[predecessor] + 1);
+                }
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * Order the items of each layer by barycenter sweeps.
+     */
+    private List<List<Item>> order(List<Item> items, int[] layers, int[][] successors, int[][] predecessors) {
+        int layerCount = 0;
+        for (int layer : layers) {
+            layerCount = Math.max(layerCount, layer + 1);
+        }
+        List<List<Item>> rows = new ArrayList<>();
+        for (int i = 0; i < layerCount; i++) {
+            rows.add(new ArrayList<>());
+        }
+        for (Item item : items) {
+            rows.get(layers[item.index]).add(item);
+        }
+        double[] positions = new double[items.size()];
+        updatePositions(rows, positions);
+        double[] barycenters = new double[items.size()];
+        for (int sweep = 0; sweep < ORDERING_SWEEPS; sweep++) {
+            boolean down = sweep % 2 == 0;
+            int[][] neighbours = down ? predecessors : successors;
+            for (int i = 0; i < layerCount; i++) {
+                List<Item> row = rows.get(down ? i : layerCount - 1 - i);
+                for (Item item : row) {
+                    int[] adjacent = neighbours[item.index];
+                    if (adjacent.length == 0) {
+                        barycenters[item.index] = positions[item.index];
+                    } else {
+                        double sum = 0;
+                        for (int neighbour : adjacent) {
+                            sum += positions[neighbour];
+                        }
+                        barycenters[item.index] = sum / adjacent.length;
+                    }
+                }
+                row.sort(Comparator.comparingDouble(item -> barycenters[item.index]));
+                updatePositions(Collections.singletonList(row), positions);
+            }
+        }
+        return rows;
+    }
+
+    private void updatePositions(List<List<Item>> rows, double[] positions) {
+        for (List<Item> row : rows) {
+            for (int i = 0; i < row.size(); i++) {
+                positions[row.get(i).index] = (i + 0.5) / row.size();
+            }
+        }
+    }
+
+    private void setAbsolutePositions(Item folder, double x, double y) {
+        for (Item child : folder.children) {
+            child.x += x;
+            child.y += y;
+            if (child.folder) {
+                setAbsolutePositions(child, child.x, child.y);
+            }
+        }
+    }
+
+    private void write(Item root, List<Edge> edges, Writer writer) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        writer.write(String.format(Locale.ENGLISH,
+                "<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"%.0fpx\" height=\"%.0fpx\" viewBox=\"0 0 %.0f %.0f\" "
+                        + "style=\"width:%.0fpx;height:%.0fpx;\">",
+                root.width, root.height, root.width, root.height, root.width, root.height));
+        writer.write("<defs><style>" + STYLE + "</style>");
+        writer.write("<marker id=\"arrow\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"8\" markerHeight=\"8\" orient=\"auto\">"
+                + "<path d=\"M0,0 L10,5 L0,10 z\" fill=\"#A80036\"/></marker></defs>");
+        writeFolders(root, writer);
+        writer.write("<g class=\"edge\">");
+        for (Edge edge : edges) {
+            writeEdge(edge, writer);
+        }
+        writer.write("</g>");
+        writeNodes(root, writer);
+        writer.write("</svg>");
+    }
+
+    private void writeFolders(Item folder, Writer writer) throws IOException {
+        for (Item child : folder.children) {
+            if (child.folder) {
+                writer.write("<g class=\"folder\">");
+                writer.write(String.format(Locale.ENGLISH, "<rect x=\"%.1f\" y=\"%.1f\" width=\"%.1f\" height=\"%.1f\"/>", child.x, child.y, child.width,
+                        child.height));
+                writeText(child.x + FOLDER_PADDING, child.y + FOLDER_TITLE_HEIGHT - 6, null, child.label, false, writer);
+                writer.write("</g>");
+                writeFolders(child, writer);
+            }
+        }
+    }
+
+    private void writeNodes(Item folder, Writer writer) throws IOException {
+        for (Item child : folder.children) {
+            if (child.folder) {
+                writeNodes(child, writer);
+            } else {
+                writer.write("<g class=\"node\">");
+                writer.write(String.format(Locale.ENGLISH, "<rect x=\"%.1f\" y=\"%.1f\" width=\"%.1f\" height=\"%.1f\" rx=\"2\"/>", child.x, child.y,
+                        child.width, child.height));
+                double centerX = child.x + child.width / 2;
+                double y = child.y + NODE_PADDING + LINE_HEIGHT - 4;
+                if (child.stereotype != null) {
+                    writeText(centerX, y, "stereotype", child.stereotype, true, writer);
+                    y += LINE_HEIGHT;
+                }
+                writeText(centerX, y, null, child.label, true, writer);
+                writer.write("</g>");
+            }
+        }
+    }
+
+    private void writeEdge(Edge edge, Writer writer) throws IOException {
+        double[] start = clip(edge.from, edge.to);
+        double[] end = clip(edge.to, edge.from);
+        writer.write(String.format(Locale.ENGLISH, "<line x1=\"%.1f\" y1=\"%.1f\" x2=\"%.1f\" y2=\"%.1f\" marker-end=\"url(#arrow)\"/>", start[0], start[1],
+                end[0], end[1]));
+        if (edge.type != null) {
+            writeText((start[0] + end[0]) / 2, (start[1] + end[1]) / 2, "type", edge.type, true, writer);
+        }
+    }
+
+    /**
+     * Determine the point where the line between the centers of two items
+     * leaves the first item.
+     */
+    private double[] clip(Item item, Item other) {
+        double cx = item.x + item.width / 2;
+        double cy = item.y + item.height / 2;
+        double dx = other.x + other.width / 2 - cx;
+        double dy = other.y + other.height / 2 - cy;
+        if (dx == 0 && dy == 0) {
+            return new double[] { cx, cy };
+        }
+        double scaleX = dx != 0 ? (item.width / 2) / Math.abs(dx) : Double.MAX_VALUE;
+        double scaleY = dy != 0 ? (item.height / 2) / Math.abs(dy) : Double.MAX_VALUE;
+        double scale = Math.min(1, Math.min(scaleX, scaleY));
+        return new double[] { cx + dx * scale, cy + dy * scale };
+    }
+
+    private void writeText(double x, double y, String cssClass, String text, boolean centered, Writer writer) throws IOException {
+        writer.write(String.format(Locale.ENGLISH, "<text x=\"%.1f\" y=\"%.1f\"", x, y));
+        if (cssClass != null) {
+            writer.write(" class=\"" + cssClass + "\"");
+        }
+        if (centered) {
+            writer.write(" text-anchor=\"middle\"");
+        }
+        writer.write('>');
+        writer.write(escapeXml10(text != null ? text : ""));
+        writer.write("</text>");
+    }
+
+    private int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * A node or folder of the diagram.
+     */
+    private static class Item {
+
+        private final Item parent;
+
+        private final int depth;
+
+        private final String label;
+
+        private final String stereotype;
+
+        private final boolean folder;
+
+        private final List<Item> children = new ArrayList<>();
+
+        private final List<Item> successors = new ArrayList<>();
+
+        private int index;
+
+        private double x;
+
+        private double y;
+
+        private double width;
+
+        private double height;
+
+        private Item(Item parent, String label, String stereotype, boolean folder) {
+            this.parent = parent;
+            this.depth = parent != null ? parent.depth + 1 : 0;
+            this.label = label;
+            this.stereotype = stereotype;
+            this.folder = folder;
+        }
+    }
+
+    /**
+     * A relationship between two items.
+     */
+    private static class Edge {
+
+        private final Item from;
+
+        private final Item to;
+
+        private final String type;
+
+        private Edge(Item from, Item to, String type) {
+            this.from = from;
+            this.to = to;
+            this.type = type;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
 
 import static java.util.Arrays.fill;
+import static java.util.Collections.singletonList;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
 import com.buschmais.jqassistant.core.report.api.graph.model.Node;
@@ -28,6 +33,42 @@ import org.slf4j.LoggerFactory;
 public class PlantUMLRenderer {
     private static final Logger LOGGER = LoggerFactory.getLogger(PlantUMLRenderer.class);
 
+    /**
+     * The minimum number of nodes of a shard, smaller components are combined.
+     */
+    private static final int MIN_SHARD_SIZE = 25;
+
+    /**
+     * Lock for rendering diagrams using a {@link RenderMode} which is not
+     * thread-safe.
+     */
+    private static final Object NON_THREAD_SAFE_RENDERING = new Object();
+
+    /**
+     * The optimizer for rendered SVG diagrams, <code>null</code> if they are
+     * written as rendered.
+     */
+    private final SvgOptimizer svgOptimizer;
+
+    /**
+     * The writer for thumbnails of rendered diagrams, <code>null</code> if no
+     * thumbnails are written.
+     */
+    private final ThumbnailWriter thumbnailWriter;
+
+    public PlantUMLRenderer() {
+        this(null);
+    }
+
+    public PlantUMLRenderer(SvgOptimizer svgOptimizer) {
+        this(svgOptimizer, null);
+    }
+
+    public PlantUMLRenderer(SvgOptimizer svgOptimizer, ThumbnailWriter thumbnailWriter) {
+        this.svgOptimizer = svgOptimizer;
+        this.thumbnailWriter = thumbnailWriter;
+    }
+
     /**
      * Creates a component diagram from the given {@link SubGraph}.
      *
@@ -55,6 +96,203 @@ public class PlantUMLRenderer {
         return plantumlBuilder.toString();
     }
 
+    /**
+     * Creates and renders the component diagrams for the given {@link SubGraph}.
+     *
+     * <p>
+     * Depending on the {@link ShardingMode} the connected components of the
+     * {@link SubGraph} are laid out in parallel and either composed to one
+     * diagram or rendered as separate diagrams. The {@link RenderMode#LAYERED}
+     * always renders a single diagram without PlantUML.
+     * </p>
+     *
+     * @param subGraph
+     *            The {@link SubGraph}.
+     * @param renderMode
+     *            The {@link RenderMode}.
+     * @param shardingMode
+     *            The {@link ShardingMode}.
+     * @param rule
+     *            The rule.
+     * @param directory
+     *            The output directory.
+     * @param format
+     *            The output format.
+     * @return The rendered diagram files.
+     */
+    public List<File> renderComponentDiagrams(SubGraph subGraph, String renderMode, ShardingMode shardingMode, ExecutableRule rule, File directory,
+            String format) {
+        List<File> files;
+        if (!RenderMode.fromString(renderMode).isThreadSafe()) {
+            // Results may be reported concurrently
+            synchronized (NON_THREAD_SAFE_RENDERING) {
+                files = doRenderComponentDiagrams(subGraph, renderMode, shardingMode, rule, directory, format);
+            }
+        } else {
+            files = doRenderComponentDiagrams(subGraph, renderMode, shardingMode, rule, directory, format);
+        }
+        if (svgOptimizer != null && toFileFormat(format) == FileFormat.SVG) {
+            for (File file : files) {
+                svgOptimizer.optimize(file);
+            }
+        }
+        for (File file : files) {
+            writeThumbnail(file);
+        }
+        return files;
+    }
+
+    private List<File> doRenderComponentDiagrams(SubGraph subGraph, String renderMode, ShardingMode shardingMode, ExecutableRule rule, File directory,
+            String format) {
+        if (RenderMode.fromString(renderMode) == RenderMode.LAYERED) {
+            FileFormat fileFormat = toFileFormat(format);
+            if (fileFormat == FileFormat.SVG) {
+                File file = new File(directory, rule.getId().replaceAll("\\:", "_") + fileFormat.getFileSuffix());
+                new LayeredDiagramRenderer().render(subGraph, file);
+                return singletonList(file);
+            }
+            LOGGER.warn("Render mode {} supports SVG only, falling back to {} for format {}.", RenderMode.LAYERED, RenderMode.GRAPHVIZ, fileFormat);
+            renderMode = RenderMode.GRAPHVIZ.name();
+        }
+        List<SubGraph> shards = shardingMode != ShardingMode.NONE ? new SubGraphSplitter(MIN_SHARD_SIZE).split(subGraph) : singletonList(subGraph);
+        if (shards.size() < 2) {
+            String diagram = createComponentDiagram(subGraph, renderMode);
+            File file = renderDiagram(diagram, rule, directory, format);
+            return singletonList(file);
+        }
+        List<String> diagrams = new ArrayList<>();
+        for (SubGraph shard : shards) {
+            diagrams.add(createComponentDiagram(shard, renderMode));
+        }
+        String diagramFileNamePrefix = rule.getId().replaceAll("\\:", "_");
+        File plantUMLFile = new File(directory, diagramFileNamePrefix + ".plantuml");
+        try {
+            FileUtils.writeStringToFile(plantUMLFile, StringUtils.join(diagrams, '\n'), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write PlantUML diagram to " + plantUMLFile.getPath(), e);
+        }
+        FileFormat fileFormat = toFileFormat(format);
+        if (shardingMode == ShardingMode.COMPOSE && fileFormat != FileFormat.SVG) {
+            LOGGER.info("Diagrams in format {} cannot be composed, rendering {} separate diagrams.", fileFormat, shards.size());
+            shardingMode = ShardingMode.SEPARATE;
+        }
+        LOGGER.info("Rendering diagram '{}' as {} shards.", diagramFileNamePrefix, shards.size());
+        List<byte[]> images = renderDiagrams(diagrams, fileFormat, RenderMode.fromString(renderMode).isThreadSafe());
+        List<File> files = new ArrayList<>();
+        try {
+            if (shardingMode == ShardingMode.COMPOSE) {
+                List<String> svgs = new ArrayList<>();
+                for (byte[] image : images) {
+                    svgs.add(new String(image, StandardCharsets.UTF_8));
+                }
+                File file = new File(directory, diagramFileNamePrefix + fileFormat.getFileSuffix());
+                FileUtils.writeStringToFile(file, new SvgComposer().compose(svgs), StandardCharsets.UTF_8);
+                files.add(file);
+            } else {
+                for (int i = 0; i < images.size(); i++) {
+                    File file = new File(directory, diagramFileNamePrefix + "_" + (i + 1) + fileFormat.getFileSuffix());
+                    FileUtils.writeByteArrayToFile(file, images.get(i));
+                    files.add(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write component diagram for " + rule.getId(), e);
+        }
+        return files;
+    }
+
+    /**
+     * Writes the thumbnail of a diagram if enabled, otherwise a thumbnail of a
+     * previous run is removed.
+     *
+     * @param file
+     *            The rendered diagram.
+     */
+    private void writeThumbnail(File file) {
+        if (thumbnailWriter != null) {
+            thumbnailWriter.write(file);
+        } else {
+            FileUtils.deleteQuietly(ThumbnailWriter.getThumbnailFile(file));
+        }
+    }
+
+    /**
+     * Determines the files which will be written by
+     * {@link #renderComponentDiagrams(SubGraph, String, ShardingMode, ExecutableRule, File, String)}
+     * without rendering them.
+     *
+     * @param subGraph
+     *            The {@link SubGraph}.
+     * @param renderMode
+     *            The {@link RenderMode}.
+     * @param shardingMode
+     *            The {@link ShardingMode}.
+     * @param rule
+     *            The rule.
+     * @param directory
+     *            The output directory.
+     * @param format
+     *            The output format.
+     * @return The diagram files.
+     */
+    public List<File> getComponentDiagramFiles(SubGraph subGraph, String renderMode, ShardingMode shardingMode, ExecutableRule rule, File directory,
+            String format) {
+        FileFormat fileFormat = toFileFormat(format);
+        String diagramFileNamePrefix = rule.getId().replaceAll("\\:", "_");
+        File file = new File(directory, diagramFileNamePrefix + fileFormat.getFileSuffix());
+        if ((RenderMode.fromString(renderMode) == RenderMode.LAYERED && fileFormat == FileFormat.SVG) || shardingMode == ShardingMode.NONE
+                || (shardingMode == ShardingMode.COMPOSE && fileFormat == FileFormat.SVG)) {
+            return singletonList(file);
+        }
+        int shards = new SubGraphSplitter(MIN_SHARD_SIZE).split(subGraph).size();
+        if (shards < 2) {
+            return singletonList(file);
+        }
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            files.add(new File(directory, diagramFileNamePrefix + "_" + (i + 1) + fileFormat.getFileSuffix()));
+        }
+        return files;
+    }
+
+    /**
+     * Render diagrams, in parallel if supported by the {@link RenderMode}.
+     *
+     * @param diagrams
+     *            The diagrams.
+     * @param fileFormat
+     *            The {@link FileFormat}.
+     * @param parallel
+     *            If <code>true</code> the diagrams are rendered in parallel.
+     * @return The rendered diagrams.
+     */
+    private List<byte[]> renderDiagrams(List<String> diagrams, FileFormat fileFormat, boolean parallel) {
+        int threads = parallel ? Math.min(diagrams.size(), Runtime.getRuntime().availableProcessors()) : 1;
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (String diagram : diagrams) {
+                futures.add(executorService.submit(() -> {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    new SourceStringReader(diagram).outputImage(outputStream, new FileFormatOption(fileFormat));
+                    return outputStream.toByteArray();
+                }));
+            }
+            List<byte[]> images = new ArrayList<>();
+            for (Future<byte[]> future : futures) {
+                images.add(future.get());
+            }
+            return images;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rendering diagrams.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot render diagram.", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     public File renderDiagram(String plantUML, ExecutableRule rule, File directory, String format) {
         String diagramFileNamePrefix = rule.getId().replaceAll("\\:", "_");
         File plantUMLFile = new File(directory, diagramFileNamePrefix + ".plantuml");
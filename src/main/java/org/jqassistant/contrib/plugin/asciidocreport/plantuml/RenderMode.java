@@ -1,19 +1,42 @@
 package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
 
 public enum RenderMode {
-    GRAPHVIZ(""),
-    JDOT("!pragma graphviz_dot jdot\n");
+    GRAPHVIZ("", true),
+    JDOT("!pragma graphviz_dot jdot\n", false),
+    /**
+     * Built-in layered layout rendering SVG directly, see
+     * {@link LayeredDiagramRenderer}.
+     */
+    LAYERED("", true),
+    /**
+     * No server-side rendering, the graph is written for the client-side
+     * viewer, see {@link InteractiveDiagramWriter}.
+     */
+    INTERACTIVE("", true);
 
-    RenderMode(String pragma) {
+    RenderMode(String pragma, boolean threadSafe) {
         this.pragma = pragma;
+        this.threadSafe = threadSafe;
     }
 
     private String pragma;
 
+    private boolean threadSafe;
+
     public String getPragma() {
         return pragma;
     }
 
+    /**
+     * Determines if diagrams may be rendered in parallel using this mode (the
+     * Jdot port of Graphviz relies on static state).
+     *
+     * @return <code>true</code> if diagrams may be rendered in parallel.
+     */
+    public boolean isThreadSafe() {
+        return threadSafe;
+    }
+
     /**
      * Returns the {@link RenderMode} for the given string
      *
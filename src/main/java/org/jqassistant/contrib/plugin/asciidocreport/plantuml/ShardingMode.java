@@ -0,0 +1,40 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+/**
+ * Defines how component diagrams consisting of disconnected parts are
+ * rendered.
+ */
+public enum ShardingMode {
+
+    /**
+     * The whole graph is laid out as one diagram.
+     */
+    NONE,
+    /**
+     * The connected components are laid out separately and composed to one
+     * diagram (SVG only).
+     */
+    COMPOSE,
+    /**
+     * The connected components are rendered as separate diagrams.
+     */
+    SEPARATE;
+
+    /**
+     * Returns the {@link ShardingMode} for the given string
+     *
+     * @param shardingMode
+     *            The {@link ShardingMode} as string.
+     * @return The matching {@link ShardingMode}
+     * @throws IllegalArgumentException
+     *             if shardingMode is not valid.
+     */
+    public static ShardingMode fromString(String shardingMode) {
+        for (ShardingMode mode : ShardingMode.values()) {
+            if (mode.name().equalsIgnoreCase(shardingMode)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException(shardingMode + " is not a valid ShardingMode");
+    }
+}
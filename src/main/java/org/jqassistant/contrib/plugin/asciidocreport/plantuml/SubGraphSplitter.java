@@ -0,0 +1,212 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import java.util.*;
+
+import com.buschmais.jqassistant.core.report.api.graph.model.Node;
+import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
+import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
+
+/**
+ * Splits a {@link SubGraph} into shards of connected components which can be
+ * laid out independently.
+ * <p>
+ * The units of the split are the top-level {@link Node}s and {@link SubGraph}s
+ * of the graph, i.e. folders are never split. Two units belong to the same
+ * component if there is a {@link Relationship} between any of their nodes.
+ * Small components are combined to shards of a minimum size to avoid a large
+ * number of trivial diagrams.
+ */
+public class SubGraphSplitter {
+
+    private final int minShardSize;
+
+    /**
+     * Constructor.
+     *
+     * @param minShardSize
+     *            The minimum number of nodes of a shard, components of that size
+     *            are never combined.
+     */
+    public SubGraphSplitter(int minShardSize) {
+        this.minShardSize = minShardSize;
+    }
+
+    /**
+     * Split a {@link SubGraph}.
+     *
+     * @param graph
+     *            The {@link SubGraph}.
+     * @return The shards ordered by descending size, a single element if the
+     *         graph cannot be split.
+     */
+    public List<SubGraph> split(SubGraph graph) {
+        if (graph.getParent() != null) {
+            // The graph itself is a folder
+            return Collections.singletonList(graph);
+        }
+        // Determine the units and the unit of each node
+        List<Unit> units = new ArrayList<>();
+        Map<Long, Integer> unitsByNodeId = new HashMap<>();
+        for (Node node : graph.getNodes().values()) {
+            Unit unit = new Unit(units.size());
+            unit.nodes.add(node);
+            units.add(unit);
+            register(node, unit, unitsByNodeId);
+        }
+        for (SubGraph subGraph : graph.getSubGraphs().values()) {
+            Unit unit = new Unit(units.size());
+            unit.subGraphs.add(subGraph);
+            units.add(unit);
+            registerNodes(subGraph, unit, unitsByNodeId);
+        }
+        // Join the units connected by relationships
+        int[] parents = new int[units.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (Unit unit : units) {
+            for (Integer shared : unit.sharedNodeUnits) {
+                union(parents, unit.index, shared);
+            }
+        }
+        List<Relationship> relationships = new ArrayList<>();
+        collectRelationships(graph, relationships);
+        for (Relationship relationship : relationships) {
+            Integer start = unitsByNodeId.get(relationship.getStartNode().getId());
+            Integer end = unitsByNodeId.get(relationship.getEndNode().getId());
+            if (start != null && end != null) {
+                union(parents, start, end);
+            }
+        }
+        Map<Integer, SubGraph> components = new LinkedHashMap<>();
+        Map<Integer, Integer> componentSizes = new HashMap<>();
+        for (Unit unit : units) {
+            int root = find(parents, unit.index);
+            SubGraph component = components.computeIfAbsent(root, key -> createSubGraph(key));
+            for (Node node : unit.nodes) {
+                component.getNodes().put(node.getId(), node);
+            }
+            for (SubGraph subGraph : unit.subGraphs) {
+                component.getSubGraphs().put(subGraph.getId(), subGraph);
+            }
+            componentSizes.merge(root, unit.size, Integer::sum);
+        }
+        if (components.size() < 2) {
+            return Collections.singletonList(graph);
+        }
+        // Top-level relationships are assigned to the component of their start node
+        for (Relationship relationship : graph.getRelationships().values()) {
+            Integer start = unitsByNodeId.get(relationship.getStartNode().getId());
+            if (start != null) {
+                components.get(find(parents, start)).getRelationships().put(relationship.getId(), relationship);
+            }
+        }
+        return createShards(components, componentSizes);
+    }
+
+    private void register(Node node, Unit unit, Map<Long, Integer> unitsByNodeId) {
+        Integer existing = unitsByNodeId.putIfAbsent(node.getId(), unit.index);
+        if (existing != null) {
+            // The same node is contained in different units, they must not be separated
+            unit.sharedNodeUnits.add(existing);
+        } else {
+            unit.size++;
+        }
+    }
+
+    private void registerNodes(SubGraph subGraph, Unit unit, Map<Long, Integer> unitsByNodeId) {
+        if (subGraph.getParent() != null) {
+            register(subGraph.getParent(), unit, unitsByNodeId);
+        }
+        for (Node node : subGraph.getNodes().values()) {
+            register(node, unit, unitsByNodeId);
+        }
+        for (SubGraph child : subGraph.getSubGraphs().values()) {
+            registerNodes(child, unit, unitsByNodeId);
+        }
+    }
+
+    private void collectRelationships(SubGraph graph, List<Relationship> relationships) {
+        relationships.addAll(graph.getRelationships().values());
+        for (SubGraph subGraph : graph.getSubGraphs().values()) {
+            collectRelationships(subGraph, relationships);
+        }
+    }
+
+    /**
+     * Combine small components to shards.
+     */
+    private List<SubGraph> createShards(Map<Integer, SubGraph> components, Map<Integer, Integer> componentSizes) {
+        List<Integer> roots = new ArrayList<>(components.keySet());
+        roots.sort(Comparator.comparing((Integer root) -> componentSizes.get(root)).reversed());
+        List<SubGraph> shards = new ArrayList<>();
+        SubGraph current = null;
+        int currentSize = 0;
+        for (Integer root : roots) {
+            SubGraph component = components.get(root);
+            int size = componentSizes.get(root);
+            if (size >= minShardSize) {
+                shards.add(component);
+            } else {
+                if (current == null) {
+                    current = createSubGraph(root);
+                    shards.add(current);
+                }
+                current.getNodes().putAll(component.getNodes());
+                current.getSubGraphs().putAll(component.getSubGraphs());
+                current.getRelationships().putAll(component.getRelationships());
+                currentSize += size;
+                if (currentSize >= minShardSize) {
+                    current = null;
+                    currentSize = 0;
+                }
+            }
+        }
+        return shards;
+    }
+
+    private SubGraph createSubGraph(long id) {
+        SubGraph subGraph = new SubGraph();
+        subGraph.setId(id);
+        subGraph.setNodes(new LinkedHashMap<>());
+        subGraph.setRelationships(new LinkedHashMap<>());
+        subGraph.setSubGraphs(new LinkedHashMap<>());
+        return subGraph;
+    }
+
+    private int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * A top-level {@link Node} or {@link SubGraph} of the graph.
+     */
+    private static class Unit {
+
+        private final int index;
+
+        private final Set<Integer> sharedNodeUnits = new HashSet<>();
+
+        private int size = 0;
+
+        private final List<Node> nodes = new ArrayList<>();
+
+        private final List<SubGraph> subGraphs = new ArrayList<>();
+
+        private Unit(int index) {
+            this.index = index;
+        }
+    }
+}
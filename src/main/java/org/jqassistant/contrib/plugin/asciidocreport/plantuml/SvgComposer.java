@@ -0,0 +1,106 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Composes several SVG diagrams to a single SVG document.
+ * <p>
+ * The diagrams are arranged in rows (ordered as given), ids and references of
+ * each diagram are prefixed to avoid collisions.
+ */
+public class SvgComposer {
+
+    private static final Pattern SVG_ELEMENT = Pattern.compile("<svg\\b[^>]*>");
+    private static final Pattern WIDTH = Pattern.compile("\\swidth=\"([0-9.]+)");
+    private static final Pattern HEIGHT = Pattern.compile("\\sheight=\"([0-9.]+)");
+
+    private static final int GAP = 20;
+
+    /**
+     * Compose the given SVG documents.
+     *
+     * @param svgs
+     *            The SVG documents.
+     * @return The composed SVG document.
+     */
+    public String compose(List<String> svgs) {
+        List<Diagram> diagrams = new ArrayList<>();
+        double totalArea = 0;
+        double maxWidth = 0;
+        for (int i = 0; i < svgs.size(); i++) {
+            Diagram diagram = parse(svgs.get(i), "s" + i + "_");
+            diagrams.add(diagram);
+            totalArea += (diagram.width + GAP) * (diagram.height + GAP);
+            maxWidth = Math.max(maxWidth, diagram.width);
+        }
+        // Arrange the diagrams in rows of approximately square overall shape
+        double rowWidth = Math.max(maxWidth, Math.sqrt(totalArea));
+        double x = 0;
+        double y = 0;
+        double rowHeight = 0;
+        double width = 0;
+        StringBuilder content = new StringBuilder();
+        for (Diagram diagram : diagrams) {
+            if (x > 0 && x + diagram.width > rowWidth) {
+                x = 0;
+                y += rowHeight + GAP;
+                rowHeight = 0;
+            }
+            content.append(String.format(Locale.ENGLISH, "<g transform=\"translate(%.1f,%.1f)\">", x, y));
+            content.append(diagram.content);
+            content.append("</g>");
+            x += diagram.width + GAP;
+            width = Math.max(width, x - GAP);
+            rowHeight = Math.max(rowHeight, diagram.height);
+        }
+        double height = y + rowHeight;
+        StringBuilder svg = new StringBuilder();
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        svg.append(String.format(Locale.ENGLISH,
+                "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\" "
+                        + "width=\"%.0fpx\" height=\"%.0fpx\" viewBox=\"0 0 %.0f %.0f\" style=\"width:%.0fpx;height:%.0fpx;\">",
+                width, height, width, height, width, height));
+        svg.append(content);
+        svg.append("</svg>");
+        return svg.toString();
+    }
+
+    private Diagram parse(String svg, String prefix) {
+        Matcher matcher = SVG_ELEMENT.matcher(svg);
+        int end = svg.lastIndexOf("</svg>");
+        if (!matcher.find() || end < matcher.end()) {
+            throw new IllegalArgumentException("Not a valid SVG document.");
+        }
+        String element = matcher.group();
+        String content = svg.substring(matcher.end(), end);
+        content = content.replace("id=\"", "id=\"" + prefix).replace("url(#", "url(#" + prefix).replace("href=\"#", "href=\"#" + prefix);
+        return new Diagram(getDimension(WIDTH, element), getDimension(HEIGHT, element), content);
+    }
+
+    private double getDimension(Pattern pattern, String element) {
+        Matcher matcher = pattern.matcher(element);
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : 0;
+    }
+
+    /**
+     * A parsed diagram.
+     */
+    private static class Diagram {
+
+        private final double width;
+
+        private final double height;
+
+        private final String content;
+
+        private Diagram(double width, double height, String content) {
+            this.width = width;
+            this.height = height;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+import javax.xml.stream.events.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reduces the size of rendered SVG diagrams.
+ * <p>
+ * The document is streamed twice using StAX: the first pass collects repeated
+ * styles and duplicate definitions, the second pass writes the optimized
+ * document. It
+ * <ul>
+ * <li>rounds coordinates to the configured precision,</li>
+ * <li>replaces styles (i.e. the <code>style</code> attribute and presentation
+ * attributes without lengths) occurring more than once by CSS classes,</li>
+ * <li>strips comments, processing instructions, metadata and whitespace between
+ * elements,</li>
+ * <li>removes definitions which are identical to a previous definition and
+ * redirects their references.</li>
+ * </ul>
+ * The structure of the document, i.e. the drawn elements and their order, is
+ * preserved.
+ */
+public class SvgOptimizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SvgOptimizer.class);
+
+    private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d*\\.\\d+(?:[eE][-+]?\\d+)?");
+    private static final Pattern REFERENCE = Pattern.compile("#([\\w.:-]+)");
+
+    /**
+     * The attributes containing coordinates.
+     */
+    private static final Set<String> GEOMETRY_ATTRIBUTES = new HashSet<>(Arrays.asList("x", "y", "x1", "y1", "x2", "y2", "cx", "cy", "r", "rx", "ry",
+            "width", "height", "points", "d", "transform", "viewBox", "textLength", "dx", "dy", "style"));
+
+    /**
+     * The presentation attributes which are moved to CSS classes, attributes
+     * with length values are left as they are.
+     */
+    private static final Set<String> STYLE_ATTRIBUTES = new LinkedHashSet<>(
+            Arrays.asList("fill", "fill-opacity", "stroke", "stroke-opacity", "font-family", "font-style", "font-weight", "text-decoration"));
+
+    /**
+     * The elements which are removed including their content.
+     */
+    private static final Set<String> STRIPPED_ELEMENTS = new HashSet<>(Arrays.asList("metadata"));
+
+    /**
+     * The elements whose whitespace is significant.
+     */
+    private static final Set<String> TEXT_ELEMENTS = new HashSet<>(Arrays.asList("text", "tspan", "textPath", "style", "script", "title", "desc"));
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final int precision;
+
+    private final AtomicInteger optimizedFiles = new AtomicInteger();
+    private final AtomicLong originalSize = new AtomicLong();
+    private final AtomicLong optimizedSize = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param precision
+     *            The number of decimal places of coordinates.
+     */
+    public SvgOptimizer(int precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Optimize the given SVG file in place.
+     *
+     * @param file
+     *            The SVG file.
+     */
+    public void optimize(File file) {
+        long before = file.length();
+        File optimizedFile = new File(file.getPath() + ".tmp");
+        try {
+            Analysis analysis;
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+                analysis = analyze(inputStream);
+            }
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+                    OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(optimizedFile))) {
+                write(inputStream, outputStream, analysis);
+            }
+            Files.move(optimizedFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | XMLStreamException e) {
+            optimizedFile.delete();
+            LOGGER.warn("Cannot optimize SVG file '{}', keeping it as rendered.", file.getPath(), e);
+            return;
+        }
+        long after = file.length();
+        optimizedFiles.incrementAndGet();
+        originalSize.addAndGet(before);
+        optimizedSize.addAndGet(after);
+        LOGGER.info("Optimized SVG file '{}' from {} to {} bytes ({}%).", file.getPath(), before, after, before > 0 ? after * 100 / before : 100);
+    }
+
+    /**
+     * Optimize the given SVG document.
+     *
+     * @param svg
+     *            The SVG document.
+     * @return The optimized SVG document.
+     */
+    public String optimize(String svg) {
+        byte[] bytes = svg.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length);
+        try {
+            Analysis analysis = analyze(new ByteArrayInputStream(bytes));
+            write(new ByteArrayInputStream(bytes), outputStream, analysis);
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Cannot optimize SVG document.", e);
+        }
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Logs the sizes of all SVG files optimized by this instance.
+     */
+    public void logSummary() {
+        if (optimizedFiles.get() > 0) {
+            LOGGER.info("Optimized {} SVG file(s) from {} to {} bytes.", optimizedFiles.get(), originalSize.get(), optimizedSize.get());
+        }
+    }
+
+    /**
+     * First pass: counts the styles and determines duplicate definitions.
+     */
+    private Analysis analyze(InputStream inputStream) throws XMLStreamException {
+        Analysis analysis = new Analysis();
+        Map<String, String> definitions = new HashMap<>();
+        XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(inputStream);
+        try {
+            int depth = 0;
+            int defsDepth = -1;
+            String definitionId = null;
+            StringBuilder definition = null;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    StartElement startElement = event.asStartElement();
+                    depth++;
+                    String style = getStyle(startElement);
+                    if (style != null) {
+                        analysis.styles.merge(style, 1, Integer::sum);
+                    }
+                    String localName = startElement.getName().getLocalPart();
+                    if (defsDepth < 0 && "defs".equals(localName)) {
+                        defsDepth = depth;
+                    } else if (defsDepth > 0 && depth == defsDepth + 1) {
+                        Attribute id = startElement.getAttributeByName(new QName("id"));
+                        if (id != null) {
+                            definitionId = id.getValue();
+                            definition = new StringBuilder();
+                        }
+                    }
+                    if (definition != null) {
+                        appendCanonical(startElement, definition);
+                    }
+                } else if (event.isEndElement()) {
+                    if (definition != null) {
+                        definition.append("</>");
+                        if (depth == defsDepth + 1) {
+                            String firstId = definitions.putIfAbsent(definition.toString(), definitionId);
+                            if (firstId != null) {
+                                analysis.duplicateDefinitions.put(definitionId, firstId);
+                            }
+                            definition = null;
+                        }
+                    }
+                    if (depth == defsDepth) {
+                        defsDepth = -1;
+                    }
+                    depth--;
+                } else if (event.isCharacters() && definition != null) {
+                    definition.append(event.asCharacters().getData());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : analysis.styles.entrySet()) {
+            if (entry.getValue() > 1) {
+                analysis.styleClasses.put(entry.getKey(), "s" + Integer.toString(index++, Character.MAX_RADIX));
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * Second pass: writes the optimized document.
+     */
+    private void write(InputStream inputStream, OutputStream outputStream, Analysis analysis) throws XMLStreamException {
+        XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(inputStream);
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(outputStream, "UTF-8");
+        try {
+            int depth = 0;
+            // The depth of a removed element, its content is skipped
+            int skipDepth = -1;
+            int defsDepth = -1;
+            Deque<String> elements = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                switch (event.getEventType()) {
+                case XMLStreamConstants.START_DOCUMENT:
+                    writer.writeStartDocument("UTF-8", "1.0");
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    StartElement startElement = event.asStartElement();
+                    String localName = startElement.getName().getLocalPart();
+                    if (skipDepth < 0) {
+                        if (defsDepth < 0 && "defs".equals(localName)) {
+                            defsDepth = depth;
+                        }
+                        if (STRIPPED_ELEMENTS.contains(localName) || (depth == defsDepth + 1 && isDuplicateDefinition(startElement, analysis))) {
+                            skipDepth = depth;
+                        } else if (depth > 1 && reader.peek().isEndElement()) {
+                            writeStartElement(startElement, analysis, writer, true);
+                            reader.nextEvent();
+                            depth--;
+                        } else {
+                            writeStartElement(startElement, analysis, writer, false);
+                            elements.push(localName);
+                            if (depth == 1) {
+                                writeStyleClasses(startElement, writer, analysis);
+                            }
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (skipDepth < 0) {
+                        writer.writeEndElement();
+                        elements.pop();
+                    } else if (depth == skipDepth) {
+                        skipDepth = -1;
+                    }
+                    if (depth == defsDepth) {
+                        defsDepth = -1;
+                    }
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    Characters characters = event.asCharacters();
+                    boolean whitespace = characters.isWhiteSpace() && (elements.isEmpty() || !TEXT_ELEMENTS.contains(elements.peek()));
+                    if (skipDepth < 0 && !whitespace) {
+                        writer.writeCharacters(characters.getData());
+                    }
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    writer.writeEndDocument();
+                    break;
+                default:
+                    // Comments, processing instructions and DTDs are stripped
+                    break;
+                }
+            }
+            writer.flush();
+        } finally {
+            reader.close();
+            writer.close();
+        }
+    }
+
+    private boolean isDuplicateDefinition(StartElement startElement, Analysis analysis) {
+        Attribute id = startElement.getAttributeByName(new QName("id"));
+        return id != null && analysis.duplicateDefinitions.containsKey(id.getValue());
+    }
+
+    /**
+     * Writes the CSS classes of the repeated styles as first child of the root
+     * element.
+     */
+    private void writeStyleClasses(StartElement root, XMLStreamWriter writer, Analysis analysis) throws XMLStreamException {
+        if (analysis.styleClasses.isEmpty()) {
+            return;
+        }
+        StringBuilder css = new StringBuilder();
+        for (Map.Entry<String, String> entry : analysis.styleClasses.entrySet()) {
+            css.append('.').append(entry.getValue()).append('{').append(entry.getKey()).append('}');
+        }
+        QName name = root.getName();
+        writer.writeStartElement(name.getPrefix(), "style", name.getNamespaceURI().isEmpty() ? SVG_NAMESPACE : name.getNamespaceURI());
+        writer.writeCharacters(css.toString());
+        writer.writeEndElement();
+    }
+
+    /**
+     * Writes a start element, rounds coordinates, replaces repeated styles by
+     * classes and redirects references to duplicate definitions.
+     */
+    private void writeStartElement(StartElement startElement, Analysis analysis, XMLStreamWriter writer, boolean empty) throws XMLStreamException {
+        QName name = startElement.getName();
+        if (empty) {
+            writer.writeEmptyElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        } else {
+            writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        }
+        for (Iterator<?> iterator = startElement.getNamespaces(); iterator.hasNext();) {
+            Namespace namespace = (Namespace) iterator.next();
+            if (namespace.isDefaultNamespaceDeclaration()) {
+                writer.writeDefaultNamespace(namespace.getNamespaceURI());
+            } else {
+                writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+            }
+        }
+        String style = getStyle(startElement);
+        String styleClass = style != null ? analysis.styleClasses.get(style) : null;
+        String existingClass = null;
+        for (Iterator<?> iterator = startElement.getAttributes(); iterator.hasNext();) {
+            Attribute attribute = (Attribute) iterator.next();
+            QName attributeName = attribute.getName();
+            String localName = attributeName.getLocalPart();
+            boolean unqualified = attributeName.getNamespaceURI().isEmpty();
+            if (styleClass != null && unqualified && ("style".equals(localName) || STYLE_ATTRIBUTES.contains(localName))) {
+                continue;
+            }
+            if (unqualified && "class".equals(localName)) {
+                existingClass = attribute.getValue();
+                continue;
+            }
+            String value = attribute.getValue();
+            if (unqualified && GEOMETRY_ATTRIBUTES.contains(localName)) {
+                value = round(value);
+            }
+            if (!analysis.duplicateDefinitions.isEmpty() && value.indexOf('#') >= 0) {
+                value = redirect(value, analysis.duplicateDefinitions);
+            }
+            if (unqualified) {
+                writer.writeAttribute(localName, value);
+            } else {
+                writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(), localName, value);
+            }
+        }
+        if (styleClass != null || existingClass != null) {
+            writer.writeAttribute("class", existingClass != null ? (styleClass != null ? existingClass + " " + styleClass : existingClass) : styleClass);
+        }
+    }
+
+    /**
+     * Determines the style of an element as CSS declarations, i.e. its
+     * <code>style</code> attribute combined with its presentation attributes.
+     *
+     * @return The style or <code>null</code> if the element has no style.
+     */
+    private String getStyle(StartElement startElement) {
+        StringBuilder style = new StringBuilder();
+        for (String name : STYLE_ATTRIBUTES) {
+            Attribute attribute = startElement.getAttributeByName(new QName(name));
+            if (attribute != null) {
+                style.append(name).append(':').append(attribute.getValue()).append(';');
+            }
+        }
+        Attribute styleAttribute = startElement.getAttributeByName(new QName("style"));
+        if (styleAttribute != null) {
+            // The inline style takes precedence over presentation attributes
+            String value = round(styleAttribute.getValue().trim());
+            style.append(value);
+            if (!value.isEmpty() && !value.endsWith(";")) {
+                style.append(';');
+            }
+        }
+        return style.length() > 0 ? style.toString() : null;
+    }
+
+    private void appendCanonical(StartElement startElement, StringBuilder builder) {
+        builder.append('<').append(startElement.getName());
+        SortedMap<String, String> attributes = new TreeMap<>();
+        for (Iterator<?> iterator = startElement.getAttributes(); iterator.hasNext();) {
+            Attribute attribute = (Attribute) iterator.next();
+            if (!"id".equals(attribute.getName().getLocalPart())) {
+                attributes.put(attribute.getName().toString(), round(attribute.getValue()));
+            }
+        }
+        builder.append(attributes).append('>');
+    }
+
+    /**
+     * Rounds all decimal numbers of a value to the configured precision.
+     */
+    String round(String value) {
+        if (value.indexOf('.') < 0) {
+            return value;
+        }
+        Matcher matcher = NUMBER.matcher(value);
+        StringBuffer result = new StringBuffer(value.length());
+        while (matcher.find()) {
+            BigDecimal number = new BigDecimal(matcher.group()).setScale(precision, RoundingMode.HALF_UP).stripTrailingZeros();
+            matcher.appendReplacement(result, number.signum() == 0 ? "0" : number.toPlainString());
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private String redirect(String value, Map<String, String> duplicateDefinitions) {
+        Matcher matcher = REFERENCE.matcher(value);
+        StringBuffer result = new StringBuffer(value.length());
+        while (matcher.find()) {
+            String id = duplicateDefinitions.getOrDefault(matcher.group(1), matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement("#" + id));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return inputFactory;
+    }
+
+    /**
+     * The result of the first pass.
+     */
+    private static class Analysis {
+
+        /**
+         * The number of occurrences per style, in order of their first
+         * occurrence.
+         */
+        private final Map<String, Integer> styles = new LinkedHashMap<>();
+
+        private final Map<String, String> styleClasses = new LinkedHashMap<>();
+
+        /**
+         * The ids of duplicate definitions mapped to the ids of their first
+         * occurrence.
+         */
+        private final Map<String, String> duplicateDefinitions = new HashMap<>();
+    }
+}
@@ -0,0 +1,193 @@
+package org.jqassistant.contrib.plugin.asciidocreport.plantuml;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes small thumbnails of rendered diagrams.
+ * <p>
+ * The thumbnails are scaled down from the rendered diagrams to fit into the
+ * configured size, diagrams that are already smaller keep their size. The
+ * thumbnail of a raster diagram <code>name.png</code> (or any other format
+ * readable by {@link ImageIO}) is written to <code>name.thumb.png</code>. SVG
+ * diagrams cannot be rasterized without laying them out again and a scaled
+ * copy would be as large as the diagram, therefore no thumbnails are written
+ * for them. They are embedded lazily with their dimensions instead (see
+ * {@link #getDimension(File)}).
+ */
+public class ThumbnailWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailWriter.class);
+
+    private static final String SVG_SUFFIX = ".svg";
+
+    private static final String THUMBNAIL_SUFFIX = ".thumb";
+
+    private static final String PNG_SUFFIX = ".png";
+
+    private static final Pattern SVG_ELEMENT = Pattern.compile("<svg\\b[^>]*>");
+    private static final Pattern WIDTH = Pattern.compile("(\\swidth=\")([0-9.]+)([^\"]*\")");
+    private static final Pattern HEIGHT = Pattern.compile("(\\sheight=\")([0-9.]+)([^\"]*\")");
+
+    /**
+     * The maximum number of characters read from an SVG diagram to find the
+     * root element, i.e. its dimensions.
+     */
+    private static final int SVG_HEADER_LENGTH = 4096;
+
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param size
+     *            The maximum width and height of a thumbnail in pixels.
+     */
+    public ThumbnailWriter(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Write the thumbnail of a rendered diagram.
+     *
+     * @param diagramFile
+     *            The rendered diagram.
+     * @return The thumbnail {@link File} or <code>null</code> if the format of
+     *         the diagram is not supported.
+     */
+    public File write(File diagramFile) {
+        File file = getThumbnailFile(diagramFile);
+        if (isSvg(diagramFile)) {
+            LOGGER.debug("Skipping thumbnail of SVG diagram '{}'.", diagramFile.getPath());
+            return null;
+        }
+        LOGGER.debug("Writing thumbnail '{}'.", file.getPath());
+        try {
+            if (!writeRaster(diagramFile, file)) {
+                LOGGER.debug("Cannot create thumbnail of diagram '{}'.", diagramFile.getPath());
+                FileUtils.deleteQuietly(file);
+                return null;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write thumbnail " + file.getPath(), e);
+        }
+        return file;
+    }
+
+    private boolean writeRaster(File diagramFile, File file) throws IOException {
+        BufferedImage image = ImageIO.read(diagramFile);
+        if (image == null) {
+            return false;
+        }
+        double scale = getScale(image.getWidth(), image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return ImageIO.write(thumbnail, "png", file);
+    }
+
+    private double getScale(double width, double height) {
+        return Math.min(1, size / Math.max(width, height));
+    }
+
+    private static double getDimension(Pattern pattern, String element) {
+        Matcher matcher = pattern.matcher(element);
+        return matcher.find() ? Double.parseDouble(matcher.group(2)) : 0;
+    }
+
+    private static boolean isSvg(File file) {
+        return file.getName().toLowerCase(Locale.ENGLISH).endsWith(SVG_SUFFIX);
+    }
+
+    /**
+     * Determines the thumbnail {@link File} of a diagram.
+     *
+     * @param diagramFile
+     *            The diagram {@link File}.
+     * @return The thumbnail {@link File}, it may not exist.
+     */
+    public static File getThumbnailFile(File diagramFile) {
+        String name = diagramFile.getName();
+        int extension = name.lastIndexOf('.');
+        return new File(diagramFile.getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + THUMBNAIL_SUFFIX + PNG_SUFFIX);
+    }
+
+    /**
+     * Reads the dimensions of a thumbnail or diagram without decoding the
+     * image, i.e. only its header is read.
+     *
+     * @param imageFile
+     *            The image {@link File}.
+     * @return The {@link Dimension} or <code>null</code> if it cannot be
+     *         determined.
+     */
+    public static Dimension getDimension(File imageFile) {
+        if (isSvg(imageFile)) {
+            return getSvgDimension(imageFile);
+        }
+        try (ImageInputStream inputStream = ImageIO.createImageInputStream(imageFile)) {
+            Iterator<ImageReader> readers = inputStream != null ? ImageIO.getImageReaders(inputStream) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(inputStream);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read dimensions of image '" + imageFile.getPath() + "'.", e);
+            return null;
+        }
+    }
+
+    private static Dimension getSvgDimension(File svgFile) {
+        try (Reader reader = Files.newBufferedReader(svgFile.toPath(), StandardCharsets.UTF_8)) {
+            char[] header = new char[SVG_HEADER_LENGTH];
+            int length = 0;
+            int read;
+            while (length < header.length && (read = reader.read(header, length, header.length - length)) >= 0) {
+                length += read;
+            }
+            Matcher svgElement = SVG_ELEMENT.matcher(new String(header, 0, length));
+            if (!svgElement.find()) {
+                return null;
+            }
+            double width = getDimension(WIDTH, svgElement.group());
+            double height = getDimension(HEIGHT, svgElement.group());
+            return width > 0 && height > 0 ? new Dimension((int) Math.round(width), (int) Math.round(height)) : null;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read dimensions of image '" + svgFile.getPath() + "'.", e);
+            return null;
+        }
+    }
+}
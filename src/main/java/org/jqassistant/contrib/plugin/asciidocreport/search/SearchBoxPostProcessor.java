@@ -0,0 +1,26 @@
+package org.jqassistant.contrib.plugin.asciidocreport.search;
+
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.extension.Postprocessor;
+
+/**
+ * {@link Postprocessor} that embeds the search box querying the index written
+ * by the {@link SearchIndexWriter}.
+ * <p>
+ * Only the script is added to the head of the document, it creates the search
+ * box itself. Therefore it must be registered before the document is split
+ * into pages which share the head.
+ */
+public class SearchBoxPostProcessor extends Postprocessor {
+
+    private static final String HEAD_END = "</head>";
+
+    @Override
+    public String process(Document document, String output) {
+        int headEnd = output.indexOf(HEAD_END);
+        if (!document.basebackend("html") || headEnd < 0) {
+            return output;
+        }
+        return output.substring(0, headEnd) + "<script src=\"" + SearchIndexWriter.SEARCH_SCRIPT_FILE + "\"></script>\n" + output.substring(headEnd);
+    }
+}
@@ -0,0 +1,241 @@
+package org.jqassistant.contrib.plugin.asciidocreport.search;
+
+import static org.apache.commons.lang3.StringEscapeUtils.escapeJson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.jqassistant.contrib.plugin.asciidocreport.ChunkingPostProcessor;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an inverted index over the ids, descriptions and result values of all
+ * rules which is queried by the search box of the rendered documents.
+ * <p>
+ * The index is sharded by the first two characters of the tokens, i.e. a query
+ * loads only the shards of its tokens. All files are written as scripts
+ * registering their content at <code>jQASearch</code> as browsers do not allow
+ * loading JSON files from the local file system.
+ */
+public class SearchIndexWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexWriter.class);
+
+    public static final String SEARCH_DIRECTORY = "search";
+
+    public static final String SEARCH_SCRIPT_FILE = "jqassistant-search.js";
+
+    private static final String SEARCH_SCRIPT_RESOURCE = "search.js";
+
+    private static final String RULES_FILE = "rules.js";
+
+    private static final Pattern ID = Pattern.compile("\\sid=\"([^\"]+)\"");
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+
+    private static final int SHARD_PREFIX_LENGTH = 2;
+
+    private static final int MAX_DESCRIPTION_LENGTH = 200;
+
+    private SearchIndexWriter() {
+    }
+
+    /**
+     * Write the index of the given {@link RuleResult}s.
+     *
+     * @param reportDirectory
+     *            The report directory containing the rendered documents, the
+     *            index is written to its sub-directory <code>search</code>.
+     * @param files
+     *            The documents which have been rendered grouped by their base
+     *            directories.
+     * @param results
+     *            The {@link RuleResult}s.
+     * @throws ReportException
+     *             If the index cannot be written.
+     */
+    public static void write(File reportDirectory, Map<File, List<File>> files, Collection<RuleResult> results) throws ReportException {
+        List<RuleResult> sortedResults = new ArrayList<>(results);
+        sortedResults.sort(Comparator.comparing(result -> result.getRule().getId()));
+        Map<String, String> pages = getPages(reportDirectory, files);
+        // The postings are appended in order of the rules, i.e. they are sorted
+        Map<String, List<Integer>> postings = new TreeMap<>();
+        for (int i = 0; i < sortedResults.size(); i++) {
+            RuleResult result = sortedResults.get(i);
+            addTokens(result.getRule().getId(), i, postings);
+            addTokens(result.getRule().getDescription(), i, postings);
+            for (Map<String, List<String>> row : result.getRows()) {
+                for (List<String> values : row.values()) {
+                    for (String value : values) {
+                        addTokens(value, i, postings);
+                    }
+                }
+            }
+        }
+        File directory = new File(reportDirectory, SEARCH_DIRECTORY);
+        try {
+            // Shards of a previous analysis may not exist anymore
+            FileUtils.deleteDirectory(directory);
+            try (InputStream inputStream = SearchIndexWriter.class.getResourceAsStream(SEARCH_SCRIPT_RESOURCE)) {
+                FileUtils.copyInputStreamToFile(inputStream, new File(reportDirectory, SEARCH_SCRIPT_FILE));
+            }
+            writeRules(directory, sortedResults, pages);
+            int shards = writeShards(directory, postings);
+            LOGGER.info("Wrote search index with {} token(s) in {} shard(s) for {} rule(s).", postings.size(), shards, sortedResults.size());
+        } catch (IOException e) {
+            throw new ReportException("Cannot write search index to " + directory.getPath(), e);
+        }
+    }
+
+    /**
+     * Splits a value into lower case tokens.
+     *
+     * @param value
+     *            The value.
+     * @return The tokens.
+     */
+    static Set<String> tokenize(String value) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (value != null) {
+            for (String token : TOKEN_SEPARATOR.split(value.toLowerCase(Locale.ENGLISH))) {
+                if (token.length() >= MIN_TOKEN_LENGTH) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static void addTokens(String value, int ruleIndex, Map<String, List<Integer>> postings) {
+        for (String token : tokenize(value)) {
+            List<Integer> ruleIndexes = postings.computeIfAbsent(token, key -> new ArrayList<>());
+            if (ruleIndexes.isEmpty() || ruleIndexes.get(ruleIndexes.size() - 1) != ruleIndex) {
+                ruleIndexes.add(ruleIndex);
+            }
+        }
+    }
+
+    /**
+     * Determines the pages containing the elements with the given ids by
+     * scanning the rendered documents including the pages split from them,
+     * i.e. HTML files of documents which are not rendered anymore are ignored.
+     *
+     * @return The pages identified by the ids of their elements.
+     */
+    private static Map<String, String> getPages(File reportDirectory, Map<File, List<File>> files) throws ReportException {
+        Map<String, String> pages = new HashMap<>();
+        for (List<File> documents : files.values()) {
+            for (File document : documents) {
+                String documentName = FilenameUtils.getBaseName(document.getName());
+                List<String> documentPages = new ArrayList<>();
+                documentPages.add(documentName + ".html");
+                documentPages.addAll(ChunkingPostProcessor.getPages(reportDirectory, documentName));
+                for (String page : documentPages) {
+                    scan(new File(reportDirectory, page), pages);
+                }
+            }
+        }
+        return pages;
+    }
+
+    private static void scan(File file, Map<String, String> pages) throws ReportException {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = ID.matcher(line);
+                while (matcher.find()) {
+                    pages.putIfAbsent(matcher.group(1), file.getName());
+                }
+            }
+        } catch (IOException e) {
+            throw new ReportException("Cannot scan document " + file.getPath(), e);
+        }
+    }
+
+    private static void writeRules(File directory, List<RuleResult> results, Map<String, String> pages) throws IOException {
+        StringBuilder rules = new StringBuilder("jQASearch.rules([");
+        for (int i = 0; i < results.size(); i++) {
+            RuleResult result = results.get(i);
+            String id = result.getRule().getId();
+            String page = pages.get(id);
+            String description = result.getRule().getDescription() != null ? result.getRule().getDescription().trim() : "";
+            if (description.length() > MAX_DESCRIPTION_LENGTH) {
+                description = description.substring(0, MAX_DESCRIPTION_LENGTH) + "...";
+            }
+            rules.append(i > 0 ? ",\n" : "\n").append("[\"").append(escapeJson(id)).append("\",");
+            rules.append(page != null ? "\"" + escapeJson(page) + "#" + escapeJson(id) + "\"" : "null").append(",\"");
+            rules.append(escapeJson(description)).append("\",\"").append(result.getStatus().name()).append("\"]");
+        }
+        rules.append("\n]);\n");
+        FileUtils.writeStringToFile(new File(directory, RULES_FILE), rules.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static int writeShards(File directory, Map<String, List<Integer>> postings) throws IOException {
+        String prefix = null;
+        StringBuilder shard = null;
+        int shards = 0;
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+            String token = entry.getKey();
+            String tokenPrefix = getShard(token);
+            if (!tokenPrefix.equals(prefix)) {
+                // The tokens are sorted, i.e. a shard is complete if the prefix changes
+                writeShard(directory, prefix, shard);
+                prefix = tokenPrefix;
+                shard = new StringBuilder("jQASearch.shard(\"").append(prefix).append("\",{");
+                shards++;
+            } else {
+                shard.append(',');
+            }
+            shard.append('\n').append('"').append(escapeJson(token)).append("\":[");
+            List<Integer> ruleIndexes = entry.getValue();
+            for (int i = 0; i < ruleIndexes.size(); i++) {
+                shard.append(i > 0 ? "," : "").append(ruleIndexes.get(i));
+            }
+            shard.append(']');
+        }
+        writeShard(directory, prefix, shard);
+        return shards;
+    }
+
+    private static void writeShard(File directory, String prefix, StringBuilder shard) throws IOException {
+        if (shard != null) {
+            shard.append("\n});\n");
+            FileUtils.writeStringToFile(new File(directory, prefix + ".js"), shard.toString(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Determines the shard of a token, i.e. its hex encoded prefix which is safe
+     * as file name.
+     *
+     * @param token
+     *            The token.
+     * @return The shard.
+     */
+    static String getShard(String token) {
+        String prefix = token.substring(0, Math.min(SHARD_PREFIX_LENGTH, token.length()));
+        StringBuilder shard = new StringBuilder();
+        for (char c : prefix.toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                shard.append(c);
+            } else {
+                shard.append('_').append(Integer.toHexString(c));
+            }
+        }
+        return shard.toString();
+    }
+}
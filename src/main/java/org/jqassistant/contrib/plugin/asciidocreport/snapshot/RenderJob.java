@@ -0,0 +1,56 @@
+package org.jqassistant.contrib.plugin.asciidocreport.snapshot;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.jqassistant.contrib.plugin.asciidocreport.DocumentRenderer;
+import org.jqassistant.contrib.plugin.asciidocreport.SourceHighlighter;
+
+/**
+ * The documents to be rendered and the options of the
+ * {@link DocumentRenderer}, preceding the entries of a snapshot.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class RenderJob {
+
+    private File reportDirectory;
+
+    private File outputDirectory;
+
+    private int chunkLevel;
+
+    private SourceHighlighter sourceHighlighter;
+
+    private long timeout;
+
+    private long allocationBudget;
+
+    private int virtualTableThreshold;
+
+    private boolean search;
+
+    private Map<File, List<File>> files;
+
+    /**
+     * Create a {@link DocumentRenderer} for this job.
+     *
+     * @param reportDirectory
+     *            The directory where the HTML documents will be written.
+     * @param reportContext
+     *            The {@link ReportContext} providing the reports of the rules.
+     * @return The {@link DocumentRenderer}.
+     */
+    public DocumentRenderer createDocumentRenderer(File reportDirectory, ReportContext reportContext) {
+        return DocumentRenderer.builder().reportDirectory(reportDirectory).reportContext(reportContext).chunkLevel(chunkLevel)
+                .sourceHighlighter(sourceHighlighter).timeout(timeout).allocationBudget(allocationBudget)
+                .virtualTableThreshold(virtualTableThreshold).search(search).build();
+    }
+}
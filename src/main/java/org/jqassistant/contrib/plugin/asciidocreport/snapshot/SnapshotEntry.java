@@ -0,0 +1,42 @@
+package org.jqassistant.contrib.plugin.asciidocreport.snapshot;
+
+import java.net.URL;
+import java.util.List;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+
+/**
+ * An entry of a snapshot, i.e. the {@link RuleResult} of a rule and its
+ * reports.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class SnapshotEntry {
+
+    private RuleResult ruleResult;
+
+    private List<Report> reports;
+
+    /**
+     * A report which has been registered for a rule in the
+     * {@link ReportContext}.
+     */
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Report {
+
+        private String label;
+
+        private ReportContext.ReportType reportType;
+
+        private URL url;
+
+    }
+}
@@ -0,0 +1,225 @@
+package org.jqassistant.contrib.plugin.asciidocreport.snapshot;
+
+import static java.util.Arrays.asList;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+
+import org.jqassistant.contrib.plugin.asciidocreport.DocumentRenderer;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.jqassistant.contrib.plugin.asciidocreport.StatusHelper;
+import org.jqassistant.contrib.plugin.asciidocreport.baseline.Fingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the {@link RuleResult}s of an analysis as snapshot file and merges
+ * the snapshot files of other analyses (e.g. of shards executed on different
+ * agents) into the {@link RuleResult}s to be rendered.
+ * <p>
+ * Snapshot files are processed in the order of their paths. If a rule has been
+ * executed by several analyses the {@link RuleResult}s are merged: status and
+ * severity are taken from the worst result (according to
+ * {@link StatusHelper#getRuleResultComparator()}), the rows and reports of all
+ * results are combined without duplicates. The CSV file and the comparison
+ * with the baseline are taken from the worst result, the latter refers to its
+ * rows only and needs to be updated using the merged row hashes.
+ */
+public class SnapshotMerger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotMerger.class);
+
+    public static final String SNAPSHOT_FILE = "results.snapshot";
+
+    private final Map<String, RuleResult> conceptResults;
+
+    private final Map<String, RuleResult> constraintResults;
+
+    private final ReportContext reportContext;
+
+    public SnapshotMerger(Map<String, RuleResult> conceptResults, Map<String, RuleResult> constraintResults, ReportContext reportContext) {
+        this.conceptResults = conceptResults;
+        this.constraintResults = constraintResults;
+        this.reportContext = reportContext;
+    }
+
+    /**
+     * Write the {@link RuleResult}s and their reports to a snapshot file in the
+     * given directory.
+     *
+     * @param directory
+     *            The directory.
+     * @param documentRenderer
+     *            The {@link DocumentRenderer} providing the rendering options.
+     * @param files
+     *            The files to render grouped by their base directories.
+     * @return The snapshot file.
+     * @throws ReportException
+     *             If the snapshot cannot be written.
+     */
+    public File write(File directory, DocumentRenderer documentRenderer, Map<File, List<File>> files) throws ReportException {
+        File file = new File(directory, SNAPSHOT_FILE);
+        List<RuleResult> results = new ArrayList<>(conceptResults.values());
+        results.addAll(constraintResults.values());
+        results.sort(Comparator.comparing(result -> result.getRule().getId()));
+        try (SnapshotWriter writer = new SnapshotWriter(new GZIPOutputStream(new FileOutputStream(file)), directory)) {
+            writer.writeRenderJob(documentRenderer, reportContext.getOutputDirectory(), files);
+            for (RuleResult result : results) {
+                writer.write(result, reportContext.getReports(result.getRule()));
+            }
+            writer.finish();
+        } catch (IOException e) {
+            throw new ReportException("Cannot write snapshot " + file.getPath(), e);
+        }
+        LOGGER.info("Wrote snapshot containing {} result(s) to '{}'.", results.size(), file.getPath());
+        return file;
+    }
+
+    /**
+     * Read the {@link RenderJob} of a snapshot file.
+     *
+     * @param file
+     *            The snapshot file.
+     * @return The {@link RenderJob}.
+     * @throws ReportException
+     *             If the snapshot cannot be read.
+     */
+    public static RenderJob readRenderJob(File file) throws ReportException {
+        try (SnapshotReader reader = new SnapshotReader(new GZIPInputStream(new FileInputStream(file)), file.getParentFile())) {
+            return reader.readRenderJob();
+        } catch (IOException e) {
+            throw new ReportException("Cannot read snapshot " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Merge the given snapshots.
+     *
+     * @param snapshots
+     *            The snapshot files or directories containing a snapshot file.
+     * @throws ReportException
+     *             If a snapshot cannot be read.
+     */
+    public void merge(Collection<File> snapshots) throws ReportException {
+        SortedSet<File> files = new TreeSet<>();
+        for (File snapshot : snapshots) {
+            File file = snapshot.isDirectory() ? new File(snapshot, SNAPSHOT_FILE) : snapshot;
+            if (file.exists()) {
+                files.add(file.getAbsoluteFile());
+            } else {
+                LOGGER.warn("Snapshot '{}' does not exist.", file.getPath());
+            }
+        }
+        for (File file : files) {
+            int count = 0;
+            try (SnapshotReader reader = new SnapshotReader(new GZIPInputStream(new FileInputStream(file)), file.getParentFile())) {
+                // The documents of other analyses are not rendered
+                reader.readRenderJob();
+                SnapshotEntry entry;
+                while ((entry = reader.next()) != null) {
+                    merge(entry);
+                    count++;
+                }
+            } catch (IOException e) {
+                throw new ReportException("Cannot read snapshot " + file.getPath(), e);
+            }
+            LOGGER.info("Merged {} result(s) from snapshot '{}'.", count, file.getPath());
+        }
+    }
+
+    private void merge(SnapshotEntry entry) {
+        RuleResult ruleResult = entry.getRuleResult();
+        ExecutableRule<?> rule = ruleResult.getRule();
+        Map<String, RuleResult> results = rule instanceof Concept ? conceptResults : constraintResults;
+        RuleResult existingResult = results.get(rule.getId());
+        RuleResult mergedResult = existingResult != null ? merge(existingResult, ruleResult) : ruleResult;
+        results.put(rule.getId(), mergedResult);
+        // Reports are identified by the id of the rule
+        List<ReportContext.Report<?>> existingReports = reportContext.getReports(mergedResult.getRule());
+        Set<URL> urls = new HashSet<>();
+        for (ReportContext.Report<?> report : existingReports) {
+            urls.add(report.getUrl());
+        }
+        for (SnapshotEntry.Report report : entry.getReports()) {
+            if (urls.add(report.getUrl())) {
+                reportContext.addReport(report.getLabel(), mergedResult.getRule(), report.getReportType(), report.getUrl());
+            }
+        }
+    }
+
+    /**
+     * Merge two {@link RuleResult}s of the same rule.
+     *
+     * @param result1
+     *            The first {@link RuleResult}.
+     * @param result2
+     *            The second {@link RuleResult}.
+     * @return The merged {@link RuleResult}.
+     */
+    static RuleResult merge(RuleResult result1, RuleResult result2) {
+        RuleResult worst = StatusHelper.getRuleResultComparator().compare(result1, result2) <= 0 ? result1 : result2;
+        // Results without rows may only provide a placeholder column
+        Set<String> columnNames = new LinkedHashSet<>();
+        for (RuleResult result : asList(result1, result2)) {
+            if (!result.getRows().isEmpty()) {
+                columnNames.addAll(result.getColumnNames());
+            }
+        }
+        if (columnNames.isEmpty()) {
+            columnNames.addAll(worst.getColumnNames());
+        }
+        Set<Map<String, List<String>>> rows = new LinkedHashSet<>(result1.getRows());
+        rows.addAll(result2.getRows());
+        // The union of omitted rows is unknown, its lower bound is used
+        Integer omittedRows = result1.getOmittedRows() != null || result2.getOmittedRows() != null
+                ? Math.max(0, Math.max(result1.getRowCount(), result2.getRowCount()) - rows.size())
+                : null;
+        RuleResult other = worst == result1 ? result2 : result1;
+        return RuleResult.builder().rule(worst.getRule()).effectiveSeverity(worst.getEffectiveSeverity()).status(worst.getStatus())
+                .columnNames(new ArrayList<>(columnNames)).rows(rows).subGraph(result1.getSubGraph() != null ? result1.getSubGraph() : result2.getSubGraph())
+                .omittedRows(omittedRows).csvFile(worst.getCsvFile() != null ? worst.getCsvFile() : other.getCsvFile())
+                .rowHashes(mergeRowHashes(result1, result2, rows)).baselineDiff(worst.getBaselineDiff()).build();
+    }
+
+    /**
+     * Merge the row hashes of two {@link RuleResult}s in the order of the
+     * merged rows followed by the hashes of the omitted rows.
+     *
+     * @return The row hashes or <code>null</code> if none of the results
+     *         provides row hashes.
+     */
+    private static long[] mergeRowHashes(RuleResult result1, RuleResult result2, Set<Map<String, List<String>>> rows) {
+        if (result1.getRowHashes() == null && result2.getRowHashes() == null) {
+            return null;
+        }
+        Map<Map<String, List<String>>, Long> rowHashes = new HashMap<>();
+        Set<Long> omittedRowHashes = new LinkedHashSet<>();
+        for (RuleResult result : asList(result1, result2)) {
+            long[] hashes = Fingerprint.getRowHashes(result);
+            for (int i = 0; i < hashes.length; i++) {
+                if (i < result.getRows().size()) {
+                    rowHashes.putIfAbsent(result.getRows().get(i), hashes[i]);
+                } else {
+                    omittedRowHashes.add(hashes[i]);
+                }
+            }
+        }
+        long[] mergedRowHashes = new long[rows.size() + omittedRowHashes.size()];
+        int i = 0;
+        for (Map<String, List<String>> row : rows) {
+            mergedRowHashes[i++] = rowHashes.get(row);
+        }
+        for (long omittedRowHash : omittedRowHashes) {
+            mergedRowHashes[i++] = omittedRowHash;
+        }
+        return mergedRowHashes;
+    }
+}
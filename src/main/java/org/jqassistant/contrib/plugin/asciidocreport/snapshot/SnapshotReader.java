@@ -0,0 +1,225 @@
+package org.jqassistant.contrib.plugin.asciidocreport.snapshot;
+
+import static org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotWriter.*;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.*;
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.jqassistant.contrib.plugin.asciidocreport.SourceHighlighter;
+
+/**
+ * Reads {@link SnapshotEntry}s from a snapshot created by a
+ * {@link SnapshotWriter}.
+ * <p>
+ * The rules of the {@link RuleResult}s are reconstructed with the information
+ * required for rendering them (i.e. id, description, severity and executable).
+ * Relative report URLs are resolved against the given base directory.
+ */
+public class SnapshotReader implements Closeable {
+
+    /**
+     * The maximum length of a string in bytes, snapshots may be received from
+     * other processes.
+     */
+    private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+    private static final Pattern ABSOLUTE_URL = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.\\-]*:.*");
+
+    private final DataInputStream in;
+
+    private final File baseDirectory;
+
+    private boolean finished = false;
+
+    public SnapshotReader(InputStream inputStream) throws IOException {
+        this(inputStream, null);
+    }
+
+    public SnapshotReader(InputStream inputStream, File baseDirectory) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(inputStream));
+        this.baseDirectory = baseDirectory;
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a jQAssistant report snapshot.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+    }
+
+    /**
+     * Read the documents to be rendered and the rendering options.
+     *
+     * @return The {@link RenderJob}.
+     * @throws IOException
+     *             If reading fails.
+     * @see SnapshotWriter#writeRenderJob(org.jqassistant.contrib.plugin.asciidocreport.DocumentRenderer,
+     *      File, Map)
+     */
+    public RenderJob readRenderJob() throws IOException {
+        File reportDirectory = new File(readString());
+        File outputDirectory = new File(readString());
+        int chunkLevel = in.readInt();
+        SourceHighlighter sourceHighlighter = SourceHighlighter.valueOf(readString());
+        long timeout = in.readLong();
+        long allocationBudget = in.readLong();
+        int virtualTableThreshold = in.readInt();
+        boolean search = in.readBoolean();
+        Map<File, List<File>> files = new LinkedHashMap<>();
+        int baseDirCount = in.readInt();
+        for (int i = 0; i < baseDirCount; i++) {
+            File baseDir = new File(readString());
+            int fileCount = in.readInt();
+            List<File> baseDirFiles = new ArrayList<>();
+            for (int j = 0; j < fileCount; j++) {
+                baseDirFiles.add(new File(readString()));
+            }
+            files.put(baseDir, baseDirFiles);
+        }
+        return new RenderJob(reportDirectory, outputDirectory, chunkLevel, sourceHighlighter, timeout, allocationBudget, virtualTableThreshold, search, files);
+    }
+
+    /**
+     * Read the next {@link SnapshotEntry}.
+     *
+     * @return The {@link SnapshotEntry} or <code>null</code> if the end of the
+     *         snapshot has been reached.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public SnapshotEntry next() throws IOException {
+        if (finished || in.readByte() == END) {
+            finished = true;
+            return null;
+        }
+        byte type = in.readByte();
+        String id = readString();
+        String description = readString();
+        Severity severity = readEnum(Severity.class);
+        String language = readString();
+        String source = readString();
+        ExecutableRule<?> rule = createRule(type, id, description, severity, language, source);
+        RuleResult.RuleResultBuilder ruleResultBuilder = RuleResult.builder().rule(rule).effectiveSeverity(readEnum(Severity.class))
+                .status(readEnum(Result.Status.class));
+        int columnCount = in.readInt();
+        List<String> columnNames = new ArrayList<>();
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.add(readString());
+        }
+        ruleResultBuilder.columnNames(columnNames);
+        int rowCount = in.readInt();
+        for (int i = 0; i < rowCount; i++) {
+            Map<String, List<String>> row = new LinkedHashMap<>();
+            for (String columnName : columnNames) {
+                int valueCount = in.readInt();
+                // Columns without values are not contained in the row
+                if (valueCount >= 0) {
+                    List<String> values = new ArrayList<>(valueCount);
+                    for (int k = 0; k < valueCount; k++) {
+                        values.add(readString());
+                    }
+                    row.put(columnName, values);
+                }
+            }
+            ruleResultBuilder.row(row);
+        }
+        int omittedRows = in.readInt();
+        if (omittedRows >= 0) {
+            ruleResultBuilder.omittedRows(omittedRows);
+        }
+        ruleResultBuilder.csvFile(readString());
+        int reportCount = in.readInt();
+        List<SnapshotEntry.Report> reports = new ArrayList<>();
+        for (int i = 0; i < reportCount; i++) {
+            String label = readString();
+            ReportContext.ReportType reportType = readEnum(ReportContext.ReportType.class);
+            URL url = getUrl(readString());
+            reports.add(new SnapshotEntry.Report(label, reportType, url));
+        }
+        return new SnapshotEntry(ruleResultBuilder.build(), reports);
+    }
+
+    private URL getUrl(String url) throws IOException {
+        if (baseDirectory != null && !ABSOLUTE_URL.matcher(url).matches()) {
+            return new File(baseDirectory, url).toPath().normalize().toUri().toURL();
+        }
+        return new URL(url);
+    }
+
+    private ExecutableRule<?> createRule(byte type, String id, String description, Severity severity, String language, String source) {
+        Executable<?> executable = null;
+        if (language != null) {
+            executable = "cypher".equalsIgnoreCase(language) ? new CypherExecutable(source) : new ScriptExecutable(language, source);
+        }
+        if (type == TYPE_CONCEPT) {
+            return Concept.builder().id(id).description(description).severity(severity).executable(executable).build();
+        }
+        return Constraint.builder().id(id).description(description).severity(severity).executable(executable).build();
+    }
+
+    /**
+     * Read a {@link String}.
+     *
+     * @return The value, may be <code>null</code>.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public String readString() throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        } else if (length > MAX_STRING_LENGTH) {
+            throw new IOException("String length " + length + " exceeds the maximum of " + MAX_STRING_LENGTH + " bytes.");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read an int value.
+     *
+     * @return The value.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    /**
+     * Read a long value.
+     *
+     * @return The value.
+     * @throws IOException
+     *             If reading fails.
+     */
+    public long readLong() throws IOException {
+        return in.readLong();
+    }
+
+    private <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+        String name = readString();
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown value " + name + " of " + type.getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
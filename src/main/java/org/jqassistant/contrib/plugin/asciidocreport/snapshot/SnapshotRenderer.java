@@ -0,0 +1,83 @@
+package org.jqassistant.contrib.plugin.asciidocreport.snapshot;
+
+import static java.util.Collections.singletonList;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.api.ReportException;
+import com.buschmais.jqassistant.core.report.impl.ReportContextImpl;
+
+import org.asciidoctor.Asciidoctor;
+import org.jqassistant.contrib.plugin.asciidocreport.ConversionExtensions;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-renders the documents of an analysis from its snapshot without accessing
+ * the store, e.g. after editing the Asciidoc documents.
+ */
+public class SnapshotRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotRenderer.class);
+
+    private final File snapshotFile;
+
+    private final File reportDirectory;
+
+    /**
+     * Constructor.
+     *
+     * @param snapshotFile
+     *            The snapshot file.
+     * @param reportDirectory
+     *            The directory where the HTML documents will be written, if
+     *            <code>null</code> the directory containing the snapshot is
+     *            used.
+     */
+    public SnapshotRenderer(File snapshotFile, File reportDirectory) {
+        this.snapshotFile = snapshotFile.getAbsoluteFile();
+        this.reportDirectory = reportDirectory != null ? reportDirectory.getAbsoluteFile() : this.snapshotFile.getParentFile();
+    }
+
+    /**
+     * Re-renders the documents from a snapshot, expects the snapshot file and
+     * optionally the report directory as arguments.
+     *
+     * @param args
+     *            The arguments.
+     * @throws ReportException
+     *             If the snapshot cannot be read.
+     */
+    public static void main(String[] args) throws ReportException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: " + SnapshotRenderer.class.getName() + " <snapshot file> [report directory]");
+        }
+        new SnapshotRenderer(new File(args[0]), args.length > 1 ? new File(args[1]) : null).render(ConversionExtensions.create());
+    }
+
+    /**
+     * Render the documents of the snapshot.
+     *
+     * @param asciidoctor
+     *            The {@link Asciidoctor} instance to use, it must be created
+     *            by {@link ConversionExtensions#create()}.
+     * @throws ReportException
+     *             If the snapshot cannot be read.
+     */
+    public void render(Asciidoctor asciidoctor) throws ReportException {
+        RenderJob renderJob = SnapshotMerger.readRenderJob(snapshotFile);
+        ReportContext reportContext = new ReportContextImpl(renderJob.getOutputDirectory());
+        Map<String, RuleResult> conceptResults = new HashMap<>();
+        Map<String, RuleResult> constraintResults = new HashMap<>();
+        new SnapshotMerger(conceptResults, constraintResults, reportContext).merge(singletonList(snapshotFile));
+        long start = System.currentTimeMillis();
+        renderJob.createDocumentRenderer(reportDirectory, reportContext).render(asciidoctor, renderJob.getFiles(), conceptResults, constraintResults);
+        LOGGER.info("Re-rendered {} document(s) from snapshot '{}' in {}ms.", renderJob.getFiles().values().stream().mapToInt(List::size).sum(),
+                snapshotFile.getPath(), System.currentTimeMillis() - start);
+    }
+}
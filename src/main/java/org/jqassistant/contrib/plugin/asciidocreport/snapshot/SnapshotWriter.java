@@ -0,0 +1,216 @@
+package org.jqassistant.contrib.plugin.asciidocreport.snapshot;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
+import com.buschmais.jqassistant.core.analysis.api.rule.Executable;
+import com.buschmais.jqassistant.core.analysis.api.rule.ExecutableRule;
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+
+import org.jqassistant.contrib.plugin.asciidocreport.DocumentRenderer;
+import org.jqassistant.contrib.plugin.asciidocreport.RuleResult;
+
+/**
+ * Writes {@link RuleResult}s and their reports as compact binary snapshot.
+ * <p>
+ * Entries are written one by one, i.e. a snapshot can be created without
+ * holding it completely in memory. If a base directory is given the URLs of
+ * reports referencing files are written relative to it, i.e. the snapshot can
+ * be moved together with the reports. The values of a row are written in the
+ * order of the column names of its result, enum values by their names.
+ *
+ * @see SnapshotReader
+ */
+public class SnapshotWriter implements Closeable {
+
+    static final int MAGIC = 0x6A514152; // "jQAR"
+    static final int VERSION = 5;
+
+    static final byte TYPE_CONCEPT = 0;
+    static final byte TYPE_CONSTRAINT = 1;
+
+    static final byte ENTRY = 1;
+    static final byte END = 0;
+
+    private final DataOutputStream out;
+
+    private final Path baseDirectory;
+
+    public SnapshotWriter(OutputStream outputStream) throws IOException {
+        this(outputStream, null);
+    }
+
+    public SnapshotWriter(OutputStream outputStream, File baseDirectory) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        this.baseDirectory = baseDirectory != null ? baseDirectory.getAbsoluteFile().toPath() : null;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Write the documents to be rendered and the options of the given
+     * {@link DocumentRenderer}.
+     *
+     * @param documentRenderer
+     *            The {@link DocumentRenderer}.
+     * @param outputDirectory
+     *            The output directory of the {@link ReportContext}.
+     * @param files
+     *            The files to render grouped by their base directories.
+     * @throws IOException
+     *             If writing fails.
+     * @see SnapshotReader#readRenderJob()
+     */
+    public void writeRenderJob(DocumentRenderer documentRenderer, File outputDirectory, Map<File, List<File>> files) throws IOException {
+        writeString(documentRenderer.getReportDirectory().getAbsolutePath());
+        writeString(outputDirectory.getAbsolutePath());
+        out.writeInt(documentRenderer.getChunkLevel());
+        writeString(documentRenderer.getSourceHighlighter().name());
+        out.writeLong(documentRenderer.getTimeout());
+        out.writeLong(documentRenderer.getAllocationBudget());
+        out.writeInt(documentRenderer.getVirtualTableThreshold());
+        out.writeBoolean(documentRenderer.isSearch());
+        out.writeInt(files.size());
+        for (Map.Entry<File, List<File>> entry : files.entrySet()) {
+            writeString(entry.getKey().getAbsolutePath());
+            out.writeInt(entry.getValue().size());
+            for (File file : entry.getValue()) {
+                writeString(file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Write a {@link RuleResult} including the reports of its rule.
+     *
+     * @param result
+     *            The {@link RuleResult}.
+     * @param reports
+     *            The reports of the rule.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void write(RuleResult result, List<ReportContext.Report<?>> reports) throws IOException {
+        out.writeByte(ENTRY);
+        ExecutableRule<?> rule = result.getRule();
+        out.writeByte(rule instanceof Concept ? TYPE_CONCEPT : TYPE_CONSTRAINT);
+        writeString(rule.getId());
+        writeString(rule.getDescription());
+        writeEnum(rule.getSeverity());
+        Executable<?> executable = rule.getExecutable();
+        writeString(executable != null ? executable.getLanguage() : null);
+        Object source = executable != null ? executable.getSource() : null;
+        writeString(source instanceof String ? (String) source : null);
+        writeEnum(result.getEffectiveSeverity());
+        writeEnum(result.getStatus());
+        List<String> columnNames = result.getColumnNames();
+        out.writeInt(columnNames.size());
+        for (String columnName : columnNames) {
+            writeString(columnName);
+        }
+        List<Map<String, List<String>>> rows = result.getRows();
+        out.writeInt(rows.size());
+        for (Map<String, List<String>> row : rows) {
+            for (String columnName : columnNames) {
+                List<String> values = row.get(columnName);
+                if (values == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(values.size());
+                    for (String value : values) {
+                        writeString(value);
+                    }
+                }
+            }
+        }
+        out.writeInt(result.getOmittedRows() != null ? result.getOmittedRows() : -1);
+        writeString(result.getCsvFile());
+        out.writeInt(reports.size());
+        for (ReportContext.Report<?> report : reports) {
+            writeString(report.getLabel());
+            writeEnum(report.getReportType());
+            writeString(getUrl(report.getUrl()));
+        }
+    }
+
+    private String getUrl(URL url) {
+        if (baseDirectory != null && "file".equals(url.getProtocol())) {
+            try {
+                return baseDirectory.relativize(Paths.get(url.toURI())).toString().replace('\\', '/');
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // Keep the absolute URL
+            }
+        }
+        return url.toExternalForm();
+    }
+
+    /**
+     * Write a {@link String}, <code>null</code> values are supported.
+     *
+     * @param value
+     *            The value.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Write an int value.
+     *
+     * @param value
+     *            The value.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    /**
+     * Write a long value.
+     *
+     * @param value
+     *            The value.
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void writeLong(long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    private void writeEnum(Enum<?> value) throws IOException {
+        writeString(value != null ? value.name() : null);
+    }
+
+    /**
+     * Marks the end of the snapshot and flushes the underlying stream, which is
+     * left open.
+     *
+     * @throws IOException
+     *             If writing fails.
+     */
+    public void finish() throws IOException {
+        out.writeByte(END);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Client-side viewer for graphs written by the InteractiveDiagramWriter.
+ *
+ * A graph is loaded when the viewer is opened, laid out in layers (longest path with barycenter ordering) and rendered as SVG
+ * supporting zoom (mouse wheel), pan (drag) and filtering by node label.
+ */
+(function () {
+    if (window.jQAGraph) {
+        return;
+    }
+    var SVG = 'http://www.w3.org/2000/svg';
+    var NODE_HEIGHT = 28, H_GAP = 24, V_GAP = 56, CHAR_WIDTH = 7, MAX_ROW_WIDTH = 2400;
+    var callbacks = {};
+
+    function element(name, attributes, parent) {
+        var e = document.createElementNS(SVG, name);
+        for (var key in attributes) {
+            e.setAttribute(key, attributes[key]);
+        }
+        if (parent) {
+            parent.appendChild(e);
+        }
+        return e;
+    }
+
+    function folderPath(graph, index) {
+        var path = [];
+        while (index >= 0) {
+            path.unshift(graph.folders[index][0]);
+            index = graph.folders[index][1];
+        }
+        return path.join(' / ');
+    }
+
+    function layout(graph) {
+        var nodes = graph.nodes.map(function (n) {
+            var stereotype = n[2].map(function (index) {
+                return graph.labels[index];
+            }).join(' ');
+            return {id: n[0], label: n[1] || '', stereotype: stereotype, folder: n[3], out: [], in: [], layer: 0, pos: 0};
+        });
+        var byId = {};
+        nodes.forEach(function (n) {
+            byId[n.id] = n;
+        });
+        var edges = [];
+        graph.relationships.forEach(function (r) {
+            var from = byId[r[0]], to = byId[r[1]];
+            if (from && to && from !== to) {
+                edges.push({from: from, to: to, type: graph.types[r[2]]});
+                from.out.push(to);
+                to.in.push(from);
+            }
+        });
+        // Iterative DFS, edges to nodes on the stack are back edges and ignored for layering
+        var state = {}, order = [];
+        nodes.forEach(function (start) {
+            if (state[start.id]) {
+                return;
+            }
+            var stack = [[start, 0]];
+            state[start.id] = 1;
+            while (stack.length) {
+                var top = stack[stack.length - 1], n = top[0];
+                if (top[1] < n.out.length) {
+                    var next = n.out[top[1]++];
+                    if (!state[next.id]) {
+                        state[next.id] = 1;
+                        stack.push([next, 0]);
+                    }
+                } else {
+                    stack.pop();
+                    state[n.id] = 2;
+                    order.push(n);
+                }
+            }
+        });
+        order.reverse();
+        order.forEach(function (n, i) {
+            n.rank = i;
+        });
+        var layers = [];
+        order.forEach(function (n) {
+            n.in.forEach(function (p) {
+                if (p.rank < n.rank) {
+                    n.layer = Math.max(n.layer, p.layer + 1);
+                }
+            });
+            (layers[n.layer] = layers[n.layer] || []).push(n);
+        });
+        function updatePositions(layer) {
+            layer.forEach(function (n, i) {
+                n.pos = (i + 0.5) / layer.length;
+            });
+        }
+        layers.forEach(function (layer) {
+            layer.sort(function (a, b) {
+                return a.folder - b.folder;
+            });
+            updatePositions(layer);
+        });
+        for (var sweep = 0; sweep < 4; sweep++) {
+            var down = sweep % 2 === 0;
+            for (var l = 0; l < layers.length; l++) {
+                var layer = layers[down ? l : layers.length - 1 - l];
+                layer.forEach(function (n) {
+                    var adjacent = down ? n.in : n.out;
+                    n.barycenter = adjacent.length ? adjacent.reduce(function (sum, a) {
+                        return sum + a.pos;
+                    }, 0) / adjacent.length : n.pos;
+                });
+                layer.sort(function (a, b) {
+                    return a.barycenter - b.barycenter;
+                });
+                updatePositions(layer);
+            }
+        }
+        var y = 0, width = 0;
+        layers.forEach(function (layer) {
+            var x = 0;
+            layer.forEach(function (n) {
+                n.width = Math.max(60, n.label.length * CHAR_WIDTH + 20);
+                if (x > 0 && x + n.width > MAX_ROW_WIDTH) {
+                    x = 0;
+                    y += NODE_HEIGHT + V_GAP;
+                }
+                n.x = x;
+                n.y = y;
+                x += n.width + H_GAP;
+                width = Math.max(width, x);
+            });
+            y += NODE_HEIGHT + V_GAP;
+        });
+        return {nodes: nodes, edges: edges, width: width, height: y};
+    }
+
+    function render(container, graph) {
+        var result = layout(graph);
+        var filter = document.createElement('input');
+        filter.type = 'search';
+        filter.placeholder = 'Filter nodes';
+        container.appendChild(filter);
+        var svg = element('svg', {width: '100%', height: '600', style: 'border:1px solid #dddddd;cursor:move'}, container);
+        var root = element('g', {}, svg);
+        var scale = Math.min(1, (container.clientWidth || 800) / Math.max(1, result.width)), tx = 0, ty = 0;
+        function transform() {
+            root.setAttribute('transform', 'translate(' + tx + ',' + ty + ') scale(' + scale + ')');
+        }
+        transform();
+        result.edges.forEach(function (e) {
+            e.element = element('line', {
+                x1: e.from.x + e.from.width / 2, y1: e.from.y + NODE_HEIGHT,
+                x2: e.to.x + e.to.width / 2, y2: e.to.y, stroke: '#A80036'
+            }, root);
+            element('title', {}, e.element).textContent = e.from.label + ' ' + e.type + ' ' + e.to.label;
+        });
+        result.nodes.forEach(function (n) {
+            var hue = n.folder < 0 ? 60 : (n.folder * 47) % 360;
+            n.element = element('g', {transform: 'translate(' + n.x + ',' + n.y + ')'}, root);
+            element('rect', {width: n.width, height: NODE_HEIGHT, rx: 3, fill: 'hsl(' + hue + ',80%,90%)', stroke: '#A80036'}, n.element);
+            element('text', {x: n.width / 2, y: 18, 'text-anchor': 'middle', 'font-size': 12, 'font-family': 'sans-serif'}, n.element).textContent = n.label;
+            element('title', {}, n.element).textContent = (n.folder >= 0 ? folderPath(graph, n.folder) + ' / ' : '') + n.label
+                + (n.stereotype ? ' \u00ab' + n.stereotype + '\u00bb' : '');
+        });
+        svg.addEventListener('wheel', function (event) {
+            event.preventDefault();
+            var factor = event.deltaY < 0 ? 1.2 : 1 / 1.2;
+            var box = svg.getBoundingClientRect(), px = event.clientX - box.left, py = event.clientY - box.top;
+            tx = px - (px - tx) * factor;
+            ty = py - (py - ty) * factor;
+            scale *= factor;
+            transform();
+        });
+        var drag = null;
+        svg.addEventListener('mousedown', function (event) {
+            drag = {x: event.clientX - tx, y: event.clientY - ty};
+        });
+        window.addEventListener('mouseup', function () {
+            drag = null;
+        });
+        svg.addEventListener('mousemove', function (event) {
+            if (drag) {
+                tx = event.clientX - drag.x;
+                ty = event.clientY - drag.y;
+                transform();
+            }
+        });
+        filter.addEventListener('input', function () {
+            var text = filter.value.toLowerCase();
+            result.nodes.forEach(function (n) {
+                n.visible = !text || n.label.toLowerCase().indexOf(text) >= 0;
+                n.element.setAttribute('opacity', n.visible ? 1 : 0.15);
+            });
+            result.edges.forEach(function (e) {
+                e.element.setAttribute('opacity', !text || e.from.visible || e.to.visible ? 1 : 0.1);
+            });
+        });
+    }
+
+    window.jQAGraph = {
+        /**
+         * Attach the viewer to a placeholder element, the graph is loaded on demand.
+         */
+        attach: function (id) {
+            var container = document.getElementById(id);
+            var button = container.querySelector('button');
+            button.addEventListener('click', function () {
+                button.disabled = true;
+                callbacks[container.getAttribute('data-rule')] = function (graph) {
+                    container.removeChild(button);
+                    render(container, graph);
+                };
+                var script = document.createElement('script');
+                script.src = container.getAttribute('data-graph');
+                document.body.appendChild(script);
+            });
+        },
+        /**
+         * Called by the loaded graph files.
+         */
+        load: function (ruleId, graph) {
+            var callback = callbacks[ruleId];
+            if (callback) {
+                delete callbacks[ruleId];
+                callback(graph);
+            }
+        }
+    };
+})();
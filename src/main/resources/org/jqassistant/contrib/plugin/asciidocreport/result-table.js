@@ -0,0 +1,190 @@
+/*
+ * Virtual scrolling for large result tables embedded as JSON by the TreePreprocessor.
+ *
+ * Only the rows in the visible area (plus a small overscan) are created as DOM elements, the space of all other rows is
+ * reserved by two spacer rows. The rows can be sorted by clicking a column header and filtered per column.
+ *
+ * The embedded JSON has the form {columns: [...], values: [...], rows: [[valueIndex, ...], ...], newRows: [rowIndex, ...]},
+ * i.e. each distinct cell value is contained once.
+ */
+(function () {
+    if (window.jQATable) {
+        return;
+    }
+    var ROW_HEIGHT = 24, OVERSCAN = 10, HEIGHT = 600;
+
+    function element(name, parent, text) {
+        var e = document.createElement(name);
+        if (text !== undefined) {
+            e.textContent = text;
+        }
+        if (parent) {
+            parent.appendChild(e);
+        }
+        return e;
+    }
+
+    function Table(container, data) {
+        this.data = data;
+        this.view = data.rows.map(function (row, index) {
+            return index;
+        });
+        this.newRows = {};
+        (data.newRows || []).forEach(function (index) {
+            this.newRows[index] = true;
+        }, this);
+        this.filters = data.columns.map(function () {
+            return '';
+        });
+        this.sortColumn = -1;
+        this.sortDirection = 1;
+        this.lowerCaseValues = null;
+        this.ranks = null;
+        this.first = -1;
+        this.last = -1;
+        this.build(container);
+        this.render(true);
+    }
+
+    Table.prototype.build = function (container) {
+        var self = this;
+        this.status = element('div', container);
+        this.status.className = 'jqa-table-status';
+        this.scroller = element('div', container);
+        this.scroller.style.cssText = 'max-height:' + HEIGHT + 'px;overflow:auto;';
+        var table = element('table', this.scroller);
+        table.className = 'tableblock frame-all grid-all';
+        table.style.cssText = 'table-layout:fixed;width:100%;margin:0;';
+        var thead = element('thead', table);
+        var headers = element('tr', thead);
+        var filters = element('tr', thead);
+        this.headers = this.data.columns.map(function (column, index) {
+            var th = element('th', headers, column);
+            th.style.cssText = 'position:sticky;top:0;cursor:pointer;background:#f7f8f7;';
+            th.title = 'Sort by ' + column;
+            th.addEventListener('click', function () {
+                self.sort(index);
+            });
+            var filter = element('input', element('th', filters));
+            filter.type = 'search';
+            filter.placeholder = 'Filter';
+            filter.style.width = '100%';
+            var timeout;
+            filter.addEventListener('input', function () {
+                clearTimeout(timeout);
+                timeout = setTimeout(function () {
+                    self.filter(index, filter.value);
+                }, 150);
+            });
+            return th;
+        });
+        this.tbody = element('tbody', table);
+        this.scroller.addEventListener('scroll', function () {
+            self.render(false);
+        });
+    };
+
+    Table.prototype.sort = function (column) {
+        this.sortDirection = this.sortColumn === column ? -this.sortDirection : 1;
+        this.sortColumn = column;
+        this.applySort();
+        this.headers.forEach(function (th, index) {
+            th.setAttribute('aria-sort', index === column ? (this.sortDirection > 0 ? 'ascending' : 'descending') : 'none');
+        }, this);
+        this.render(true);
+    };
+
+    Table.prototype.applySort = function () {
+        if (!this.ranks) {
+            // Values are ranked once, rows are sorted by comparing the ranks of their values
+            var values = this.data.values, order = values.map(function (value, index) {
+                return index;
+            });
+            var collator = window.Intl ? new Intl.Collator(undefined, {numeric: true}) : null;
+            order.sort(function (a, b) {
+                return collator ? collator.compare(values[a], values[b]) : (values[a] < values[b] ? -1 : values[a] > values[b] ? 1 : 0);
+            });
+            this.ranks = new Array(values.length);
+            order.forEach(function (valueIndex, rank) {
+                this.ranks[valueIndex] = rank;
+            }, this);
+        }
+        var rows = this.data.rows, ranks = this.ranks, column = this.sortColumn, direction = this.sortDirection;
+        this.view.sort(function (a, b) {
+            return (ranks[rows[a][column]] - ranks[rows[b][column]]) * direction || a - b;
+        });
+    };
+
+    Table.prototype.filter = function (column, value) {
+        this.filters[column] = value.toLowerCase();
+        if (!this.lowerCaseValues) {
+            this.lowerCaseValues = this.data.values.map(function (value) {
+                return value.toLowerCase();
+            });
+        }
+        var values = this.lowerCaseValues, filters = this.filters, rows = this.data.rows;
+        var view = [];
+        for (var i = 0; i < rows.length; i++) {
+            var matches = true;
+            for (var c = 0; c < filters.length && matches; c++) {
+                matches = !filters[c] || values[rows[i][c]].indexOf(filters[c]) >= 0;
+            }
+            if (matches) {
+                view.push(i);
+            }
+        }
+        this.view = view;
+        if (this.sortColumn >= 0) {
+            this.applySort();
+        }
+        this.scroller.scrollTop = 0;
+        this.render(true);
+    };
+
+    Table.prototype.render = function (force) {
+        var view = this.view, rowCount = view.length;
+        var first = Math.max(0, Math.floor(this.scroller.scrollTop / ROW_HEIGHT) - OVERSCAN);
+        var last = Math.min(rowCount, first + Math.ceil(HEIGHT / ROW_HEIGHT) + 2 * OVERSCAN);
+        if (!force && first === this.first && last === this.last) {
+            return;
+        }
+        this.first = first;
+        this.last = last;
+        var columns = this.data.columns.length, values = this.data.values, rows = this.data.rows;
+        var fragment = document.createDocumentFragment();
+        this.spacer(fragment, first * ROW_HEIGHT, columns);
+        for (var i = first; i < last; i++) {
+            var rowIndex = view[i], tr = element('tr', fragment);
+            tr.style.height = ROW_HEIGHT + 'px';
+            if (this.newRows[rowIndex]) {
+                tr.className = 'new';
+                tr.style.backgroundColor = '#fff3cd';
+            }
+            for (var c = 0; c < columns; c++) {
+                var td = element('td', tr, values[rows[rowIndex][c]]);
+                td.style.cssText = 'white-space:nowrap;overflow:hidden;text-overflow:ellipsis;';
+                td.title = td.textContent;
+            }
+        }
+        this.spacer(fragment, (rowCount - last) * ROW_HEIGHT, columns);
+        this.tbody.textContent = '';
+        this.tbody.appendChild(fragment);
+        this.status.textContent = rowCount === rows.length ? rows.length + ' rows' : rowCount + ' of ' + rows.length + ' rows';
+    };
+
+    Table.prototype.spacer = function (parent, height, columns) {
+        if (height > 0) {
+            var td = element('td', element('tr', parent));
+            td.colSpan = columns;
+            td.style.cssText = 'height:' + height + 'px;padding:0;border:0;';
+        }
+    };
+
+    window.jQATable = {
+        attach: function (id) {
+            var container = document.getElementById(id);
+            var data = JSON.parse(container.querySelector('script[type="application/json"]').textContent);
+            container.table = new Table(container, data);
+        }
+    };
+})();
@@ -0,0 +1,197 @@
+/*
+ * Search box querying the index written by the SearchIndexWriter.
+ *
+ * The index consists of the rules (search/rules.js) and shards of an inverted index (search/<prefix>.js) mapping tokens
+ * to the indexes of rules. Shards are loaded on demand as scripts, i.e. the search also works for reports opened from
+ * the local file system. A query matches all rules containing each of its tokens as prefix of an indexed token.
+ */
+(function () {
+    if (window.jQASearch) {
+        return;
+    }
+    var MIN_TOKEN_LENGTH = 2, SHARD_PREFIX_LENGTH = 2, MAX_RESULTS = 20;
+    var STATUS_COLORS = {SUCCESS: 'green', FAILURE: 'red', SKIPPED: 'yellow'};
+    var base = (function () {
+        var scripts = document.getElementsByTagName('script');
+        var src = scripts[scripts.length - 1].getAttribute('src') || '';
+        return src.substring(0, src.lastIndexOf('/') + 1);
+    })();
+    var rules = null, shards = {}, pending = {};
+
+    function load(name, callback) {
+        if (pending[name]) {
+            pending[name].push(callback);
+            return;
+        }
+        pending[name] = [callback];
+        var script = document.createElement('script');
+        script.src = base + 'search/' + name + '.js';
+        script.onerror = function () {
+            // Shards without tokens are not written
+            complete(name, {});
+        };
+        document.head.appendChild(script);
+    }
+
+    function complete(name, content) {
+        var callbacks = pending[name] || [];
+        delete pending[name];
+        callbacks.forEach(function (callback) {
+            callback(content);
+        });
+    }
+
+    function shardOf(token) {
+        var prefix = token.substring(0, SHARD_PREFIX_LENGTH), shard = '';
+        for (var i = 0; i < prefix.length; i++) {
+            var c = prefix.charAt(i);
+            shard += /[a-z0-9]/.test(c) ? c : '_' + prefix.charCodeAt(i).toString(16);
+        }
+        return shard;
+    }
+
+    function tokenize(query) {
+        return query.toLowerCase().split(/[^\p{L}\p{N}]+/u).filter(function (token) {
+            return token.length >= MIN_TOKEN_LENGTH;
+        });
+    }
+
+    function lookup(token, callback) {
+        var name = shardOf(token);
+        var match = function (shard) {
+            var ruleIndexes = {};
+            for (var key in shard) {
+                if (key.lastIndexOf(token, 0) === 0) {
+                    shard[key].forEach(function (ruleIndex) {
+                        ruleIndexes[ruleIndex] = true;
+                    });
+                }
+            }
+            callback(ruleIndexes);
+        };
+        if (shards[name]) {
+            match(shards[name]);
+        } else {
+            load(name, function (shard) {
+                shards[name] = shard;
+                match(shard);
+            });
+        }
+    }
+
+    function search(query, callback) {
+        var tokens = tokenize(query);
+        if (!tokens.length) {
+            callback([]);
+            return;
+        }
+        var withRules = function () {
+            var results = null, remaining = tokens.length;
+            tokens.forEach(function (token) {
+                lookup(token, function (ruleIndexes) {
+                    results = results === null ? ruleIndexes : Object.keys(results).reduce(function (intersection, ruleIndex) {
+                        if (ruleIndexes[ruleIndex]) {
+                            intersection[ruleIndex] = true;
+                        }
+                        return intersection;
+                    }, {});
+                    if (--remaining === 0) {
+                        callback(Object.keys(results).map(function (ruleIndex) {
+                            return rules[ruleIndex];
+                        }));
+                    }
+                });
+            });
+        };
+        if (rules) {
+            withRules();
+        } else {
+            load('rules', function () {
+                if (rules) {
+                    withRules();
+                } else {
+                    callback([]);
+                }
+            });
+        }
+    }
+
+    function attach() {
+        var box = document.createElement('div');
+        box.id = 'jqa-search';
+        box.style.cssText = 'position:fixed;top:0.5em;right:0.5em;z-index:1000;width:24em;background:#fff;';
+        var input = document.createElement('input');
+        input.type = 'search';
+        input.placeholder = 'Search rules and results';
+        input.style.cssText = 'width:100%;box-sizing:border-box;';
+        var list = document.createElement('ul');
+        list.style.cssText = 'list-style:none;margin:0;padding:0;max-height:60vh;overflow:auto;box-shadow:0 2px 6px rgba(0,0,0,.3);';
+        box.appendChild(input);
+        box.appendChild(list);
+        document.body.appendChild(box);
+        var query = 0, timeout;
+        input.addEventListener('input', function () {
+            clearTimeout(timeout);
+            timeout = setTimeout(function () {
+                var current = ++query;
+                search(input.value, function (results) {
+                    if (current === query) {
+                        show(list, results);
+                    }
+                });
+            }, 100);
+        });
+        input.addEventListener('keydown', function (event) {
+            var first = list.querySelector('a');
+            if (event.key === 'Enter' && first) {
+                window.location.href = first.href;
+            } else if (event.key === 'Escape') {
+                input.value = '';
+                list.textContent = '';
+            }
+        });
+    }
+
+    function show(list, results) {
+        list.textContent = '';
+        results.slice(0, MAX_RESULTS).forEach(function (rule) {
+            var item = document.createElement('li');
+            item.style.cssText = 'padding:0.25em 0.5em;border-bottom:1px solid #ddd;';
+            var link = document.createElement(rule[1] ? 'a' : 'span');
+            if (rule[1]) {
+                link.href = rule[1];
+            }
+            link.textContent = rule[0];
+            link.className = STATUS_COLORS[rule[3]] || '';
+            item.appendChild(link);
+            if (rule[2]) {
+                var description = document.createElement('div');
+                description.textContent = rule[2];
+                description.style.fontSize = '0.8em';
+                item.appendChild(description);
+            }
+            list.appendChild(item);
+        });
+        if (results.length > MAX_RESULTS) {
+            var more = document.createElement('li');
+            more.textContent = (results.length - MAX_RESULTS) + ' more rule(s)';
+            more.style.cssText = 'padding:0.25em 0.5em;font-style:italic;';
+            list.appendChild(more);
+        }
+    }
+
+    window.jQASearch = {
+        rules: function (content) {
+            rules = content;
+            complete('rules', content);
+        },
+        shard: function (name, content) {
+            complete(name, content);
+        }
+    };
+    if (document.readyState === 'loading') {
+        document.addEventListener('DOMContentLoaded', attach);
+    } else {
+        attach();
+    }
+})();
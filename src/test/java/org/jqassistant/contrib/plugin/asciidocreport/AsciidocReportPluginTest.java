@@ -6,9 +6,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.net.ServerSocket;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.buschmais.jqassistant.core.analysis.api.Result;
 import com.buschmais.jqassistant.core.analysis.api.rule.*;
@@ -23,6 +29,7 @@ import com.buschmais.jqassistant.core.rule.api.source.FileRuleSource;
 import com.buschmais.jqassistant.core.rule.api.source.RuleSource;
 import com.buschmais.jqassistant.core.rule.impl.reader.AsciidocRuleParserPlugin;
 import com.buschmais.jqassistant.core.rule.impl.reader.RuleParser;
+import com.buschmais.jqassistant.core.shared.asciidoc.AsciidoctorFactory;
 import com.buschmais.jqassistant.core.shared.io.ClasspathResource;
 import com.buschmais.jqassistant.plugin.common.api.model.ArtifactFileDescriptor;
 import com.buschmais.jqassistant.plugin.common.api.model.DependsOnDescriptor;
@@ -32,7 +39,14 @@ import com.buschmais.xo.neo4j.api.model.Neo4jRelationship;
 import com.buschmais.xo.neo4j.api.model.Neo4jRelationshipType;
 
 import org.apache.commons.io.FileUtils;
+import org.asciidoctor.Asciidoctor;
+import org.jqassistant.contrib.plugin.asciidocreport.daemon.RenderDaemon;
+import org.jqassistant.contrib.plugin.asciidocreport.daemon.RenderDaemonClient;
 import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ComponentDiagramReportPlugin;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.DeferredDiagrams;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ThumbnailWriter;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotMerger;
+import org.jqassistant.contrib.plugin.asciidocreport.snapshot.SnapshotRenderer;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -95,6 +109,597 @@ public class AsciidocReportPluginTest {
         verify(properties, new File(outputDirectory, "report/asciidoc"));
     }
 
+    @Test
+    public void compression() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/asciidoc");
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.compression", "true");
+        // An artifact compressed by a previous run which is removed afterwards
+        File removedFile = new File(reportDirectory, "removed.html");
+        FileUtils.writeStringToFile(removedFile, "removed", "UTF-8");
+        // A compressed file which has not been created by the plugin
+        File userFile = new File(reportDirectory, "user.html.gz");
+        FileUtils.writeStringToFile(userFile, "user", "UTF-8");
+        verify(properties, reportDirectory);
+        File staleFile = new File(reportDirectory, "removed.html.gz");
+        assertThat(staleFile.exists()).isTrue();
+        assertThat(removedFile.delete()).isTrue();
+
+        verify(properties, reportDirectory);
+
+        assertThat(new File(reportDirectory, "index.html.gz").exists()).isTrue();
+        assertThat(staleFile.exists()).isFalse();
+        assertThat(userFile.exists()).isTrue();
+        assertThat(new File(outputDirectory, "report/plantuml/test_ComponentDiagram.svg.gz").exists()).isTrue();
+    }
+
+    @Test
+    public void chunkedOutput() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/chunked");
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.chunk.level", "1");
+        getReportContext(properties);
+        execute();
+        File rulesPage = new File(reportDirectory, "index-_rules.html");
+        // A page of a previous run which is no longer created
+        File stalePage = new File(reportDirectory, "index-_removed.html");
+        FileUtils.writeStringToFile(stalePage, "stale", "UTF-8");
+        FileUtils.writeStringToFile(new File(reportDirectory, ".index.chunks"), "index-_removed.html\nindex-_rules.html\n", "UTF-8");
+
+        execute();
+
+        String index = FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8");
+        assertThat(index).contains("<a href=\"index-_summary.html\">Summary</a>");
+        File summaryPage = new File(reportDirectory, "index-_summary.html");
+        assertThat(summaryPage.exists()).isTrue();
+        Document summary = Jsoup.parse(FileUtils.readFileToString(summaryPage, "UTF-8"));
+        assertThat(summary.getElementsByClass("summary").size()).isEqualTo(2);
+        assertThat(summary.select("a[href=index-_rules.html#test:Concept]").size()).isEqualTo(1);
+        assertThat(summary.select("a[href=index-_imported_rules.html#test:ImportedConcept]").size()).isEqualTo(1);
+        assertThat(stalePage.exists()).isFalse();
+        String rules = FileUtils.readFileToString(rulesPage, "UTF-8");
+        verifyRuleResult(rules, "Status: <span class=\"green\">SUCCESS</span>", "Severity: MAJOR (from MINOR)", "<th>Value</th>", "<td> Foo Bar </td>");
+
+        // Pages are removed if the document is no longer split
+        properties.remove("asciidoc.report.chunk.level");
+        getReportContext(properties);
+        execute();
+        assertThat(rulesPage.exists()).isFalse();
+        assertThat(summaryPage.exists()).isFalse();
+    }
+
+    @Test
+    public void interactiveDiagram() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/interactive");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.plantuml.rendermode", "interactive");
+        ReportContext reportContext = getReportContext(properties);
+
+        execute();
+
+        File graph = new File(reportContext.getReportDirectory("plantuml"), "test_ComponentDiagram.graph.js");
+        assertThat(FileUtils.readFileToString(graph, "UTF-8")).startsWith("jQAGraph.load(\"test:ComponentDiagram\",{\"labels\":[")
+                .contains("\"types\":[\"DEPENDS_ON\"]");
+        assertThat(new File(reportDirectory, "jqassistant-graph-viewer.js").exists()).isTrue();
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element viewer = document.getElementById("jqa-graph-0");
+        assertThat(viewer.attr("data-graph")).isEqualTo("../plantuml/test_ComponentDiagram.graph.js");
+        assertThat(viewer.attr("data-rule")).isEqualTo("test:ComponentDiagram");
+        assertThat(viewer.select("button").size()).isEqualTo(1);
+        assertThat(document.select("script[src=jqassistant-graph-viewer.js]").size()).isEqualTo(1);
+    }
+
+    @Test
+    public void deferredDiagram() throws RuleException, IOException {
+        File diagram = new File(outputDirectory, "report/plantuml/test_ComponentDiagram.svg");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.rule.directory", ruleDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.plantuml.deferred", "true");
+        // No document references the diagram
+        properties.put("asciidoc.report.file.include", "missing.adoc");
+        FileUtils.deleteQuietly(diagram);
+        getReportContext(properties);
+
+        execute();
+
+        assertThat(diagram.exists()).isFalse();
+
+        properties.put("asciidoc.report.file.include", "index.adoc");
+        verify(properties, new File(outputDirectory, "report/asciidoc"));
+    }
+
+    @Test
+    public void deferredDiagramsOfAnalysis() throws RuleException, IOException {
+        File diagram = new File(outputDirectory, "report/plantuml/test_ComponentDiagram.svg");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.rule.directory", ruleDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.plantuml.deferred", "true");
+        // Another analysis in the same JVM without the Asciidoc report, e.g. a module of a reactor build
+        ReportContext otherReportContext = new ReportContextImpl(new File(outputDirectory, "other"));
+        ComponentDiagramReportPlugin otherPlugin = new ComponentDiagramReportPlugin();
+        otherPlugin.initialize();
+        otherPlugin.configure(otherReportContext, properties);
+        otherPlugin.begin();
+        // The component diagram plugin ends before the Asciidoc report plugin
+        Map<String, ReportPlugin> plugins = new LinkedHashMap<>();
+        plugins.put("plantuml-component-diagram", reportPlugins.get("plantuml-component-diagram"));
+        plugins.put("asciidoc", reportPlugins.get("asciidoc"));
+        reportPlugins = plugins;
+        FileUtils.deleteQuietly(diagram);
+        ReportContext reportContext = getReportContext(properties);
+
+        execute();
+
+        assertThat(diagram.exists()).isTrue();
+        assertThat(DeferredDiagrams.get(reportContext)).isNull();
+        assertThat(DeferredDiagrams.get(otherReportContext)).isNotNull();
+        otherPlugin.end();
+        assertThat(DeferredDiagrams.get(otherReportContext)).isNull();
+    }
+
+    @Test
+    public void diagramThumbnail() throws RuleException, IOException {
+        File thumbnail = new File(outputDirectory, "report/plantuml/test_ComponentDiagram.thumb.png");
+        File reportDirectory = new File(outputDirectory, "report/thumbnail");
+        FileUtils.deleteQuietly(thumbnail);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.plantuml.format", "png");
+        properties.put("asciidoc.report.plantuml.rendermode", "jdot");
+        properties.put("asciidoc.report.plantuml.thumbnail", "true");
+        properties.put("asciidoc.report.plantuml.thumbnail.size", "50");
+        getReportContext(properties);
+
+        execute();
+
+        assertThat(thumbnail.exists()).isTrue();
+        Dimension dimension = ThumbnailWriter.getDimension(thumbnail);
+        assertThat(dimension.width).isLessThanOrEqualTo(50);
+        assertThat(dimension.height).isLessThanOrEqualTo(50);
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element img = document.getElementById("result(test:ComponentDiagram)").select("a[href=../plantuml/test_ComponentDiagram.png] > img").first();
+        assertThat(img.attr("src")).isEqualTo("../plantuml/test_ComponentDiagram.thumb.png");
+        assertThat(img.attr("loading")).isEqualTo("lazy");
+        assertThat(img.attr("width")).isEqualTo(Integer.toString(dimension.width));
+        assertThat(img.attr("height")).isEqualTo(Integer.toString(dimension.height));
+
+        // Thumbnails are removed if disabled
+        properties.remove("asciidoc.report.plantuml.thumbnail");
+        getReportContext(properties);
+        execute();
+        assertThat(thumbnail.exists()).isFalse();
+    }
+
+    @Test
+    public void svgDiagramWithoutThumbnail() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/svgthumbnail");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.plantuml.thumbnail", "true");
+        getReportContext(properties);
+
+        execute();
+
+        File diagram = new File(outputDirectory, "report/plantuml/test_ComponentDiagram.svg");
+        assertThat(ThumbnailWriter.getThumbnailFile(diagram).exists()).isFalse();
+        Dimension dimension = ThumbnailWriter.getDimension(diagram);
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element img = document.getElementById("result(test:ComponentDiagram)").select("a[href=../plantuml/test_ComponentDiagram.svg] > img").first();
+        assertThat(img.attr("src")).isEqualTo("../plantuml/test_ComponentDiagram.svg");
+        assertThat(img.attr("loading")).isEqualTo("lazy");
+        assertThat(img.attr("width")).isEqualTo(Integer.toString(dimension.width));
+        assertThat(img.attr("height")).isEqualTo(Integer.toString(dimension.height));
+    }
+
+    @Test
+    public void mergedSnapshot() throws RuleException, IOException {
+        // Snapshot of another shard
+        File shardDirectory = new File(outputDirectory, "report/shard");
+        shardDirectory.mkdirs();
+        Map<String, RuleResult> shardConceptResults = new HashMap<>();
+        Concept concept = ruleSet.getConceptBucket().getById("test:Concept");
+        Map<String, List<String>> row = new HashMap<>();
+        row.put("Value", singletonList("Baz"));
+        shardConceptResults.put(concept.getId(), RuleResult.builder().rule(concept).status(Result.Status.FAILURE).effectiveSeverity(Severity.MAJOR)
+                .columnNames(singletonList("Value")).row(row).build());
+        Concept importedConcept = ruleSet.getConceptBucket().getById("test:ImportedConcept");
+        shardConceptResults.put(importedConcept.getId(), RuleResult.builder().rule(importedConcept).status(Result.Status.SUCCESS)
+                .effectiveSeverity(Severity.MINOR).columnNames(singletonList("ImportedConceptValue")).build());
+        ReportContext shardReportContext = new ReportContextImpl(outputDirectory);
+        shardReportContext.addReport("Shard Report", importedConcept, ReportContext.ReportType.LINK, new File(shardDirectory, "shard.html").toURI().toURL());
+        new SnapshotMerger(shardConceptResults, new HashMap<>(), shardReportContext).write(shardDirectory,
+                DocumentRenderer.builder().reportDirectory(shardDirectory).reportContext(shardReportContext).build(), Collections.emptyMap());
+
+        File reportDirectory = new File(outputDirectory, "report/merged");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.snapshot", "true");
+        properties.put("asciidoc.report.snapshot.merge", shardDirectory.getAbsolutePath());
+        getReportContext(properties);
+
+        execute();
+
+        assertThat(new File(reportDirectory, "results.snapshot").exists()).isTrue();
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.select("span.red").text()).isEqualTo("FAILURE");
+        assertThat(conceptResult.select("td").text()).isEqualTo("Foo Bar Baz");
+        Element importedConceptResult = document.getElementById("result(test:ImportedConcept)");
+        // The worst status wins
+        assertThat(importedConceptResult.select("span.red").text()).isEqualTo("FAILURE");
+        assertThat(importedConceptResult.select("a[href=../shard/shard.html]").size()).isEqualTo(1);
+    }
+
+    @Test
+    public void renderFromSnapshot() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/snapshot");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.snapshot", "true");
+        getReportContext(properties);
+        execute();
+        File indexHtml = new File(reportDirectory, "index.html");
+        String html = FileUtils.readFileToString(indexHtml, "UTF-8");
+        assertThat(indexHtml.delete()).isTrue();
+
+        new SnapshotRenderer(new File(reportDirectory, "results.snapshot"), null).render(ConversionExtensions.create());
+
+        String renderedHtml = FileUtils.readFileToString(indexHtml, "UTF-8");
+        verifyRuleResult(renderedHtml, "Status: <span class=\"green\">SUCCESS</span>", "Severity: MAJOR (from MINOR)", "<th>Value</th>",
+                "<td> Foo Bar </td>", "<img src=\"../plantuml/test_ComponentDiagram.svg\" loading=\"lazy\" width=\"");
+        assertThat(Jsoup.parse(renderedHtml).body().text()).isEqualTo(Jsoup.parse(html).body().text());
+    }
+
+    @Test
+    public void deduplicatedRows() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/deduplicated");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.rows.deduplicate", "true");
+        getReportContext(properties);
+        ReportPlugin plugin = new CompositeReportPlugin(reportPlugins);
+        plugin.begin();
+        Concept concept = ruleSet.getConceptBucket().getById("test:Concept");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String value : asList("Foo", "Bar", "Foo", "Foo")) {
+            rows.add(Collections.singletonMap("Value", value));
+        }
+        processRule(plugin, concept, new Result<>(concept, Result.Status.SUCCESS, Severity.MAJOR, singletonList("Value"), rows));
+        plugin.end();
+
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.select("th").text()).isEqualTo("Value Count");
+        Elements rowElements = conceptResult.select("tbody tr");
+        assertThat(rowElements.size()).isEqualTo(2);
+        assertThat(rowElements.get(0).text()).isEqualTo("Foo 3");
+        assertThat(rowElements.get(1).text()).isEqualTo("Bar 1");
+    }
+
+    @Test
+    public void baselineComparison() throws RuleException, IOException {
+        File baselineDirectory = new File(outputDirectory, "report/baseline");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", baselineDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.fingerprints", "true");
+        executeWithValues(properties, Result.Status.SUCCESS, "Foo", "Bar", "Baz");
+        assertThat(new File(baselineDirectory, "results.fingerprints").exists()).isTrue();
+
+        File reportDirectory = new File(outputDirectory, "report/compared");
+        properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.baseline", baselineDirectory.getAbsolutePath());
+        executeWithValues(properties, Result.Status.FAILURE, "Bar", "Qux");
+
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.text()).contains("Baseline: status changed from SUCCESS, 1 new row(s), 2 removed row(s)");
+        Elements rowElements = conceptResult.select("tbody tr");
+        assertThat(rowElements.size()).isEqualTo(2);
+        assertThat(rowElements.get(0).hasClass("new")).isFalse();
+        assertThat(rowElements.get(1).hasClass("new")).isTrue();
+        assertThat(rowElements.get(1).text()).isEqualTo("Qux");
+    }
+
+    @Test
+    public void virtualTable() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/virtual");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.table.virtual.threshold", "2");
+        properties.put("asciidoc.report.snapshot", "true");
+        executeWithValues(properties, Result.Status.SUCCESS, "Foo", "</script>", "Foo");
+
+        assertThat(new File(reportDirectory, "jqassistant-result-table.js").exists()).isTrue();
+        File indexHtml = new File(reportDirectory, "index.html");
+        verifyVirtualTable(indexHtml);
+        assertThat(indexHtml.delete()).isTrue();
+
+        // The threshold is part of the snapshot
+        new SnapshotRenderer(new File(reportDirectory, "results.snapshot"), null).render(ConversionExtensions.create());
+
+        verifyVirtualTable(indexHtml);
+    }
+
+    private void verifyVirtualTable(File indexHtml) throws IOException {
+        Document document = Jsoup.parse(FileUtils.readFileToString(indexHtml, "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.select("tbody tr")).isEmpty();
+        Element table = conceptResult.select("div.jqa-table").first();
+        assertThat(table.select("script").first().data()).isEqualTo("{\"columns\":[\"Value\"],\"values\":[\"Foo\",\"<\\/script>\"],\"rows\":[[0],[1],[0]]}");
+    }
+
+    @Test
+    public void searchIndex() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/search");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.search", "true");
+        properties.put("asciidoc.report.snapshot", "true");
+        // A page of a previous run which is not rendered anymore
+        FileUtils.writeStringToFile(new File(reportDirectory, "a-stale.html"), "<div id=\"test:Concept\"></div>", "UTF-8");
+        executeWithValues(properties, Result.Status.SUCCESS, "com.acme.FooBar", "Foo");
+
+        File indexHtml = new File(reportDirectory, "index.html");
+        assertThat(indexHtml.delete()).isTrue();
+        // The search box is part of the snapshot
+        new SnapshotRenderer(new File(reportDirectory, "results.snapshot"), null).render(ConversionExtensions.create());
+        Document document = Jsoup.parse(FileUtils.readFileToString(indexHtml, "UTF-8"));
+        assertThat(document.head().select("script[src=jqassistant-search.js]")).hasSize(1);
+        assertThat(new File(reportDirectory, "jqassistant-search.js").exists()).isTrue();
+        String rules = FileUtils.readFileToString(new File(reportDirectory, "search/rules.js"), "UTF-8");
+        assertThat(rules).startsWith("jQASearch.rules([").contains("[\"test:Concept\",\"index.html#test:Concept\",");
+        int ruleIndex = rules.substring(0, rules.indexOf("[\"test:Concept\"")).split("\n").length - 1;
+        String shard = FileUtils.readFileToString(new File(reportDirectory, "search/fo.js"), "UTF-8");
+        assertThat(shard).startsWith("jQASearch.shard(\"fo\",{").contains("\"foo\":[" + ruleIndex + "]", "\"foobar\":[" + ruleIndex + "]");
+        assertThat(new File(reportDirectory, "search/ac.js").exists()).isTrue();
+    }
+
+    @Test
+    public void csvExport() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/csv");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.csv", "true");
+        properties.put("asciidoc.report.csv.inline.rows", "2");
+        executeWithValues(properties, Result.Status.FAILURE, "Foo", "Bar, \"Baz\"", "Qux");
+
+        String csv = FileUtils.readFileToString(new File(reportDirectory, "csv/" + CsvExporter.getFileName("test:Concept")), "UTF-8");
+        assertThat(csv).isEqualTo("Value\r\nFoo\r\n\"Bar, \"\"Baz\"\"\"\r\nQux\r\n");
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.text()).contains("Rows: 3");
+        assertThat(conceptResult.select("tbody tr")).hasSize(2);
+        Element link = conceptResult.select("a[href=csv/" + CsvExporter.getFileName("test:Concept") + "]").first();
+        assertThat(link.text()).isEqualTo("Download all 3 rows (CSV)");
+    }
+
+    @Test
+    public void pooledAsciidoctor() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/pooled");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        executeWithValues(properties, Result.Status.SUCCESS, "Foo");
+        Asciidoctor asciidoctor = AsciidoctorPool.acquire();
+        AsciidoctorPool.release(asciidoctor);
+
+        // A subsequent analysis (e.g. the next module of a reactor) creates and shuts down other instances for parsing rules
+        AsciidoctorFactory.getAsciidoctor().shutdown();
+        executeWithValues(properties, Result.Status.FAILURE, "Bar");
+
+        Asciidoctor reused = AsciidoctorPool.acquire();
+        AsciidoctorPool.release(reused);
+        assertThat(reused).isSameAs(asciidoctor);
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.text()).contains("Status: FAILURE");
+        Elements rowElements = conceptResult.select("tbody tr");
+        assertThat(rowElements.size()).isEqualTo(1);
+        assertThat(rowElements.get(0).text()).isEqualTo("Bar");
+    }
+
+    private void executeWithValues(Map<String, Object> properties, Result.Status status, String... values) throws RuleException {
+        getReportContext(properties);
+        ReportPlugin plugin = new CompositeReportPlugin(reportPlugins);
+        plugin.begin();
+        Concept concept = ruleSet.getConceptBucket().getById("test:Concept");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String value : values) {
+            rows.add(Collections.singletonMap("Value", value));
+        }
+        processRule(plugin, concept, new Result<>(concept, status, Severity.MAJOR, singletonList("Value"), rows));
+        plugin.end();
+    }
+
+    @Test
+    public void filteredRebuild() throws RuleException, IOException {
+        File diagram = new File(outputDirectory, "report/plantuml/test_ComponentDiagram.svg");
+        File reportDirectory = new File(outputDirectory, "report/filtered");
+        File indexHtml = new File(reportDirectory, "index.html");
+        File otherHtml = new File(reportDirectory, "other.html");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.rule.directory", new File(ruleDirectory, "additional-rules").getAbsolutePath());
+        properties.put("asciidoc.report.file.include", "other.adoc");
+        getReportContext(properties);
+        execute();
+        String index = FileUtils.readFileToString(indexHtml, "UTF-8");
+        FileUtils.deleteQuietly(otherHtml);
+        FileUtils.deleteQuietly(diagram);
+        properties.put("asciidoc.report.filter.rules", "test:Imported*");
+        getReportContext(properties);
+
+        execute();
+
+        assertThat(diagram.exists()).isFalse();
+        // The document contains rules which are rejected by the filter
+        assertThat(FileUtils.readFileToString(indexHtml, "UTF-8")).isEqualTo(index);
+        Document document = Jsoup.parse(FileUtils.readFileToString(otherHtml, "UTF-8"));
+        assertThat(document.getElementById("result(test:ImportedConcept)")).isNotNull();
+    }
+
+    @Test
+    public void failuresProfile() throws RuleException, IOException {
+        File diagram = new File(outputDirectory, "report/plantuml/test_ComponentDiagram.svg");
+        File reportDirectory = new File(outputDirectory, "report/failures");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.profile", "failures");
+        FileUtils.deleteQuietly(diagram);
+        ReportContext reportContext = getReportContext(properties);
+        // A report of another plugin
+        reportContext.addReport("Other", ruleSet.getConceptBucket().getById("test:Concept"), ReportContext.ReportType.LINK,
+                new File(outputDirectory, "report/other/concept.html").toURI().toURL());
+
+        execute();
+
+        assertThat(diagram.exists()).isFalse();
+        Document document = Jsoup.parse(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8"));
+        Element conceptResult = document.getElementById("result(test:Concept)");
+        assertThat(conceptResult.text()).contains("Status: SUCCESS", "Rows: 1");
+        assertThat(conceptResult.select("table")).isEmpty();
+        assertThat(conceptResult.select("a[href$=concept.html]").text()).isEqualTo("Other");
+        Element diagramResult = document.getElementById("result(test:ComponentDiagram)");
+        assertThat(diagramResult.select("img, object, table")).isEmpty();
+        Element failedResult = document.getElementById("result(test:ImportedConcept)");
+        assertThat(failedResult.text()).contains("Status: FAILURE").doesNotContain("Rows:");
+        assertThat(failedResult.select("table")).hasSize(1);
+    }
+
+    @Test
+    public void pipelinedRendering() throws Exception {
+        File reportDirectory = new File(outputDirectory, "report/pipelined");
+        File otherHtml = new File(reportDirectory, "other.html");
+        FileUtils.deleteQuietly(otherHtml);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.rule.directory", new File(ruleDirectory, "additional-rules").getAbsolutePath());
+        properties.put("asciidoc.report.file.include", "other.adoc");
+        properties.put("asciidoc.report.pipeline", "true");
+        getReportContext(properties);
+        ReportPlugin plugin = new CompositeReportPlugin(reportPlugins);
+        plugin.begin();
+        for (String id : asList("test:ImportedConcept", "test:ImportedConstraint", "test:ImportedConstraintWithoutDescription")) {
+            Concept concept = ruleSet.getConceptBucket().getIds().contains(id) ? ruleSet.getConceptBucket().getById(id) : null;
+            if (concept != null) {
+                processRule(plugin, concept, new Result<>(concept, Result.Status.SUCCESS, Severity.MINOR, Collections.<String> emptyList(),
+                        Collections.<Map<String, Object>> emptyList()));
+            } else {
+                Constraint constraint = ruleSet.getConstraintBucket().getById(id);
+                processRule(plugin, constraint, new Result<>(constraint, Result.Status.SUCCESS, Severity.MAJOR, Collections.<String> emptyList(),
+                        Collections.<Map<String, Object>> emptyList()));
+            }
+        }
+
+        // The document is rendered before the analysis ends
+        long timeout = System.currentTimeMillis() + 120000;
+        while (!otherHtml.exists() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(100);
+        }
+        assertThat(otherHtml.exists()).isTrue();
+        plugin.end();
+
+        Document document = Jsoup.parse(FileUtils.readFileToString(otherHtml, "UTF-8"));
+        assertThat(document.getElementById("result(test:ImportedConcept)")).isNotNull();
+        assertThat(document.getElementById("result(test:ImportedConstraint)")).isNotNull();
+    }
+
+    @Test
+    public void concurrentResults() throws Exception {
+        String expectedOutput = executeConcurrently(new File(outputDirectory, "report/sequential"), 1);
+        for (int i = 0; i < 3; i++) {
+            assertThat(executeConcurrently(new File(outputDirectory, "report/concurrent"), 8)).isEqualTo(expectedOutput);
+        }
+    }
+
+    @Test
+    public void resultExport() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/asciidoc");
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.export", "true");
+        properties.put("asciidoc.report.export.rows", "true");
+        verify(properties, reportDirectory);
+
+        List<String> results = FileUtils.readLines(new File(reportDirectory, "results.ndjson"), "UTF-8");
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0)).isEqualTo("{\"id\":\"test:Concept\",\"type\":\"concept\",\"description\":\"Concept Description\",\"severity\":\"MINOR\","
+                + "\"effectiveSeverity\":\"MAJOR\",\"status\":\"SUCCESS\",\"columns\":[\"Value\"],\"rows\":[{\"Value\":[\"Foo\",\"Bar\"]}],\"rowCount\":1}");
+        String summary = FileUtils.readFileToString(new File(reportDirectory, "summary.json"), "UTF-8");
+        assertThat(summary).startsWith("{\"constraints\":{\"rules\":[{\"id\":\"test:ImportedConstraintWithoutDescription\"");
+        assertThat(summary).contains("\"statistics\":{\"SUCCESS\":2,\"FAILURE\":1}");
+    }
+
+    @Test
+    public void cachedSourceHighlighting() throws RuleException, IOException {
+        File highlightCache = new File(outputDirectory, "asciidoc-highlight-cache");
+        FileUtils.deleteDirectory(highlightCache);
+        File reportDirectory = new File(outputDirectory, "report/asciidoc");
+        verify(new HashMap<>(), reportDirectory);
+        String[] cachedListings = highlightCache.list();
+        assertThat(cachedListings).isNotEmpty();
+        String html = FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8");
+
+        verify(new HashMap<>(), reportDirectory);
+
+        assertThat(highlightCache.list()).containsExactlyInAnyOrder(cachedListings);
+        assertThat(FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8")).isEqualTo(html);
+        // Attributes like linenums change the highlighted listing
+        HighlightCache cache = new HighlightCache(highlightCache, SourceHighlighter.CODERAY);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("language", "cypher");
+        String key = cache.getKey("test:Concept", "Title", "MATCH (n) RETURN n", attributes);
+        attributes.put("linenums-option", "");
+        assertThat(cache.getKey("test:Concept", "Title", "MATCH (n) RETURN n", attributes)).isNotEqualTo(key);
+    }
+
+    @Test
+    public void clientSideSourceHighlighting() throws RuleException, IOException {
+        File reportDirectory = new File(outputDirectory, "report/highlightjs");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.source.highlighter", "highlightjs");
+        verify(properties, reportDirectory);
+
+        String html = FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8");
+        assertThat(html).contains("highlight.min.js").doesNotContain("class=\"CodeRay");
+    }
+
+    @Test
+    public void renderDaemon() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        File tokenFile = new File(outputDirectory, "render-daemon.token");
+        Thread daemon = new Thread(() -> {
+            try {
+                new RenderDaemon(port, tokenFile).run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        daemon.start();
+        File reportDirectory = new File(outputDirectory, "report/daemon");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.daemon.port", Integer.toString(port));
+        properties.put("asciidoc.report.daemon.token", tokenFile.getAbsolutePath());
+        try {
+            verify(properties, reportDirectory);
+            // A client without the token is rejected
+            assertThat(new RenderDaemonClient(port, new File(outputDirectory, "missing.token"), 1000).shutdown()).isFalse();
+            File invalidTokenFile = new File(outputDirectory, "invalid.token");
+            FileUtils.writeStringToFile(invalidTokenFile, "invalid", "UTF-8");
+            assertThat(new RenderDaemonClient(port, invalidTokenFile, 1000).shutdown()).isFalse();
+        } finally {
+            assertThat(new RenderDaemonClient(port, tokenFile, 1000).shutdown()).isTrue();
+            daemon.join();
+        }
+        assertThat(tokenFile.exists()).isFalse();
+    }
+
     private void verify(Map<String, Object> properties, File expectedDirectory) throws RuleException, IOException {
         ReportContext reportContext = getReportContext(properties);
 
@@ -170,6 +775,81 @@ public class AsciidocReportPluginTest {
         return componentDiagram;
     }
 
+    /**
+     * Sets the results of all rules using the given number of threads and
+     * returns the rendered document and the exported summary.
+     */
+    private String executeConcurrently(File reportDirectory, int threads) throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.directory", reportDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.export", "true");
+        getReportContext(properties);
+        ReportPlugin asciidocPlugin = reportPlugins.get("asciidoc");
+        ReportPlugin diagramPlugin = reportPlugins.get("plantuml-component-diagram");
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (String id : ruleSet.getConceptBucket().getIds()) {
+            Concept concept = ruleSet.getConceptBucket().getById(id);
+            Result<Concept> result = createResult(concept);
+            tasks.add(() -> {
+                asciidocPlugin.beginConcept(concept);
+                if (isDiagram(concept)) {
+                    diagramPlugin.setResult(result);
+                }
+                asciidocPlugin.setResult(result);
+                asciidocPlugin.endConcept();
+                return null;
+            });
+        }
+        for (String id : ruleSet.getConstraintBucket().getIds()) {
+            Constraint constraint = ruleSet.getConstraintBucket().getById(id);
+            Result<Constraint> result = createResult(constraint);
+            tasks.add(() -> {
+                asciidocPlugin.beginConstraint(constraint);
+                asciidocPlugin.setResult(result);
+                asciidocPlugin.endConstraint();
+                return null;
+            });
+        }
+        asciidocPlugin.begin();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        asciidocPlugin.end();
+        return FileUtils.readFileToString(new File(reportDirectory, "index.html"), "UTF-8")
+                + FileUtils.readFileToString(new File(reportDirectory, ResultExporter.SUMMARY_FILE), "UTF-8");
+    }
+
+    private boolean isDiagram(ExecutableRule<?> rule) {
+        Set<String> reportTypes = rule.getReport().getSelectedTypes();
+        return reportTypes != null && reportTypes.contains("plantuml-component-diagram");
+    }
+
+    private <T extends ExecutableRule<?>> Result<T> createResult(T rule) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (isDiagram(rule)) {
+            ArtifactFileDescriptor node1 = createNode(1l, "a");
+            ArtifactFileDescriptor node2 = createNode(2l, "b");
+            Map<String, Object> row = new HashMap<>();
+            row.put("Node", node1);
+            row.put("DependsOn", createRelationship(1l, node1, node2));
+            rows.add(row);
+            return Result.<T> builder().rule(rule).status(Result.Status.SUCCESS).severity(Severity.INFO).columnNames(asList("Node", "DependsOn"))
+                    .rows(rows).build();
+        }
+        for (int i = 0; i < 500; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Value", asList(rule.getId(), "Value " + i));
+            rows.add(row);
+        }
+        return Result.<T> builder().rule(rule).status(rule.getId().length() % 2 == 0 ? Result.Status.SUCCESS : Result.Status.FAILURE).severity(Severity.MINOR)
+                .columnNames(singletonList("Value")).rows(rows).build();
+    }
+
     private void verifyConceptResult(ReportContext reportContext, Concept concept, String html) {
         // test:Concept
         verifyRuleResult(html, "Status: <span class=\"green\">SUCCESS</span>", "Severity: MAJOR (from MINOR)", "<th>Value</th>", "<td> Foo Bar </td>");
@@ -188,7 +868,7 @@ public class AsciidocReportPluginTest {
         List<ReportContext.Report<?>> componentDiagrams = reportContext.getReports(concept);
         assertThat(componentDiagrams.size()).isEqualTo(1);
         String expectedDiagramUrl = "../plantuml/test_ComponentDiagram.svg";
-        String expectedImageLink = "<a href=\"" + expectedDiagramUrl + "\"><img src=\"" + expectedDiagramUrl + "\"></a>";
+        String expectedImageLink = "<a href=\"" + expectedDiagramUrl + "\"><img src=\"" + expectedDiagramUrl + "\" loading=\"lazy\" width=\"";
         assertThat(html).contains(expectedImageLink);
     }
 
@@ -0,0 +1,51 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static org.asciidoctor.OptionsBuilder.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+
+import com.buschmais.jqassistant.core.shared.asciidoc.AsciidoctorFactory;
+
+import org.asciidoctor.Asciidoctor;
+import org.asciidoctor.SafeMode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies the {@link ConversionExtensions} of a reused {@link Asciidoctor}
+ * instance.
+ */
+public class ConversionExtensionsTest {
+
+    @Test
+    public void reusedInstance() throws Exception {
+        Asciidoctor asciidoctor = ConversionExtensions.create();
+        ConversionExtensions extensions = ConversionExtensions.of(asciidoctor);
+        // Processors capture the runtime which has been created last
+        Asciidoctor other = AsciidoctorFactory.getAsciidoctor();
+        try {
+            ConversionExtensions.Conversion conversion = ConversionExtensions.Conversion.builder()
+                    .treeprocessor((document, nodeFactory) -> document.getBlocks()
+                            .add(nodeFactory.createBlock(document, "paragraph", "Created by the processor", new HashMap<String, Object>(), new HashMap<>())))
+                    .build();
+
+            String html = extensions.convert(conversion, () -> asciidoctor.convert("= Test\n\nContent", options().safe(SafeMode.UNSAFE).asMap()));
+
+            assertThat(html).contains("Content", "Created by the processor");
+        } finally {
+            other.shutdown();
+            asciidoctor.shutdown();
+        }
+    }
+
+    @Test
+    public void unregisteredInstance() {
+        Asciidoctor asciidoctor = AsciidoctorFactory.getAsciidoctor();
+        try {
+            assertThatThrownBy(() -> ConversionExtensions.of(asciidoctor)).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            asciidoctor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ConversionWatchdogTest {
+
+    @Test
+    public void withinBudget() throws ConversionWatchdog.BudgetExceededException {
+        ConversionWatchdog watchdog = new ConversionWatchdog(10000, 0);
+
+        assertThat(watchdog.execute("test", () -> "result")).isEqualTo("result");
+    }
+
+    @Test
+    public void timeoutExceeded() {
+        ConversionWatchdog watchdog = new ConversionWatchdog(200, 0);
+
+        assertThatThrownBy(() -> watchdog.execute("test", () -> {
+            Thread.sleep(10000);
+            return "result";
+        })).isInstanceOf(ConversionWatchdog.BudgetExceededException.class).hasMessageContaining("time budget")
+                .matches(e -> !((ConversionWatchdog.BudgetExceededException) e).isAbandoned());
+    }
+
+    @Test
+    public void allocationBudgetExceeded() {
+        ConversionWatchdog watchdog = new ConversionWatchdog(0, 16 * 1024 * 1024);
+
+        assertThatThrownBy(() -> watchdog.execute("test", () -> {
+            List<byte[]> retained = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                retained.add(new byte[8 * 1024 * 1024]);
+            }
+            Thread.sleep(10000);
+            return retained.size();
+        })).isInstanceOf(ConversionWatchdog.BudgetExceededException.class).hasMessageContaining("allocation budget");
+    }
+
+    @Test
+    public void allocationsOfOtherThreadsIgnored() throws Exception {
+        ConversionWatchdog watchdog = new ConversionWatchdog(0, 16 * 1024 * 1024);
+        List<byte[]> retained = new ArrayList<>();
+        Thread other = new Thread(() -> {
+            for (int i = 0; i < 16; i++) {
+                retained.add(new byte[8 * 1024 * 1024]);
+            }
+        });
+
+        assertThat(watchdog.execute("test", () -> {
+            other.start();
+            other.join();
+            Thread.sleep(500);
+            return "result";
+        })).isEqualTo("result");
+        assertThat(retained).hasSize(16);
+    }
+
+    @Test
+    public void failure() {
+        ConversionWatchdog watchdog = new ConversionWatchdog(10000, 0);
+
+        assertThatThrownBy(() -> watchdog.execute("test", () -> {
+            throw new IllegalArgumentException("failure");
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
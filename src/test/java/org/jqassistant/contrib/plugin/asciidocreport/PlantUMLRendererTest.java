@@ -1,20 +1,46 @@
 package org.jqassistant.contrib.plugin.asciidocreport;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
 import com.buschmais.jqassistant.core.report.api.graph.model.Node;
 import com.buschmais.jqassistant.core.report.api.graph.model.Relationship;
 import com.buschmais.jqassistant.core.report.api.graph.model.SubGraph;
 
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import org.apache.commons.io.FileUtils;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.LayeredDiagramRenderer;
 import org.jqassistant.contrib.plugin.asciidocreport.plantuml.PlantUMLRenderer;
 import org.jqassistant.contrib.plugin.asciidocreport.plantuml.RenderMode;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ShardingMode;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.SubGraphSplitter;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.SvgComposer;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.SvgOptimizer;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ThumbnailWriter;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 /**
  * Tests for the {@link PlantUMLRenderer}.
@@ -118,6 +144,220 @@ public class PlantUMLRendererTest {
         assertThrows(IllegalArgumentException.class, () -> renderDiagram("notExisting", ""));
     }
 
+    @Test
+    public void splitSubGraph() {
+        SubGraph subGraph = getShardedSubGraph();
+        Node folder = getNode(1000, "folder", "Artifact", "Container");
+        Node nested = getNode(1001, "nested", "Artifact", "File");
+        SubGraph folderGraph = new SubGraph();
+        folderGraph.setId(-2);
+        folderGraph.setParent(folder);
+        folderGraph.getNodes().put(folder.getId(), folder);
+        folderGraph.getNodes().put(nested.getId(), nested);
+        subGraph.getSubGraphs().put(folderGraph.getId(), folderGraph);
+        Node single = getNode(2000, "single", "Artifact", "File");
+        subGraph.getNodes().put(single.getId(), single);
+
+        List<SubGraph> shards = new SubGraphSplitter(25).split(subGraph);
+
+        assertThat(shards.size(), equalTo(3));
+        assertThat(shards.get(0).getNodes().size(), equalTo(30));
+        assertThat(shards.get(0).getRelationships().size(), equalTo(29));
+        assertThat(shards.get(1).getNodes().size(), equalTo(30));
+        // the folder and the single node are combined to one shard
+        assertThat(shards.get(2).getNodes().keySet(), hasItem(2000L));
+        assertThat(shards.get(2).getSubGraphs().get(-2L), sameInstance(folderGraph));
+    }
+
+    @Test
+    public void composedComponentDiagram() {
+        Concept concept = Concept.builder().id("test:composed").build();
+        File directory = new File("target");
+
+        List<File> files = plantUMLRenderer.renderComponentDiagrams(getShardedSubGraph(), "graphviz", ShardingMode.COMPOSE, concept, directory, "svg");
+
+        assertThat(files, equalTo(singletonList(new File(directory, "test_composed.svg"))));
+        assertThat(files.get(0).exists(), equalTo(true));
+    }
+
+    @Test
+    public void separateComponentDiagrams() {
+        Concept concept = Concept.builder().id("test:separate").build();
+        File directory = new File("target");
+
+        List<File> files = plantUMLRenderer.renderComponentDiagrams(getShardedSubGraph(), "jdot", ShardingMode.SEPARATE, concept, directory, "svg");
+
+        assertThat(files, equalTo(asList(new File(directory, "test_separate_1.svg"), new File(directory, "test_separate_2.svg"))));
+        for (File file : files) {
+            assertThat(file.exists(), equalTo(true));
+        }
+    }
+
+    @Test
+    public void layeredDiagram() throws IOException {
+        Concept concept = Concept.builder().id("test:layered").build();
+        File directory = new File("target");
+        SubGraph subGraph = getSubGraph();
+        Node folder = getNode(10, "folder", "Artifact", "Container");
+        Node nested = getNode(11, "nested", "Artifact", "File");
+        SubGraph folderGraph = new SubGraph();
+        folderGraph.setId(-2);
+        folderGraph.setParent(folder);
+        folderGraph.getNodes().put(folder.getId(), folder);
+        folderGraph.getNodes().put(nested.getId(), nested);
+        subGraph.getSubGraphs().put(folderGraph.getId(), folderGraph);
+        Node a1 = subGraph.getNodes().get(1L);
+        Relationship a1DependsOnNested = getRelationship(10, a1, "DEPENDS_ON", nested);
+        subGraph.getRelationships().put(a1DependsOnNested.getId(), a1DependsOnNested);
+
+        List<File> files = plantUMLRenderer.renderComponentDiagrams(subGraph, "layered", ShardingMode.NONE, concept, directory, "svg");
+
+        assertThat(files, equalTo(singletonList(new File(directory, "test_layered.svg"))));
+        String svg = FileUtils.readFileToString(files.get(0), StandardCharsets.UTF_8);
+        assertThat(svg, containsString(">a1</text>"));
+        assertThat(svg, containsString(">«Artifact File»</text>"));
+        assertThat(svg, containsString("<g class=\"folder\">"));
+        assertThat(svg, containsString(">folder</text>"));
+        assertThat(svg, containsString(">nested</text>"));
+        assertThat(svg, containsString(">DEPENDS_ON</text>"));
+        assertThat(svg, not(containsString(">a4</text>")));
+    }
+
+    @Test
+    public void svgDiagramThumbnail() {
+        Concept concept = Concept.builder().id("test:svgThumbnail").build();
+        File directory = new File("target");
+
+        List<File> files = new PlantUMLRenderer(null, new ThumbnailWriter(50)).renderComponentDiagrams(getSubGraph(), "layered", ShardingMode.NONE,
+                concept, directory, "svg");
+
+        // SVG diagrams are embedded with their dimensions instead
+        assertThat(ThumbnailWriter.getThumbnailFile(files.get(0)).exists(), equalTo(false));
+        Dimension dimension = ThumbnailWriter.getDimension(files.get(0));
+        assertThat(dimension.width > 0 && dimension.height > 0, equalTo(true));
+    }
+
+    @Test
+    public void rasterDiagramThumbnail() throws IOException {
+        Concept concept = Concept.builder().id("test:rasterThumbnail").build();
+        File directory = new File("target");
+
+        List<File> files = new PlantUMLRenderer(null, new ThumbnailWriter(50)).renderComponentDiagrams(getSubGraph(), "jdot", ShardingMode.NONE,
+                concept, directory, "png");
+
+        File thumbnail = new File(directory, "test_rasterThumbnail.thumb.png");
+        assertThat(ThumbnailWriter.getThumbnailFile(files.get(0)), equalTo(thumbnail));
+        BufferedImage image = ImageIO.read(files.get(0));
+        BufferedImage thumbnailImage = ImageIO.read(thumbnail);
+        assertThat(Math.max(thumbnailImage.getWidth(), thumbnailImage.getHeight()), equalTo(Math.min(50, Math.max(image.getWidth(), image.getHeight()))));
+    }
+
+    @Test
+    public void largeLayeredDiagram() {
+        Random random = new Random(0);
+        SubGraph subGraph = new SubGraph();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Node node = getNode(i, "n" + i, "Artifact", "File");
+            nodes.add(node);
+            subGraph.getNodes().put(node.getId(), node);
+        }
+        for (int i = 0; i < 15000; i++) {
+            Relationship relationship = getRelationship(i, nodes.get(random.nextInt(nodes.size())), "DEPENDS_ON", nodes.get(random.nextInt(nodes.size())));
+            subGraph.getRelationships().put(relationship.getId(), relationship);
+        }
+        File file = new File("target", "test_large.svg");
+
+        new LayeredDiagramRenderer().render(subGraph, file);
+
+        assertThat(file.exists(), equalTo(true));
+    }
+
+    @Test
+    public void composeSvg() {
+        String svg = "<?xml version=\"1.0\"?><svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100px\" height=\"50px\">"
+                + "<defs><filter id=\"f1\"/></defs><rect filter=\"url(#f1)\"/></svg>";
+
+        String composed = new SvgComposer().compose(asList(svg, svg));
+
+        assertThat(composed, containsString("<g transform=\"translate(0.0,0.0)\"><defs><filter id=\"s0_f1\"/></defs><rect filter=\"url(#s0_f1)\"/></g>"));
+        assertThat(composed, containsString("<filter id=\"s1_f1\"/>"));
+        assertThat(composed, containsString("width=\"100px\" height=\"120px\""));
+    }
+
+    @Test
+    public void optimizeSvg() {
+        String svg = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><!--source--><?plantuml 1.2019?>"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100.456px\" height=\"50px\">\n"
+                + "<metadata><info>generated</info></metadata>"
+                + "<defs><filter id=\"f1\"><feOffset dx=\"4.0\"/></filter><filter id=\"f2\"><feOffset dx=\"4\"/></filter></defs>\n"
+                + "<rect fill=\"#FEFECE\" filter=\"url(#f2)\" style=\"stroke: #A80036; stroke-width: 1.5;\" x=\"10.04999\" y=\"-0.04\"/>"
+                + "<rect fill=\"#FEFECE\" filter=\"url(#f1)\" style=\"stroke: #A80036; stroke-width: 1.5;\" x=\"20.25\" y=\"5\"/>"
+                + "<text fill=\"#000000\" x=\"1.26\"> a1 </text></svg>";
+
+        String optimized = new SvgOptimizer(1).optimize(svg);
+
+        assertThat(optimized, not(containsString("source")));
+        assertThat(optimized, not(containsString("plantuml")));
+        assertThat(optimized, not(containsString("metadata")));
+        assertThat(optimized, not(containsString("f2")));
+        assertThat(optimized, containsString("width=\"100.5px\""));
+        assertThat(optimized, containsString("<style>.s0{fill:#FEFECE;stroke: #A80036; stroke-width: 1.5;}</style>"));
+        assertThat(optimized, containsString("<filter id=\"f1\"><feOffset dx=\"4\"/></filter>"));
+        assertThat(optimized, containsString("<rect filter=\"url(#f1)\" x=\"10\" y=\"0\" class=\"s0\"/>"));
+        assertThat(optimized, containsString("<rect filter=\"url(#f1)\" x=\"20.3\" y=\"5\" class=\"s0\"/>"));
+        assertThat(optimized, containsString("x=\"1.3\""));
+        assertThat(optimized, containsString("> a1 </text>"));
+    }
+
+    @Test
+    public void optimizedSvgPreservesStructure() throws Exception {
+        String diagram = plantUMLRenderer.createComponentDiagram(getShardedSubGraph(), "jdot");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new SourceStringReader(diagram).outputImage(outputStream, new FileFormatOption(FileFormat.SVG));
+        String svg = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+
+        String optimized = new SvgOptimizer(1).optimize(svg);
+
+        assertThat(optimized.length() < svg.length(), equalTo(true));
+        List<Element> elements = getElements(svg);
+        List<Element> optimizedElements = getElements(optimized);
+        assertThat(optimizedElements.size(), equalTo(elements.size()));
+        for (int i = 0; i < elements.size(); i++) {
+            Element element = elements.get(i);
+            Element optimizedElement = optimizedElements.get(i);
+            assertThat(optimizedElement.getTagName(), equalTo(element.getTagName()));
+            if ("text".equals(element.getTagName())) {
+                assertThat(optimizedElement.getTextContent(), equalTo(element.getTextContent()));
+            }
+            for (String attribute : asList("x", "y", "width", "height")) {
+                if (element.getAttribute(attribute).matches("-?[0-9.]+")) {
+                    double value = Double.parseDouble(element.getAttribute(attribute));
+                    double optimizedValue = Double.parseDouble(optimizedElement.getAttribute(attribute));
+                    assertThat(Math.abs(value - optimizedValue) <= 0.05, equalTo(true));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the drawn elements of an SVG document in document order.
+     */
+    private List<Element> getElements(String svg) throws Exception {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8)));
+        NodeList nodes = document.getElementsByTagName("*");
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            if (!asList("style", "defs").contains(element.getTagName())) {
+                elements.add(element);
+            }
+        }
+        return elements;
+    }
+
     private File renderDiagram(String format, String expectedFormat) {
         Concept concept = Concept.builder().id("test:plantuml").build();
         File directory = new File("target");
@@ -132,6 +372,28 @@ public class PlantUMLRendererTest {
         return file;
     }
 
+    /**
+     * Creates a {@link SubGraph} consisting of two disconnected chains of 30
+     * nodes.
+     */
+    private SubGraph getShardedSubGraph() {
+        SubGraph subGraph = new SubGraph();
+        for (int chain = 0; chain < 2; chain++) {
+            Node previous = null;
+            for (int i = 0; i < 30; i++) {
+                long id = chain * 100 + i;
+                Node node = getNode(id, "n" + id, "Artifact", "File");
+                subGraph.getNodes().put(id, node);
+                if (previous != null) {
+                    Relationship relationship = getRelationship(id, previous, "DEPENDS_ON", node);
+                    subGraph.getRelationships().put(relationship.getId(), relationship);
+                }
+                previous = node;
+            }
+        }
+        return subGraph;
+    }
+
     private SubGraph getSubGraph() {
         Node a1 = getNode(1, "a1", "Artifact", "File");
         Node a2 = getNode(2, "a2", "Artifact", "File");
@@ -0,0 +1,58 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
+import com.buschmais.jqassistant.core.analysis.api.rule.Group;
+
+import org.junit.jupiter.api.Test;
+
+public class RuleFilterTest {
+
+    /**
+     * Verifies that rules are accepted by their ids or by the groups executing
+     * them.
+     */
+    @Test
+    public void filterRules() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(RuleFilter.PROPERTY_RULES, "dependency:*");
+        properties.put(RuleFilter.PROPERTY_GROUPS, "architecture");
+        RuleFilter ruleFilter = RuleFilter.fromProperties(properties);
+        Concept dependency = Concept.builder().id("dependency:Package").build();
+        Concept layer = Concept.builder().id("layer:Layer").build();
+
+        assertThat(ruleFilter.isFilteringRules(), equalTo(true));
+        assertThat(ruleFilter.accepts(dependency), equalTo(true));
+        assertThat(ruleFilter.accepts(layer), equalTo(false));
+        ruleFilter.beginGroup(Group.builder().id("architecture").build());
+        ruleFilter.beginGroup(Group.builder().id("layers").build());
+        assertThat(ruleFilter.accepts(layer), equalTo(true));
+        ruleFilter.endGroup();
+        ruleFilter.endGroup();
+        assertThat(ruleFilter.accepts(layer), equalTo(false));
+    }
+
+    /**
+     * Verifies that documents are matched by their paths relative to their base
+     * directories.
+     */
+    @Test
+    public void filterDocuments() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(RuleFilter.PROPERTY_DOCUMENTS, "index.adoc,architecture/*");
+        RuleFilter ruleFilter = RuleFilter.fromProperties(properties);
+        File baseDir = new File("rules");
+
+        assertThat(ruleFilter.isFilteringRules(), equalTo(false));
+        assertThat(ruleFilter.accepts(Concept.builder().id("layer:Layer").build()), equalTo(true));
+        assertThat(ruleFilter.accepts(baseDir, new File(baseDir, "index.adoc")), equalTo(true));
+        assertThat(ruleFilter.accepts(baseDir, new File(baseDir, "architecture/layers.adoc")), equalTo(true));
+        assertThat(ruleFilter.accepts(baseDir, new File(baseDir, "other.adoc")), equalTo(false));
+    }
+}
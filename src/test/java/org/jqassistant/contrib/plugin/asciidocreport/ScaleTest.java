@@ -0,0 +1,308 @@
+package org.jqassistant.contrib.plugin.asciidocreport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+import com.buschmais.jqassistant.core.analysis.api.Result;
+import com.buschmais.jqassistant.core.analysis.api.rule.Concept;
+import com.buschmais.jqassistant.core.analysis.api.rule.RuleException;
+import com.buschmais.jqassistant.core.analysis.api.rule.RuleSet;
+import com.buschmais.jqassistant.core.analysis.api.rule.Severity;
+import com.buschmais.jqassistant.core.report.api.ReportContext;
+import com.buschmais.jqassistant.core.report.api.ReportPlugin;
+import com.buschmais.jqassistant.core.report.impl.CompositeReportPlugin;
+import com.buschmais.jqassistant.core.report.impl.ReportContextImpl;
+import com.buschmais.jqassistant.core.rule.api.reader.RuleConfiguration;
+import com.buschmais.jqassistant.core.rule.api.reader.RuleParserPlugin;
+import com.buschmais.jqassistant.core.rule.api.source.FileRuleSource;
+import com.buschmais.jqassistant.core.rule.impl.reader.AsciidocRuleParserPlugin;
+import com.buschmais.jqassistant.core.rule.impl.reader.RuleParser;
+import com.buschmais.xo.neo4j.api.model.Neo4jLabel;
+import com.buschmais.xo.neo4j.api.model.Neo4jNode;
+import com.buschmais.xo.neo4j.api.model.Neo4jRelationship;
+import com.buschmais.xo.neo4j.api.model.Neo4jRelationshipType;
+
+import lombok.AllArgsConstructor;
+import lombok.ToString;
+import org.apache.commons.io.FileUtils;
+import org.jqassistant.contrib.plugin.asciidocreport.plantuml.ComponentDiagramReportPlugin;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load harness driving the report plugins with synthetic rules, results and
+ * graphs.
+ * <p>
+ * The scenarios are only executed if the system property
+ * <code>asciidoc.report.scale</code> is set to <code>true</code>, e.g.
+ * <code>mvn test -Dtest=ScaleTest -Dasciidoc.report.scale=true</code>. The
+ * sizes of all scenarios are multiplied by the optional system property
+ * <code>asciidoc.report.scale.factor</code>. Wall time, peak heap, GC time and
+ * output size of each scenario are appended to
+ * <code>target/scale/results.csv</code>.
+ */
+@EnabledIfSystemProperty(named = "asciidoc.report.scale", matches = "true")
+public class ScaleTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScaleTest.class);
+
+    private static final File SCALE_DIRECTORY = new File("target/scale");
+
+    private long nextId = 0;
+
+    /**
+     * A scenario of the load harness.
+     */
+    @AllArgsConstructor
+    @ToString
+    static class Scenario {
+
+        private final String name;
+
+        /**
+         * The number of concepts with tabular results.
+         */
+        private final int rules;
+
+        /**
+         * The number of rows per result.
+         */
+        private final int rows;
+
+        /**
+         * The number of values per cell.
+         */
+        private final int values;
+
+        /**
+         * The number of concepts rendered as component diagrams.
+         */
+        private final int diagrams;
+
+        /**
+         * The number of folders of the diagram graphs, each depending on the
+         * previous one.
+         */
+        private final int depth;
+
+        /**
+         * The number of nodes per folder of the diagram graphs.
+         */
+        private final int width;
+
+        private Scenario scale(double factor) {
+            return new Scenario(name, scale(rules, factor), scale(rows, factor), values, diagrams, depth, scale(width, factor));
+        }
+
+        private static int scale(int value, double factor) {
+            return value > 0 ? Math.max(1, (int) (value * factor)) : 0;
+        }
+    }
+
+    static Stream<Scenario> scenarios() {
+        double factor = Double.parseDouble(System.getProperty("asciidoc.report.scale.factor", "1"));
+        return Stream.of(new Scenario("many-rules", 1000, 10, 1, 0, 0, 0), new Scenario("many-rows", 10, 10000, 2, 0, 0, 0),
+                new Scenario("multi-valued-cells", 20, 1000, 25, 0, 0, 0), new Scenario("wide-graph", 0, 0, 0, 1, 1, 1000),
+                new Scenario("deep-graph", 0, 0, 0, 1, 10, 20)).map(scenario -> scenario.scale(factor));
+    }
+
+    @ParameterizedTest
+    @MethodSource("scenarios")
+    public void scenario(Scenario scenario) throws Exception {
+        File scenarioDirectory = new File(SCALE_DIRECTORY, scenario.name);
+        FileUtils.deleteQuietly(scenarioDirectory);
+        File ruleDirectory = new File(scenarioDirectory, "rules");
+        RuleSet ruleSet = createRuleSet(scenario, ruleDirectory);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("asciidoc.report.rule.directory", ruleDirectory.getAbsolutePath());
+        properties.put("asciidoc.report.file.include", "index.adoc");
+        Map<String, ReportPlugin> reportPlugins = new HashMap<>();
+        reportPlugins.put("asciidoc", new AsciidocReportPlugin());
+        reportPlugins.put("plantuml-component-diagram", new ComponentDiagramReportPlugin());
+        ReportContext reportContext = new ReportContextImpl(scenarioDirectory);
+        for (ReportPlugin reportPlugin : reportPlugins.values()) {
+            reportPlugin.initialize();
+            reportPlugin.configure(reportContext, properties);
+        }
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+                heapPools.add(memoryPool);
+            }
+        }
+        long gcTime = getGcTime();
+        long start = System.currentTimeMillis();
+
+        ReportPlugin plugin = new CompositeReportPlugin(reportPlugins);
+        plugin.begin();
+        for (int i = 0; i < scenario.rules; i++) {
+            Concept concept = ruleSet.getConceptBucket().getById(getRuleId("Table", i));
+            plugin.beginConcept(concept);
+            plugin.setResult(createTableResult(scenario, concept, i));
+            plugin.endConcept();
+        }
+        for (int i = 0; i < scenario.diagrams; i++) {
+            Concept concept = ruleSet.getConceptBucket().getById(getRuleId("Diagram", i));
+            plugin.beginConcept(concept);
+            plugin.setResult(createDiagramResult(scenario, concept));
+            plugin.endConcept();
+        }
+        plugin.end();
+
+        long wallTime = System.currentTimeMillis() - start;
+        gcTime = getGcTime() - gcTime;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean heapPool : heapPools) {
+            peakHeap += heapPool.getPeakUsage().getUsed();
+        }
+        File reportDirectory = new File(scenarioDirectory, "report");
+        long outputSize = FileUtils.sizeOfDirectory(reportDirectory);
+        assertThat(new File(reportDirectory, "asciidoc/index.html").exists()).isTrue();
+
+        LOGGER.info("{}: wall time {}ms, peak heap {}MB, GC time {}ms, output size {}KB", scenario, wallTime, peakHeap / (1024 * 1024), gcTime,
+                outputSize / 1024);
+        File results = new File(SCALE_DIRECTORY, "results.csv");
+        if (!results.exists()) {
+            FileUtils.writeStringToFile(results, "scenario,rules,rows,values,diagrams,depth,width,wallTimeMs,peakHeapBytes,gcTimeMs,outputBytes\n",
+                    StandardCharsets.UTF_8);
+        }
+        FileUtils.writeStringToFile(results, String.format("%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n", scenario.name, scenario.rules, scenario.rows,
+                scenario.values, scenario.diagrams, scenario.depth, scenario.width, wallTime, peakHeap, gcTime, outputSize), StandardCharsets.UTF_8, true);
+    }
+
+    private RuleSet createRuleSet(Scenario scenario, File ruleDirectory) throws IOException, RuleException {
+        StringBuilder document = new StringBuilder("= Scale Test\n\n");
+        document.append("== Summary\n\ninclude::jQA:Summary[]\n\n== Rules\n\n");
+        for (int i = 0; i < scenario.rules; i++) {
+            appendRule(document, getRuleId("Table", i), "");
+        }
+        for (int i = 0; i < scenario.diagrams; i++) {
+            appendRule(document, getRuleId("Diagram", i), ",reportType=\"plantuml-component-diagram\"");
+        }
+        File index = new File(ruleDirectory, "index.adoc");
+        FileUtils.writeStringToFile(index, document.toString(), StandardCharsets.UTF_8);
+        AsciidocRuleParserPlugin ruleParserPlugin = new AsciidocRuleParserPlugin();
+        ruleParserPlugin.initialize();
+        ruleParserPlugin.configure(RuleConfiguration.DEFAULT);
+        RuleParser ruleParser = new RuleParser(Arrays.<RuleParserPlugin> asList(ruleParserPlugin));
+        return ruleParser.parse(asList(new FileRuleSource(index)));
+    }
+
+    private void appendRule(StringBuilder document, String id, String attributes) {
+        document.append("[[").append(id).append("]]\n");
+        document.append("[source,cypher,role=concept").append(attributes).append("]\n");
+        document.append(".Synthetic rule ").append(id).append("\n");
+        document.append("----\nMATCH\n  (n)\nRETURN\n  n\n----\n\n");
+    }
+
+    private String getRuleId(String type, int index) {
+        return "scale:" + type + index;
+    }
+
+    private Result<Concept> createTableResult(Scenario scenario, Concept concept, int ruleIndex) {
+        List<Map<String, Object>> rows = new ArrayList<>(scenario.rows);
+        for (int i = 0; i < scenario.rows; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Name", "element-" + ruleIndex + "-" + i);
+            List<String> values = new ArrayList<>(scenario.values);
+            for (int j = 0; j < scenario.values; j++) {
+                values.add("value-" + i + "-" + j);
+            }
+            row.put("Values", values);
+            row.put("Index", i);
+            rows.add(row);
+        }
+        return Result.<Concept> builder().rule(concept).status(ruleIndex % 10 == 0 ? Result.Status.FAILURE : Result.Status.SUCCESS)
+                .severity(Severity.MINOR).columnNames(asList("Name", "Values", "Index")).rows(rows).build();
+    }
+
+    /**
+     * Creates a result containing a virtual graph per level of the scenario,
+     * i.e. a folder containing the nodes of the level. The nodes of each level
+     * depend on their predecessors and on the first node of the previous
+     * level.
+     */
+    private Result<Concept> createDiagramResult(Scenario scenario, Concept concept) {
+        Neo4jLabel artifactLabel = createLabel("Artifact");
+        Neo4jLabel fileLabel = createLabel("File");
+        Neo4jLabel containerLabel = createLabel("Container");
+        Neo4jRelationshipType dependsOn = mock(Neo4jRelationshipType.class);
+        when(dependsOn.getName()).thenReturn("DEPENDS_ON");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Neo4jNode previousLevel = null;
+        for (int level = 0; level < scenario.depth; level++) {
+            List<Neo4jNode> nodes = new ArrayList<>();
+            List<Neo4jRelationship> relationships = new ArrayList<>();
+            for (int i = 0; i < scenario.width; i++) {
+                Neo4jNode node = createNode("node-" + level + "-" + i, artifactLabel, fileLabel);
+                if (!nodes.isEmpty()) {
+                    relationships.add(createRelationship(node, dependsOn, nodes.get(nodes.size() - 1)));
+                }
+                if (previousLevel != null) {
+                    relationships.add(createRelationship(node, dependsOn, previousLevel));
+                }
+                nodes.add(node);
+            }
+            Map<String, Object> graph = new HashMap<>();
+            graph.put("role", "graph");
+            graph.put("parent", createNode("level-" + level, artifactLabel, containerLabel));
+            graph.put("nodes", nodes);
+            graph.put("relationships", relationships);
+            Map<String, Object> row = new HashMap<>();
+            row.put("Graph", graph);
+            rows.add(row);
+            previousLevel = nodes.isEmpty() ? null : nodes.get(0);
+        }
+        return Result.<Concept> builder().rule(concept).status(Result.Status.SUCCESS).severity(Severity.INFO).columnNames(asList("Graph")).rows(rows)
+                .build();
+    }
+
+    private Neo4jLabel createLabel(String name) {
+        Neo4jLabel label = mock(Neo4jLabel.class);
+        when(label.getName()).thenReturn(name);
+        return label;
+    }
+
+    private Neo4jNode createNode(String name, Neo4jLabel... labels) {
+        Neo4jNode node = mock(Neo4jNode.class);
+        when(node.getId()).thenReturn(++nextId);
+        when(node.getLabels()).thenReturn(asList(labels));
+        when(node.getProperties()).thenReturn(Collections.<String, Object> singletonMap("fqn", name));
+        return node;
+    }
+
+    private Neo4jRelationship createRelationship(Neo4jNode start, Neo4jRelationshipType type, Neo4jNode end) {
+        Neo4jRelationship relationship = mock(Neo4jRelationship.class);
+        when(relationship.getId()).thenReturn(++nextId);
+        when(relationship.getType()).thenReturn(type);
+        when(relationship.getStartNode()).thenReturn(start);
+        when(relationship.getEndNode()).thenReturn(end);
+        return relationship;
+    }
+
+    private long getGcTime() {
+        long gcTime = 0;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, garbageCollector.getCollectionTime());
+        }
+        return gcTime;
+    }
+}